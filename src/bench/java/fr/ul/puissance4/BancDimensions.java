@@ -0,0 +1,65 @@
+package fr.ul.puissance4;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bancs JMH des parties aléatoires et de la recherche MCTS selon la taille du plateau, depuis le plateau vide.
+ * <p>
+ * Les plateaux jusqu'à 9x7 sont des {@link GrilleMot}, les plus grands des {@link GrilleMots} ; le plateau standard
+ * se compare à {@link BancRecherche#partieAleatoire()} sur un {@link Etat}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BancDimensions {
+    /**
+     * Les dimensions du plateau, voir {@link Dimensions#lire(String)}.
+     */
+    @Param({"7x6x4", "8x7x4", "9x6x4", "9x7x4", "10x8x5", "12x10x5", "16x12x6"})
+    public String dimensions;
+
+    private Grille grille;
+    private SimulateurGrille simulateur;
+    private ArbreGrille arbre;
+    private GestionTemps temps;
+
+    @Setup
+    public void preparer() {
+        Dimensions d = Dimensions.lire(dimensions);
+        grille = Grille.creer(d);
+        simulateur = new SimulateurGrille(d, 42L);
+        arbre = new ArbreGrille(d, 1 << 16);
+        temps = new GestionTemps(3_600_000, false); // une heure, jamais atteinte
+    }
+    @Benchmark
+    public FinDePartie partieAleatoire() {
+        return simulateur.simuler(grille);
+    }
+
+    /**
+     * 1000 itérations MCTS sur un {@link ArbreGrille} vidé à chaque opération, l'équivalent de
+     * {@link BancRecherche#mctsCompact()}.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int mcts() {
+        arbre.reinitialiser(grille);
+        arbre.developper(simulateur, Noeud.C, temps, 1000, new StatistiquesRecherche());
+        return arbre.getTaille();
+    }
+}
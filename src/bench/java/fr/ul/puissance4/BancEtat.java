@@ -0,0 +1,84 @@
+package fr.ul.puissance4;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bancs JMH des opérations élémentaires de {@link Etat}, sur quelques positions de référence.
+ * <p>
+ * Une position de référence est donnée par la suite des colonnes jouées depuis le plateau vide, l'ordinateur
+ * commençant. Dans chacune, c'est à l'ordinateur de jouer et aucune recherche courte ne la résout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BancEtat {
+    /**
+     * Les positions de référence : plateau vide, début de partie et milieu de partie.
+     */
+    @Param({"", "344240", "1332235532166266"})
+    public String coups;
+
+    private Etat position;
+    private Etat brouillon;
+    private Coup coup;
+
+    @Setup
+    public void preparer() {
+        position = position(coups);
+        brouillon = position.copieEtat();
+        coup = Coup.de(Integer.numberOfTrailingZeros(position.colonnesJouables()));
+    }
+
+    /**
+     * Construit une position de référence.
+     *
+     * @param coups les colonnes jouées depuis le plateau vide, l'ordinateur commençant
+     * @return la position, qui ne doit pas être finie
+     */
+    static Etat position(String coups) {
+        Etat etat = new Etat();
+        for (char c : coups.toCharArray()) {
+            if (etat.jouerCoupEtTester(c - '0') != FinDePartie.NON)
+                throw new IllegalStateException("Position de référence finie ou invalide : " + coups);
+        }
+        return etat;
+    }
+
+    @Benchmark
+    public boolean jouerCoup() {
+        boolean joue = brouillon.jouerCoup(coup);
+        brouillon.annulerCoup(coup.getColonne());
+        return joue;
+    }
+
+    @Benchmark
+    public FinDePartie testFin() {
+        return position.testFin();
+    }
+
+    @Benchmark
+    public Etat copieEtat() {
+        return position.copieEtat();
+    }
+
+    @Benchmark
+    public List<Coup> coupsPossibles() {
+        return position.coupsPossibles();
+    }
+}
@@ -0,0 +1,71 @@
+package fr.ul.puissance4;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bancs JMH de la recherche : une partie aléatoire complète, et un nombre fixé d'itérations MCTS dans un arbre de
+ * {@link Noeud} ou dans un {@link ArbreCompact}, à partir de positions de référence (voir {@link BancEtat}), avec ou
+ * sans chronométrage de chaque étape de MCTS (voir {@link StatistiquesRecherche#isChronometre()}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BancRecherche {
+    @Param({"", "344240", "1332235532166266"})
+    public String coups;
+
+    /**
+     * Le nombre d'itérations MCTS d'une recherche.
+     */
+    @Param({"1000"})
+    public int iterations;
+
+    /**
+     * <code>true</code> si le temps de chaque étape de MCTS est mesuré.
+     */
+    @Param({"false", "true"})
+    public boolean chronometre;
+    private Etat position;
+    private Simulateur simulateur;
+    private Parametres parametres;
+    private ArbreCompact arbre;
+
+    @Setup
+    public void preparer() {
+        position = BancEtat.position(coups);
+        simulateur = new Simulateur(42L);
+        parametres = new Parametres();
+        arbre = new ArbreCompact(iterations * Etat.COLONNE + 1);
+    }
+
+    @Benchmark
+    public FinDePartie partieAleatoire() {
+        return simulateur.simuler(position);
+    }
+
+    @Benchmark
+    public Noeud mctsNoeuds() {
+        return position.iterer(iterations, parametres, simulateur, new StatistiquesRecherche(chronometre));
+    }
+
+    @Benchmark
+    public ArbreCompact mctsCompact() {
+        arbre.reinitialiser(position);
+        return arbre.iterer(simulateur, parametres.getExploration(), iterations, new StatistiquesRecherche(chronometre));
+    }
+}
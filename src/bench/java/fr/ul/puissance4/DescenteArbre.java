@@ -0,0 +1,95 @@
+package fr.ul.puissance4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Mesure le coût par niveau de la recherche des enfants lors d'une descente dans l'arbre MCTS : pour chaque coup
+ * possible, on cherche l'enfant correspondant, comme le fait la sélection.
+ * <ul>
+ * <li>avant : parcours par flux d'une liste d'enfants (<code>stream().filter(...).findFirst()</code>)</li>
+ * <li>après : accès direct à la case de la colonne jouée ({@link Noeud#enfantEnColonne(int)})</li>
+ * </ul>
+ * Arguments : temps de construction de l'arbre en secondes (3 par défaut), nombre de descentes mesurées
+ * (1 000 000 par défaut).
+ */
+public class DescenteArbre {
+    public static void main(String[] args) {
+        long construction = 3L;
+        if (args.length >= 1) {
+            construction = Long.parseLong(args[0]);
+        }
+        int descentes = 1_000_000;
+        if (args.length >= 2) {
+            descentes = Integer.parseInt(args[1]);
+        }
+
+        // on construit un arbre, puis on garde son chemin le plus visité
+        Parametres parametres = new Parametres();
+        Noeud racine = new Etat().rechercher(construction * 1000, parametres, null, null, new StatistiquesRecherche())[0];
+        List<Noeud> chemin = new ArrayList<>();
+        List<List<Noeud>> listes = new ArrayList<>();
+        for (Noeud n = racine; n != null && !n.estFeuille(); n = plusVisite(n)) {
+            chemin.add(n);
+            listes.add(n.getEnfants());
+        }
+        System.out.printf("Profondeur du chemin mesuré : %d niveaux%n", chemin.size());
+
+        long total = 0;
+        for (int essai = 0; essai < 3; essai++) {
+            // le premier essai sert de préchauffage du JIT
+            long tic = System.nanoTime();
+            for (int d = 0; d < descentes; d++)
+                total += descenteAvant(chemin, listes);
+            double avant = (double) (System.nanoTime() - tic) / descentes / chemin.size();
+
+            tic = System.nanoTime();
+            for (int d = 0; d < descentes; d++)
+                total += descenteApres(chemin);
+            double apres = (double) (System.nanoTime() - tic) / descentes / chemin.size();
+
+            if (essai > 0)
+                System.out.printf("avant : %6.1f ns/niveau   après : %6.1f ns/niveau%n", avant, apres);
+        }
+        System.out.println("(" + total + ")");
+    }
+
+    private static int descenteAvant(List<Noeud> chemin, List<List<Noeud>> listes) {
+        int trouves = 0;
+        for (int niveau = 0; niveau < chemin.size(); niveau++) {
+            Etat etat = chemin.get(niveau).getEtat();
+            List<Noeud> enfants = listes.get(niveau);
+            for (int j = 0; j < Etat.COLONNE; j++) {
+                if (!etat.peutJouer(j))
+                    continue;
+                Coup c = new Coup(j);
+                Optional<Noeud> n = enfants.stream().filter(node -> node.getCoup().equals(c)).findFirst();
+                if (n.isPresent())
+                    trouves++;
+            }
+        }
+        return trouves;
+    }
+
+    private static int descenteApres(List<Noeud> chemin) {
+        int trouves = 0;
+        for (Noeud noeud : chemin) {
+            Etat etat = noeud.getEtat();
+            for (int j = 0; j < Etat.COLONNE; j++) {
+                if (etat.peutJouer(j) && noeud.enfantEnColonne(j) != null)
+                    trouves++;
+            }
+        }
+        return trouves;
+    }
+
+    private static Noeud plusVisite(Noeud n) {
+        Noeud best = null;
+        for (Noeud enfant : n.getEnfants()) {
+            if (best == null || enfant.getNb_simus() > best.getNb_simus())
+                best = enfant;
+        }
+        return best;
+    }
+}
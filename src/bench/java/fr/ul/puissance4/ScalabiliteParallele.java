@@ -0,0 +1,59 @@
+package fr.ul.puissance4;
+
+/**
+ * Mesure le nombre de simulations MCTS par seconde selon le nombre de threads (1, 2, 4, … jusqu'au nombre de
+ * coeurs disponibles), pour chaque mode de {@link Parallelisme}.
+ * <p>
+ * Arguments : durée de chaque mesure en secondes (5 par défaut), nombre maximum de threads (nombre de coeurs par
+ * défaut).
+ */
+public class ScalabiliteParallele {
+    public static void main(String[] args) {
+        long duree = 5L;
+        if (args.length >= 1) {
+            duree = Long.parseLong(args[0]);
+        }
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        if (args.length >= 2) {
+            maxThreads = Integer.parseInt(args[1]);
+        }
+
+        // préchauffage du JIT
+        mesurer(duree * 1000, 1, Parallelisme.ARBRE);
+
+        for (Parallelisme mode : Parallelisme.values()) {
+            System.out.printf("%nParallélisme %s%n", mode);
+            System.out.printf("%8s %16s %12s%n", "threads", "simulations/s", "accélération");
+
+            double reference = 0;
+            for (int threads = 1; threads <= maxThreads; threads = threads * 2 > maxThreads && threads < maxThreads ? maxThreads : threads * 2) {
+                double parSeconde = mesurer(duree * 1000, threads, mode);
+                if (threads == 1)
+                    reference = parSeconde;
+                System.out.printf("%8d %16.0f %11.2fx%n", threads, parSeconde, parSeconde / reference);
+            }
+        }
+    }
+
+    /**
+     * Lance une recherche depuis le plateau vide et mesure son débit.
+     *
+     * @param tempsmax  la durée de la recherche en ms
+     * @param nbThreads le nombre de threads de recherche
+     * @param mode      la façon de répartir la recherche entre les threads
+     * @return le nombre de simulations réalisées par seconde
+     */
+    private static double mesurer(long tempsmax, int nbThreads, Parallelisme mode) {
+        StatistiquesRecherche statistiques = new StatistiquesRecherche();
+
+        Parametres parametres = new Parametres();
+        parametres.setNbThreads(nbThreads);
+        parametres.setParallelisme(mode);
+
+        long tic = System.nanoTime();
+        new Etat().rechercher(tempsmax, parametres, null, null, statistiques);
+        long duree = System.nanoTime() - tic;
+
+        return statistiques.getSimulations() * 1e9 / duree;
+    }
+}
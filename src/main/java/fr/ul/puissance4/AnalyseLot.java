@@ -0,0 +1,290 @@
+package fr.ul.puissance4;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Analyse en lot d'un fichier de positions, par exemple tirées de parties jouées.
+ * <p>
+ * Chaque ligne du fichier d'entrée est une position, donnée par les colonnes jouées depuis le plateau vide (de 1 à
+ * {@link Etat#COLONNE}, comme pour {@link Position#depuisCoups(String)}) ; les lignes vides et celles qui commencent
+ * par <code>#</code> sont ignorées. Les positions sont analysées en parallèle par un {@link Moteur}, avec le même
+ * temps et le même quota d'itérations pour chacune, et chaque résultat est ajouté au fichier de sortie dès que son
+ * analyse est finie, donc pas forcément dans l'ordre des lignes :
+ * <pre>
+ * numéro de ligne	coups	meilleure colonne	taux de victoire	preuve	visites par colonne
+ * 12	4453	4	0.5748	-	156,237,407,428,377,146,169
+ * 13	121212	1	1.0000	VICTOIRE	1,0,0,0,0,0,0
+ * 14	12345678	erreur	Colonne invalide '8' dans 12345678
+ * </pre>
+ * Le fichier d'entrée est lu au fur et à mesure et le nombre d'analyses en cours est borné : la mémoire utilisée ne
+ * dépend pas de la taille du fichier. Une analyse interrompue, par exemple par un arrêt brutal, reprend là où elle
+ * s'est arrêtée : les lignes déjà présentes dans le fichier de sortie ne sont pas analysées de nouveau.
+ * <p>
+ * Usage : <code>java fr.ul.puissance4.AnalyseLot entree sortie [temps en ms par position] [threads]
+ * [quota d'itérations par position]</code>
+ */
+public class AnalyseLot {
+    /**
+     * Le nombre de lignes entre la première ligne pas encore analysée et la ligne la plus loin lancée : une analyse
+     * plus lente que les autres ne retient que ce nombre de lignes en mémoire.
+     */
+    private static final int FENETRE = 4096;
+
+    private final Moteur moteur;
+    private final long tempsmax;
+    /**
+     * Les analyses en cours, au plus une par thread.
+     */
+    private final Semaphore enCours;
+    /**
+     * Les lignes faites parmi les {@link #FENETRE} à partir de {@link #prochaine}, en tampon circulaire.
+     */
+    private final boolean[] faites = new boolean[FENETRE];
+    /**
+     * La première ligne pas encore faite : toutes les précédentes sont dans le fichier de sortie.
+     */
+    private long prochaine = 1;
+    private BufferedWriter sortie;
+    private IOException erreurSortie;
+    private long analysees;
+
+    /**
+     * @param moteur    le moteur qui analyse les positions
+     * @param tempsmax  le temps maximum en ms accordé à chaque position
+     * @param nbThreads le nombre maximum de positions analysées en même temps
+     */
+    public AnalyseLot(Moteur moteur, long tempsmax, int nbThreads) {
+        this.moteur = moteur;
+        this.tempsmax = tempsmax;
+        this.enCours = new Semaphore(nbThreads);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage : java fr.ul.puissance4.AnalyseLot entree sortie [temps en ms] [threads] [quota]");
+            return;
+        }
+        long temps = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Parametres parametres = new Parametres();
+        if (args.length >= 3) {
+            temps = Long.parseLong(args[2]);
+        }
+        if (args.length >= 4) {
+            threads = Integer.parseInt(args[3]);
+        }
+        if (args.length >= 5) {
+            parametres.setQuotaIterations(Long.parseLong(args[4]));
+        }
+
+        ExecutorService executeur = Executors.newFixedThreadPool(threads);
+        try {
+            long debut = System.nanoTime();
+            long analysees = new AnalyseLot(new Moteur(executeur, parametres), temps, threads).analyser(Paths.get(args[0]), Paths.get(args[1]));
+            System.err.printf(Locale.ROOT, "lot positions=%d duree_s=%.1f%n", analysees, (System.nanoTime() - debut) / 1e9);
+        } finally {
+            executeur.shutdown();
+        }
+    }
+
+    /**
+     * Analyse les positions d'un fichier qui ne sont pas déjà dans le fichier de sortie.
+     *
+     * @param entree    le fichier des positions, une par ligne
+     * @param resultats le fichier de sortie, créé s'il n'existe pas et complété sinon
+     * @return le nombre de positions analysées
+     * @throws IOException          si un fichier ne peut pas être lu ou écrit
+     * @throws InterruptedException si le thread appelant est interrompu ; les analyses en cours continuent
+     */
+    public long analyser(Path entree, Path resultats) throws IOException, InterruptedException {
+        reprendre(entree, resultats);
+        try (BufferedReader lignes = Files.newBufferedReader(entree, StandardCharsets.UTF_8);
+             BufferedWriter ecriture = Files.newBufferedWriter(resultats, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            synchronized (this) {
+                sortie = ecriture;
+            }
+
+            String ligne;
+            long lues = 0;
+            for (long numero = 1; (ligne = lignes.readLine()) != null; numero++) {
+                lues = numero;
+                String coups = ligne.replaceAll("\\s", "");
+                synchronized (this) {
+                    while (numero - prochaine >= FENETRE && erreurSortie == null)
+                        wait();
+                    if (erreurSortie != null)
+                        throw erreurSortie;
+                    if (numero < prochaine || faites[(int) (numero % FENETRE)])
+                        continue; // déjà dans le fichier de sortie
+                    if (ignoree(coups)) {
+                        terminer(numero);
+                        continue;
+                    }
+                }
+                lancer(numero, coups);
+            }
+
+            // attend la fin des analyses en cours
+            synchronized (this) {
+                while (prochaine <= lues && erreurSortie == null)
+                    wait();
+                if (erreurSortie != null)
+                    throw erreurSortie;
+                return analysees;
+            }
+        }
+    }
+
+    /**
+     * Reprend une analyse interrompue : marque comme faites les lignes déjà dans le fichier de sortie, ainsi que les
+     * lignes ignorées qui les précèdent, après avoir retiré la dernière ligne du fichier si elle est incomplète.
+     */
+    private void reprendre(Path entree, Path resultats) throws IOException {
+        if (!Files.exists(resultats))
+            return;
+
+        try (FileChannel canal = FileChannel.open(resultats, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fin = canal.size();
+            ByteBuffer octet = ByteBuffer.allocate(1);
+            for (; fin > 0; fin--) {
+                octet.clear();
+                canal.read(octet, fin - 1);
+                if (octet.get(0) == '\n')
+                    break;
+            }
+            canal.truncate(fin);
+        }
+
+        try (BufferedReader positions = Files.newBufferedReader(entree, StandardCharsets.UTF_8);
+             BufferedReader lignes = Files.newBufferedReader(resultats, StandardCharsets.UTF_8)) {
+            long lues = 0;
+            String ligne;
+            while ((ligne = lignes.readLine()) != null) {
+                int tabulation = ligne.indexOf('\t');
+                long numero;
+                try {
+                    numero = Long.parseLong(ligne.substring(0, Math.max(0, tabulation)));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+
+                // les lignes ignorées n'ont pas de résultat : elles sont faites dès que la suite est lue
+                String position;
+                while (lues < numero && (position = positions.readLine()) != null) {
+                    lues++;
+                    if (ignoree(position.replaceAll("\\s", "")) && lues - prochaine >= 0 && lues - prochaine < FENETRE)
+                        terminer(lues);
+                }
+                if (numero >= prochaine && numero - prochaine < FENETRE)
+                    terminer(numero);
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> si une ligne, sans ses espaces, n'est pas une position
+     */
+    private static boolean ignoree(String coups) {
+        return coups.isEmpty() || coups.startsWith("#");
+    }
+
+    /**
+     * Lance l'analyse d'une ligne dès qu'un thread est disponible.
+     */
+    private void lancer(long numero, String coups) throws InterruptedException {
+        Position position;
+        try {
+            position = Position.depuisCoups(coups);
+            if (position.getFin() != FinDePartie.NON)
+                throw new IllegalArgumentException("La partie est finie");
+        } catch (IllegalArgumentException e) {
+            ecrire(numero, coups + "\terreur\t" + e.getMessage());
+            return;
+        }
+
+        enCours.acquire();
+        try {
+            moteur.analyser(position, tempsmax).whenComplete((r, e) -> {
+                enCours.release();
+                ecrire(numero, ligne(coups, r, e));
+            });
+        } catch (RuntimeException e) {
+            // l'analyse n'a pas pu être lancée (exécuteur arrêté, fichier de sauvegarde illisible...)
+            enCours.release();
+            ecrire(numero, coups + "\terreur\t" + e);
+        }
+    }
+
+    /**
+     * Construit la ligne de résultat d'une analyse finie. Ne lève jamais d'exception : une erreur levée dans le
+     * rappel de l'analyse serait perdue, et la ligne ne serait jamais écrite ni marquée comme faite.
+     *
+     * @param coups    la position analysée
+     * @param resultat le résultat de l'analyse, ou <code>null</code> si elle a échoué
+     * @param erreur   l'erreur de l'analyse, si elle a échoué
+     * @return la ligne, sans son numéro
+     */
+    static String ligne(String coups, ResultatRecherche resultat, Throwable erreur) {
+        try {
+            return resultat != null ? coups + "\t" + resumer(resultat) : coups + "\terreur\t" + erreur;
+        } catch (RuntimeException e) {
+            return coups + "\terreur\t" + e;
+        }
+    }
+
+    /**
+     * @return les colonnes de résultat d'une analyse
+     * @throws IllegalStateException si aucune colonne n'a été analysée
+     */
+    private static String resumer(ResultatRecherche resultat) {
+        int coup = resultat.getCoup();
+        if (coup == -1)
+            throw new IllegalStateException("Aucune colonne analysée");
+        Preuve preuve = resultat.getPreuves()[coup];
+        StringBuilder visites = new StringBuilder();
+        for (int n : resultat.getVisites())
+            visites.append(visites.length() == 0 ? "" : ",").append(n);
+        return String.format(Locale.ROOT, "%d\t%.4f\t%s\t%s", coup + 1, resultat.getTauxVictoire()[coup],
+                preuve == null ? "-" : preuve.name(), visites);
+    }
+
+    /**
+     * Ajoute le résultat d'une ligne au fichier de sortie.
+     */
+    private synchronized void ecrire(long numero, String resultat) {
+        try {
+            sortie.write(numero + "\t" + resultat);
+            sortie.newLine();
+            sortie.flush();
+            analysees++;
+        } catch (IOException e) {
+            erreurSortie = e;
+        }
+        terminer(numero);
+    }
+
+    /**
+     * Marque une ligne comme faite, et avance {@link #prochaine} au-delà des lignes faites.
+     */
+    private synchronized void terminer(long numero) {
+        faites[(int) (numero % FENETRE)] = true;
+        while (faites[(int) (prochaine % FENETRE)]) {
+            faites[(int) (prochaine % FENETRE)] = false;
+            prochaine++;
+        }
+        notifyAll();
+    }
+}
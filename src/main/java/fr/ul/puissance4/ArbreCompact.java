@@ -0,0 +1,389 @@
+package fr.ul.puissance4;
+
+import java.util.Arrays;
+
+/**
+ * Arbre de recherche MCTS stocké dans des tableaux de types primitifs préalloués, plutôt que sous forme d'objets
+ * {@link Noeud}.
+ * <p>
+ * Un noeud est un indice dans ces tableaux, la racine étant le noeud 0. Les enfants d'un noeud sont tous créés en
+ * même temps lors de son développement et occupent des indices consécutifs à partir de {@link #premierEnfant}.
+ * La capacité de l'arbre est fixée à sa création : une fois l'arbre plein, la recherche continue de simuler à
+ * partir des feuilles sans plus rien développer. {@link #reinitialiser(Etat)} vide l'arbre pour le coup suivant,
+ * sans rien réallouer.
+ * <p>
+ * Comme avec les {@link Noeud}, la valeur des noeuds est prouvée au fil de la recherche : les sous-arbres prouvés ne
+ * sont plus visités, et la recherche s'arrête dès que la racine est prouvée.
+ * <p>
+ * Un arbre compact n'est pas thread-safe : chaque thread de recherche doit utiliser le sien.
+ */
+public class ArbreCompact {
+    /**
+     * Valeur de {@link #nbEnfants} pour un noeud qui n'a pas encore été développé.
+     */
+    private static final byte NON_DEVELOPPE = -1;
+    /**
+     * Bit de {@link #etats} indiquant que c'est à l'ordinateur de jouer dans le noeud.
+     */
+    private static final int TRAIT_ORDI = 1 << 2;
+    /**
+     * Masque de {@link #etats} donnant l'état de fin de partie du noeud (indice dans {@link FinDePartie#values()}).
+     */
+    private static final int MASQUE_FIN = TRAIT_ORDI - 1;
+    /**
+     * Position dans {@link #etats} de la valeur prouvée du noeud (indice dans {@link Preuve#values()}), pour le
+     * joueur qui a joué le coup y menant.
+     */
+    private static final int DECALAGE_PREUVE = 3;
+    private static final FinDePartie[] FINS = FinDePartie.values();
+    private static final Preuve[] PREUVES = Preuve.values();
+
+    /**
+     * Le nombre maximum de noeuds de l'arbre.
+     */
+    private final int capacite;
+    /**
+     * Le nombre de simulations passées par chaque noeud.
+     */
+    private final int[] simus;
+    /**
+     * Le nombre de victoires, pour le joueur qui a joué le coup menant à chaque noeud.
+     */
+    private final int[] victoires;
+    /**
+     * L'indice du parent de chaque noeud (-1 pour la racine).
+     */
+    private final int[] parent;
+    /**
+     * L'indice du premier enfant de chaque noeud développé.
+     */
+    private final int[] premierEnfant;
+    /**
+     * Le nombre d'enfants de chaque noeud, ou {@link #NON_DEVELOPPE}.
+     */
+    private final byte[] nbEnfants;
+    /**
+     * La colonne jouée pour arriver à chaque noeud (-1 pour la racine).
+     */
+    private final byte[] coups;
+    /**
+     * L'état de fin de partie, le joueur qui doit jouer et la valeur prouvée de chaque noeud.
+     */
+    private final byte[] etats;
+    /**
+     * Les pions de l'ordinateur dans chaque noeud.
+     */
+    private final long[] pionsOrdi;
+    /**
+     * Les pions de l'humain dans chaque noeud.
+     */
+    private final long[] pionsHumain;
+    /**
+     * Le nombre de noeuds actuellement utilisés.
+     */
+    private int taille;
+    /**
+     * L'état dans lequel sont chargées les positions des noeuds.
+     */
+    private final Etat brouillon = new Etat();
+    /**
+     * La position du noeud en cours de développement, chargée une seule fois puis recopiée dans le
+     * {@link #brouillon} pour chaque enfant : {@link Etat#charger(long, long, int)} recalcule les hauteurs et la clé
+     * de Zobrist, bien plus cher qu'une copie.
+     */
+    private final Etat developpe = new Etat();
+    /**
+     * Les visites de chaque colonne jouée depuis la racine, additionnées sur tous les arbres par
+     * {@link #arreter(GestionTemps, ArbreCompact[])}.
+     */
+    private final int[] visites = new int[Etat.COLONNE];
+    /**
+     * Crée un arbre vide.
+     *
+     * @param capacite le nombre maximum de noeuds
+     */
+    public ArbreCompact(int capacite) {
+        this.capacite = Math.max(1, capacite);
+        simus = new int[this.capacite];
+        victoires = new int[this.capacite];
+        parent = new int[this.capacite];
+        premierEnfant = new int[this.capacite];
+        nbEnfants = new byte[this.capacite];
+        coups = new byte[this.capacite];
+        etats = new byte[this.capacite];
+        pionsOrdi = new long[this.capacite];
+        pionsHumain = new long[this.capacite];
+    }
+
+    /**
+     * Vide l'arbre et y place une nouvelle racine.
+     *
+     * @param racine l'état de la racine (non modifié)
+     */
+    public void reinitialiser(Etat racine) {
+        taille = 0;
+        creer(-1, -1, racine.getPionsOrdi(), racine.getPionsHumain(), racine.getJoueur(), racine.testFin());
+    }
+
+    /**
+     * Développe l'arbre jusqu'à ce que le temps imparti soit écoulé, que le coup le plus visité depuis la racine ne
+     * puisse plus changer ou que la valeur de la racine soit prouvée.
+     * <p>
+     * Quand plusieurs arbres cherchent le même coup en parallèle, le coup le plus visité est celui de leurs
+     * statistiques additionnées : les visites des autres arbres sont lues sans synchronisation, si bien qu'elles
+     * peuvent être en retard, ce qui ne fait que retarder l'arrêt.
+     *
+     * @param simulateur   le simulateur utilisé pour les parties aléatoires
+     * @param exploration  la constante <code>c</code> de UCB1 (voir {@link Noeud})
+     * @param temps        la gestion du temps de la recherche
+     * @param statistiques les mesures de la recherche, complétées par celles de chaque itération
+     * @param arbres       tous les arbres de la recherche, <code>this</code> compris
+     * @return <code>this</code>
+     */
+    public ArbreCompact mcts(Simulateur simulateur, double exploration, GestionTemps temps, StatistiquesRecherche statistiques, ArbreCompact[] arbres) {
+        for (int k = 1; ; k++) {
+            if (!iteration(simulateur, exploration, statistiques))
+                break; // la valeur de la racine est prouvée, inutile de chercher plus loin
+            if (k % GestionTemps.PERIODE_HORLOGE == 0 && arreter(temps, arbres))
+                break;
+        }
+
+        return this;
+    }
+
+    /**
+     * Développe l'arbre d'un nombre fixé d'itérations, ou jusqu'à ce que la valeur de la racine soit prouvée.
+     * <p>
+     * Permet de mesurer la recherche indépendamment de l'horloge.
+     *
+     * @param simulateur   le simulateur utilisé pour les parties aléatoires
+     * @param exploration  la constante <code>c</code> de UCB1 (voir {@link Noeud})
+     * @param iterations   le nombre d'itérations MCTS
+     * @param statistiques les mesures de la recherche, complétées par celles de chaque itération
+     * @return <code>this</code>
+     */
+    public ArbreCompact iterer(Simulateur simulateur, double exploration, int iterations, StatistiquesRecherche statistiques) {
+        for (int k = 0; k < iterations; k++) {
+            if (!iteration(simulateur, exploration, statistiques))
+                break;
+        }
+        return this;
+    }
+
+    /**
+     * Effectue une itération de MCTS : sélection, développement, simulation et propagation.
+     *
+     * @param statistiques les mesures de la recherche, complétées par celles de l'itération
+     * @return <code>false</code> si la valeur de la racine est prouvée et que rien n'a été fait
+     */
+    private boolean iteration(Simulateur simulateur, double exploration, StatistiquesRecherche statistiques) {
+        if (preuve(0) != Preuve.INCONNUE)
+            return false;
+
+        // sélection ; l'horloge n'est lue que si les étapes sont chronométrées
+        final boolean chrono = statistiques.isChronometre();
+        long t0 = chrono ? System.nanoTime() : 0;
+        int n = 0, profondeur = 0;
+        while (nbEnfants[n] > 0 && preuve(n) == Preuve.INCONNUE) {
+            n = selection(n, exploration);
+            profondeur++;
+        }
+
+        // développement : des enfants qui finissent la partie peuvent prouver le noeud et ses ancêtres
+        long t1 = chrono ? System.nanoTime() : 0;
+        if (preuve(n) == Preuve.INCONNUE && nbEnfants[n] == NON_DEVELOPPE && developpement(n)) {
+            remonterPreuve(n);
+            if (preuve(n) == Preuve.INCONNUE) {
+                n = selection(n, exploration);
+                profondeur++;
+            }
+        }
+
+        // simulation, sauf si le résultat est déjà prouvé
+        long t2 = chrono ? System.nanoTime() : 0;
+        boolean aleatoire = preuve(n) == Preuve.INCONNUE;
+        FinDePartie fin = !aleatoire ? preuve(n).resultat(1 - joueur(n)) : simulateur.simuler(charger(n));
+        remonterPreuve(parent[n]);
+
+        // propagation
+        long t3 = chrono ? System.nanoTime() : 0;
+        int gagnant = fin == FinDePartie.ORDI_GAGNE ? Etat.COMPUTER_PLAYER : fin == FinDePartie.HUMAIN_GAGNE ? Etat.HUMAN_PLAYER : -1;
+        for (; n != -1; n = parent[n]) {
+            simus[n]++;
+            if (gagnant != -1 && gagnant != joueur(n))
+                victoires[n]++;
+        }
+
+        statistiques.compterIteration(profondeur, aleatoire, t1 - t0, t2 - t1, t3 - t2, (chrono ? System.nanoTime() : 0) - t3);
+        return true;
+    }
+
+    /**
+     * Vérifie si la recherche doit s'arrêter : le temps imparti est écoulé, ou la deuxième colonne la plus visitée
+     * depuis la racine ne peut plus rattraper la première, leurs visites étant additionnées sur tous les arbres.
+     */
+    private boolean arreter(GestionTemps temps, ArbreCompact[] arbres) {
+        long maintenant = System.nanoTime();
+        if (temps.estEcoule(maintenant))
+            return true;
+        if (!temps.isArretAnticipe())
+            return false;
+
+        Arrays.fill(visites, 0);
+        long simulations = 0;
+        for (ArbreCompact arbre : arbres) {
+            simulations += arbre.simus[0];
+            for (int e = arbre.premierEnfant[0], fin = e + Math.max(0, arbre.nbEnfants[0]); e < fin; e++)
+                visites[arbre.coups[e]] += arbre.simus[e];
+        }
+        return temps.peutArreter(visites, simulations, maintenant);
+    }
+
+    /**
+     * Ajoute les statistiques des enfants de la racine aux statistiques cumulées de chaque colonne.
+     *
+     * @param simus     le nombre de simulations par colonne jouée depuis la racine
+     * @param victoires le nombre de victoires par colonne jouée depuis la racine
+     * @param preuves   la valeur prouvée de chaque colonne jouée depuis la racine, complétée par celles de cet arbre
+     */
+    public void cumulerRacine(int[] simus, int[] victoires, Preuve[] preuves) {
+        for (int k = 0; k < nbEnfants[0]; k++) {
+            int e = premierEnfant[0] + k;
+            simus[coups[e]] += this.simus[e];
+            victoires[coups[e]] += this.victoires[e];
+            if (preuve(e) != Preuve.INCONNUE)
+                preuves[coups[e]] = preuve(e);
+        }
+    }
+
+    /**
+     * @return le nombre de noeuds actuellement utilisés
+     */
+    public int getTaille() {
+        return taille;
+    }
+
+    /**
+     * @return le nombre maximum de noeuds
+     */
+    public int getCapacite() {
+        return capacite;
+    }
+
+    /**
+     * Choisit l'enfant non prouvé à visiter : un enfant jamais visité s'il y en a, sinon celui qui maximise UCB1.
+     *
+     * @param n           le noeud développé et non prouvé dont on choisit un enfant
+     * @param exploration la constante <code>c</code> de UCB1
+     * @return l'indice de l'enfant choisi
+     */
+    private int selection(int n, double exploration) {
+        double logN = Math.log(simus[n]);
+        int best = -1;
+        double val = Double.NEGATIVE_INFINITY;
+
+        for (int e = premierEnfant[n], fin = e + nbEnfants[n]; e < fin; e++) {
+            if (preuve(e) != Preuve.INCONNUE)
+                continue;
+            if (simus[e] == 0)
+                return e;
+            double ucb1 = (double) victoires[e] / simus[e] + exploration * Math.sqrt(logN / simus[e]);
+            if (ucb1 > val) {
+                best = e;
+                val = ucb1;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Prouve un noeud à partir de ses enfants, puis ses ancêtres tant que leur valeur en découle : un noeud est perdu
+     * dès qu'un enfant est gagné par l'adversaire, et gagné (ou nul) quand tous ses enfants sont perdus (ou nuls)
+     * pour l'adversaire.
+     *
+     * @param n le premier noeud à prouver (-1 pour aucun)
+     */
+    private void remonterPreuve(int n) {
+        for (; n != -1 && preuve(n) == Preuve.INCONNUE && nbEnfants[n] > 0; n = parent[n]) {
+            boolean tousProuves = true, nul = false;
+            Preuve p = null;
+            for (int e = premierEnfant[n], fin = e + nbEnfants[n]; e < fin && p == null; e++) {
+                Preuve pe = preuve(e);
+                if (pe == Preuve.VICTOIRE)
+                    p = Preuve.DEFAITE;
+                tousProuves &= pe != Preuve.INCONNUE;
+                nul |= pe == Preuve.NUL;
+            }
+            if (p == null && !tousProuves)
+                return;
+            prouver(n, p != null ? p : nul ? Preuve.NUL : Preuve.VICTOIRE);
+        }
+    }
+
+    /**
+     * Crée tous les enfants d'un noeud, s'il reste assez de place dans l'arbre.
+     *
+     * @param n le noeud à développer
+     * @return <code>true</code> si le noeud a été développé, <code>false</code> si l'arbre est plein
+     */
+    private boolean developpement(int n) {
+        if (taille + Etat.COLONNE > capacite)
+            return false;
+
+        int premier = taille;
+        developpe.charger(pionsOrdi[n], pionsHumain[n], joueur(n));
+        for (int jouables = developpe.colonnesJouables(); jouables != 0; jouables &= jouables - 1) {
+            int j = Integer.numberOfTrailingZeros(jouables);
+            brouillon.copier(developpe);
+            FinDePartie fin = brouillon.jouerCoupEtTester(j);
+            creer(n, j, brouillon.getPionsOrdi(), brouillon.getPionsHumain(), brouillon.getJoueur(), fin);
+        }
+        premierEnfant[n] = premier;
+        nbEnfants[n] = (byte) (taille - premier);
+        return true;
+    }
+
+    /**
+     * Ajoute un noeud non développé à la fin de l'arbre.
+     */
+    private void creer(int parent, int coup, long pionsOrdi, long pionsHumain, int joueur, FinDePartie fin) {
+        int n = taille++;
+        this.simus[n] = 0;
+        this.victoires[n] = 0;
+        this.parent[n] = parent;
+        this.premierEnfant[n] = 0;
+        this.nbEnfants[n] = NON_DEVELOPPE;
+        this.coups[n] = (byte) coup;
+        this.etats[n] = (byte) (fin.ordinal() | (joueur == Etat.COMPUTER_PLAYER ? TRAIT_ORDI : 0) | (Preuve.de(fin, 1 - joueur).ordinal() << DECALAGE_PREUVE));
+        this.pionsOrdi[n] = pionsOrdi;
+        this.pionsHumain[n] = pionsHumain;
+    }
+
+    /**
+     * @return le joueur qui doit jouer dans le noeud <code>n</code>
+     */
+    private int joueur(int n) {
+        return (etats[n] & TRAIT_ORDI) != 0 ? Etat.COMPUTER_PLAYER : Etat.HUMAN_PLAYER;
+    }
+
+    /**
+     * @return la valeur prouvée du noeud <code>n</code>, pour le joueur qui a joué le coup y menant
+     */
+    private Preuve preuve(int n) {
+        return PREUVES[etats[n] >>> DECALAGE_PREUVE];
+    }
+
+    private void prouver(int n, Preuve preuve) {
+        etats[n] = (byte) ((etats[n] & (TRAIT_ORDI | MASQUE_FIN)) | (preuve.ordinal() << DECALAGE_PREUVE));
+    }
+
+    /**
+     * Charge la position d'un noeud dans le {@link #brouillon}.
+     *
+     * @return le brouillon
+     */
+    private Etat charger(int n) {
+        brouillon.charger(pionsOrdi[n], pionsHumain[n], joueur(n));
+        return brouillon;
+    }
+}
@@ -0,0 +1,379 @@
+package fr.ul.puissance4;
+
+import java.util.Arrays;
+
+/**
+ * Arbre de recherche MCTS sur une {@link Grille}, de {@link Dimensions} quelconques, stocké dans des tableaux de types
+ * primitifs préalloués comme un {@link ArbreCompact}.
+ * <p>
+ * Un noeud est un indice dans ces tableaux, la racine étant le noeud 0, et les enfants d'un noeud occupent des indices
+ * consécutifs à partir de {@link #premierEnfant}. Contrairement à un {@link ArbreCompact}, les noeuds ne gardent pas
+ * leur position, dont les masques peuvent occuper plusieurs mots : chaque itération recopie la racine dans un plateau
+ * de brouillon et y rejoue les coups menant au noeud sélectionné. La capacité de l'arbre est fixée à sa création :
+ * une fois l'arbre plein, la recherche continue de simuler à partir des feuilles sans plus rien développer.
+ * <p>
+ * La valeur des noeuds est prouvée au fil de la recherche : les sous-arbres prouvés ne sont plus visités, et la
+ * recherche s'arrête dès que la racine est prouvée.
+ * <p>
+ * Un arbre n'est pas thread-safe : chaque thread de recherche doit utiliser le sien.
+ */
+public class ArbreGrille {
+    /**
+     * Valeur de {@link #nbEnfants} pour un noeud qui n'a pas encore été développé.
+     */
+    private static final byte NON_DEVELOPPE = -1;
+    /**
+     * Bit de {@link #etats} indiquant que c'est à l'ordinateur de jouer dans le noeud.
+     */
+    private static final int TRAIT_ORDI = 1 << 2;
+    /**
+     * Masque de {@link #etats} donnant l'état de fin de partie du noeud (indice dans {@link FinDePartie#values()}).
+     */
+    private static final int MASQUE_FIN = TRAIT_ORDI - 1;
+    /**
+     * Position dans {@link #etats} de la valeur prouvée du noeud (indice dans {@link Preuve#values()}), pour le
+     * joueur qui a joué le coup y menant.
+     */
+    private static final int DECALAGE_PREUVE = 3;
+    private static final Preuve[] PREUVES = Preuve.values();
+
+    private final Dimensions dimensions;
+    /**
+     * Le nombre maximum de noeuds de l'arbre.
+     */
+    private final int capacite;
+    /**
+     * Le nombre de simulations passées par chaque noeud.
+     */
+    private final int[] simus;
+    /**
+     * Le nombre de victoires, pour le joueur qui a joué le coup menant à chaque noeud.
+     */
+    private final int[] victoires;
+    /**
+     * L'indice du parent de chaque noeud (-1 pour la racine).
+     */
+    private final int[] parent;
+    /**
+     * L'indice du premier enfant de chaque noeud développé.
+     */
+    private final int[] premierEnfant;
+    /**
+     * Le nombre d'enfants de chaque noeud, ou {@link #NON_DEVELOPPE}.
+     */
+    private final byte[] nbEnfants;
+    /**
+     * La colonne jouée pour arriver à chaque noeud (-1 pour la racine).
+     */
+    private final byte[] coups;
+    /**
+     * L'état de fin de partie, le joueur qui doit jouer et la valeur prouvée de chaque noeud.
+     */
+    private final byte[] etats;
+    /**
+     * Le nombre de noeuds actuellement utilisés.
+     */
+    private int taille;
+    /**
+     * La position de la racine.
+     */
+    private final Grille racine;
+    /**
+     * Le plateau sur lequel sont rejoués les coups menant au noeud sélectionné.
+     */
+    private final Grille brouillon;
+    /**
+     * Le plateau sur lequel est joué le coup de chaque enfant lors d'un développement.
+     */
+    private final Grille enfant;
+    /**
+     * Les colonnes jouables dans le {@link #brouillon}, remplies lors d'un développement.
+     */
+    private final int[] jouables;
+    /**
+     * Les visites de chaque colonne jouée depuis la racine, remplies par {@link #arreter(GestionTemps)}.
+     */
+    private final int[] visites;
+
+    /**
+     * Crée un arbre vide.
+     *
+     * @param dimensions les dimensions des plateaux de la recherche
+     * @param capacite   le nombre maximum de noeuds
+     */
+    public ArbreGrille(Dimensions dimensions, int capacite) {
+        this.dimensions = dimensions;
+        this.capacite = Math.max(1, capacite);
+        simus = new int[this.capacite];
+        victoires = new int[this.capacite];
+        parent = new int[this.capacite];
+        premierEnfant = new int[this.capacite];
+        nbEnfants = new byte[this.capacite];
+        coups = new byte[this.capacite];
+        etats = new byte[this.capacite];
+        racine = Grille.creer(dimensions);
+        brouillon = Grille.creer(dimensions);
+        enfant = Grille.creer(dimensions);
+        jouables = new int[dimensions.getColonnes()];
+        visites = new int[dimensions.getColonnes()];
+    }
+
+    /**
+     * Vide l'arbre et y place une nouvelle racine.
+     *
+     * @param racine la position de la racine (non modifiée), des dimensions de l'arbre
+     * @throws IllegalArgumentException si les dimensions sont différentes
+     */
+    public void reinitialiser(Grille racine) {
+        this.racine.copier(racine);
+        taille = 0;
+        creer(-1, -1, racine.getJoueur(), racine.getFin());
+    }
+
+    /**
+     * Développe l'arbre d'une tranche d'itérations, sur le thread appelant.
+     *
+     * @param simulateur   le simulateur utilisé pour les parties aléatoires, des dimensions de l'arbre
+     * @param exploration  la constante <code>c</code> de UCB1 (voir {@link Noeud})
+     * @param temps        la gestion du temps de toute la recherche
+     * @param iterations   le nombre d'itérations MCTS de la tranche
+     * @param statistiques les mesures de la recherche, complétées par celles de la tranche
+     * @return <code>true</code> si la recherche est finie : la valeur de la racine est prouvée, le temps imparti est
+     * écoulé ou le coup le plus visité ne peut plus changer
+     */
+    public boolean developper(SimulateurGrille simulateur, double exploration, GestionTemps temps, int iterations, StatistiquesRecherche statistiques) {
+        for (int k = 1; k <= iterations; k++) {
+            if (!iteration(simulateur, exploration, statistiques))
+                return true; // la valeur de la racine est prouvée
+
+            if (k % GestionTemps.PERIODE_HORLOGE == 0 && arreter(temps))
+                return true;
+        }
+        return arreter(temps);
+    }
+
+    /**
+     * Effectue une itération de MCTS : sélection, développement, simulation et propagation.
+     *
+     * @param statistiques les mesures de la recherche, complétées par celles de l'itération
+     * @return <code>false</code> si la valeur de la racine est prouvée et que rien n'a été fait
+     */
+    private boolean iteration(SimulateurGrille simulateur, double exploration, StatistiquesRecherche statistiques) {
+        if (preuve(0) != Preuve.INCONNUE)
+            return false;
+
+        // sélection, en rejouant les coups depuis la racine ; l'horloge n'est lue que si les étapes sont chronométrées
+        final boolean chrono = statistiques.isChronometre();
+        long t0 = chrono ? System.nanoTime() : 0;
+        brouillon.copier(racine);
+        int n = 0, profondeur = 0;
+        while (nbEnfants[n] > 0 && preuve(n) == Preuve.INCONNUE) {
+            n = selection(n, exploration);
+            brouillon.jouer(coups[n]);
+            profondeur++;
+        }
+
+        // développement : des enfants qui finissent la partie peuvent prouver le noeud et ses ancêtres
+        long t1 = chrono ? System.nanoTime() : 0;
+        if (preuve(n) == Preuve.INCONNUE && nbEnfants[n] == NON_DEVELOPPE && developpement(n)) {
+            remonterPreuve(n);
+            if (preuve(n) == Preuve.INCONNUE) {
+                n = selection(n, exploration);
+                brouillon.jouer(coups[n]);
+                profondeur++;
+            }
+        }
+
+        // simulation, sauf si le résultat est déjà prouvé
+        long t2 = chrono ? System.nanoTime() : 0;
+        boolean aleatoire = preuve(n) == Preuve.INCONNUE;
+        FinDePartie fin = !aleatoire ? preuve(n).resultat(1 - joueur(n)) : simulateur.simuler(brouillon);
+        remonterPreuve(parent[n]);
+
+        // propagation
+        long t3 = chrono ? System.nanoTime() : 0;
+        int gagnant = fin == FinDePartie.ORDI_GAGNE ? Etat.COMPUTER_PLAYER : fin == FinDePartie.HUMAIN_GAGNE ? Etat.HUMAN_PLAYER : -1;
+        for (; n != -1; n = parent[n]) {
+            simus[n]++;
+            if (gagnant != -1 && gagnant != joueur(n))
+                victoires[n]++;
+        }
+
+        statistiques.compterIteration(profondeur, aleatoire, t1 - t0, t2 - t1, t3 - t2, (chrono ? System.nanoTime() : 0) - t3);
+        return true;
+    }
+
+    /**
+     * Vérifie si la recherche doit s'arrêter : le temps imparti est écoulé, ou la deuxième colonne la plus visitée
+     * depuis la racine ne peut plus rattraper la première.
+     */
+    private boolean arreter(GestionTemps temps) {
+        long maintenant = System.nanoTime();
+        if (temps.estEcoule(maintenant))
+            return true;
+        if (!temps.isArretAnticipe())
+            return false;
+
+        Arrays.fill(visites, 0);
+        for (int e = premierEnfant[0], fin = e + Math.max(0, nbEnfants[0]); e < fin; e++)
+            visites[coups[e]] = simus[e];
+        return temps.peutArreter(visites, simus[0], maintenant);
+    }
+
+    /**
+     * Ajoute les statistiques des enfants de la racine aux statistiques cumulées de chaque colonne.
+     *
+     * @param simus     le nombre de simulations par colonne jouée depuis la racine
+     * @param victoires le nombre de victoires par colonne jouée depuis la racine
+     * @param preuves   la valeur prouvée de chaque colonne jouée depuis la racine, complétée par celles de cet arbre
+     */
+    public void cumulerRacine(int[] simus, int[] victoires, Preuve[] preuves) {
+        for (int k = 0; k < nbEnfants[0]; k++) {
+            int e = premierEnfant[0] + k;
+            simus[coups[e]] += this.simus[e];
+            victoires[coups[e]] += this.victoires[e];
+            if (preuve(e) != Preuve.INCONNUE)
+                preuves[coups[e]] = preuve(e);
+        }
+    }
+
+    /**
+     * @return les colonnes jouées en suivant à chaque coup l'enfant le plus visité, depuis la racine
+     */
+    public int[] variantePrincipale() {
+        int[] variante = new int[dimensions.getCases()];
+        int l = 0;
+        for (int n = 0; nbEnfants[n] > 0; ) {
+            int suivant = -1;
+            for (int e = premierEnfant[n], fin = e + nbEnfants[n]; e < fin; e++) {
+                if (simus[e] > 0 && (suivant == -1 || simus[e] > simus[suivant]))
+                    suivant = e;
+            }
+            if (suivant == -1)
+                break;
+            variante[l++] = coups[suivant];
+            n = suivant;
+        }
+        return Arrays.copyOf(variante, l);
+    }
+
+    public Dimensions getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * @return le nombre de noeuds actuellement utilisés
+     */
+    public int getTaille() {
+        return taille;
+    }
+
+    /**
+     * @return le nombre maximum de noeuds
+     */
+    public int getCapacite() {
+        return capacite;
+    }
+
+    /**
+     * Choisit l'enfant non prouvé à visiter : un enfant jamais visité s'il y en a, sinon celui qui maximise UCB1.
+     *
+     * @param n           le noeud développé et non prouvé dont on choisit un enfant
+     * @param exploration la constante <code>c</code> de UCB1
+     * @return l'indice de l'enfant choisi
+     */
+    private int selection(int n, double exploration) {
+        double logN = Math.log(simus[n]);
+        int best = -1;
+        double val = Double.NEGATIVE_INFINITY;
+
+        for (int e = premierEnfant[n], fin = e + nbEnfants[n]; e < fin; e++) {
+            if (preuve(e) != Preuve.INCONNUE)
+                continue;
+            if (simus[e] == 0)
+                return e;
+            double ucb1 = (double) victoires[e] / simus[e] + exploration * Math.sqrt(logN / simus[e]);
+            if (ucb1 > val) {
+                best = e;
+                val = ucb1;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Prouve un noeud à partir de ses enfants, puis ses ancêtres tant que leur valeur en découle, comme
+     * {@link ArbreCompact}.
+     *
+     * @param n le premier noeud à prouver (-1 pour aucun)
+     */
+    private void remonterPreuve(int n) {
+        for (; n != -1 && preuve(n) == Preuve.INCONNUE && nbEnfants[n] > 0; n = parent[n]) {
+            boolean tousProuves = true, nul = false;
+            Preuve p = null;
+            for (int e = premierEnfant[n], fin = e + nbEnfants[n]; e < fin && p == null; e++) {
+                Preuve pe = preuve(e);
+                if (pe == Preuve.VICTOIRE)
+                    p = Preuve.DEFAITE;
+                tousProuves &= pe != Preuve.INCONNUE;
+                nul |= pe == Preuve.NUL;
+            }
+            if (p == null && !tousProuves)
+                return;
+            prouver(n, p != null ? p : nul ? Preuve.NUL : Preuve.VICTOIRE);
+        }
+    }
+
+    /**
+     * Crée tous les enfants d'un noeud, s'il reste assez de place dans l'arbre.
+     *
+     * @param n le noeud à développer, dont la position est dans le {@link #brouillon}
+     * @return <code>true</code> si le noeud a été développé, <code>false</code> si l'arbre est plein
+     */
+    private boolean developpement(int n) {
+        if (taille + jouables.length > capacite)
+            return false;
+
+        int premier = taille;
+        for (int k = 0, nb = brouillon.colonnesJouables(jouables); k < nb; k++) {
+            enfant.copier(brouillon);
+            FinDePartie fin = enfant.jouer(jouables[k]);
+            creer(n, jouables[k], enfant.getJoueur(), fin);
+        }
+        premierEnfant[n] = premier;
+        nbEnfants[n] = (byte) (taille - premier);
+        return true;
+    }
+
+    /**
+     * Ajoute un noeud non développé à la fin de l'arbre.
+     */
+    private void creer(int parent, int coup, int joueur, FinDePartie fin) {
+        int n = taille++;
+        this.simus[n] = 0;
+        this.victoires[n] = 0;
+        this.parent[n] = parent;
+        this.premierEnfant[n] = 0;
+        this.nbEnfants[n] = NON_DEVELOPPE;
+        this.coups[n] = (byte) coup;
+        this.etats[n] = (byte) (fin.ordinal() | (joueur == Etat.COMPUTER_PLAYER ? TRAIT_ORDI : 0) | (Preuve.de(fin, 1 - joueur).ordinal() << DECALAGE_PREUVE));
+    }
+
+    /**
+     * @return le joueur qui doit jouer dans le noeud <code>n</code>
+     */
+    private int joueur(int n) {
+        return (etats[n] & TRAIT_ORDI) != 0 ? Etat.COMPUTER_PLAYER : Etat.HUMAN_PLAYER;
+    }
+
+    /**
+     * @return la valeur prouvée du noeud <code>n</code>, pour le joueur qui a joué le coup y menant
+     */
+    private Preuve preuve(int n) {
+        return PREUVES[etats[n] >>> DECALAGE_PREUVE];
+    }
+
+    private void prouver(int n, Preuve preuve) {
+        etats[n] = (byte) ((etats[n] & (TRAIT_ORDI | MASQUE_FIN)) | (preuve.ordinal() << DECALAGE_PREUVE));
+    }
+}
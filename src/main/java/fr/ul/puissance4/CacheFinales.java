@@ -0,0 +1,136 @@
+package fr.ul.puissance4;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Cache persistant des positions résolues : pour chaque position dont le résultat a été prouvé (par le
+ * {@link Solveur} ou par la recherche MCTS), le résultat pour le joueur qui a le trait et la colonne à jouer.
+ * <p>
+ * Le cache est une table de hachage à adressage ouvert, de taille fixe, stockée dans un fichier projeté en mémoire :
+ * les positions résolues par une partie restent connues des parties suivantes, et l'ouverture du fichier ne lit
+ * rien. Le fichier commence par {@link #MAGIQUE}, suivi d'une case de 8 octets par entrée (0 pour une case vide) :
+ * la clé canonique de la position (comme dans le {@link LivreOuvertures}) dans les 7 octets de poids fort, le signe
+ * du score (plus 1) dans les bits 3 et 4 de l'octet de poids faible, la colonne dans ses 3 bits de poids faible.
+ * <p>
+ * Un cache peut être lu par plusieurs threads à la fois, mais ne doit être rempli que par un seul.
+ */
+public class CacheFinales {
+    /**
+     * Les 8 premiers octets d'un fichier de cache (« P4FINAL » suivi de la version du format).
+     */
+    static final long MAGIQUE = 0x50_34_46_49_4E_41_4C_01L;
+    /**
+     * Le nombre de cases examinées à partir de la case d'une clé avant d'abandonner.
+     */
+    private static final int SONDES = 8;
+
+    /**
+     * Les cases de la table, projetées depuis le fichier.
+     */
+    private final LongBuffer cases;
+    private final int masque;
+    private final int decalage;
+
+    private CacheFinales(MappedByteBuffer fichier) {
+        fichier.position(Long.BYTES);
+        this.cases = fichier.slice().asLongBuffer();
+        this.masque = cases.limit() - 1;
+        this.decalage = Long.SIZE - Integer.numberOfTrailingZeros(cases.limit());
+    }
+
+    /**
+     * Ouvre un cache, en créant le fichier s'il n'existe pas.
+     *
+     * @param chemin     le fichier du cache
+     * @param megaOctets la taille du fichier à créer, en Mo (un fichier existant garde sa taille)
+     * @return le cache
+     * @throws UncheckedIOException     si le fichier ne peut pas être lu ou créé
+     * @throws IllegalArgumentException si le fichier n'est pas un cache de positions résolues
+     */
+    public static CacheFinales ouvrir(Path chemin, int megaOctets) {
+        try (FileChannel canal = FileChannel.open(chemin, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            boolean nouveau = canal.size() == 0;
+            long taille = nouveau
+                    ? Long.BYTES + Long.BYTES * Math.min(1L << 27, Math.max(SONDES, Long.highestOneBit((long) megaOctets * 1024 * 1024 / Long.BYTES)))
+                    : canal.size();
+            long nbCases = (taille - Long.BYTES) / Long.BYTES;
+            if (nbCases < SONDES || Long.bitCount(nbCases) != 1 || taille != Long.BYTES * (nbCases + 1))
+                throw new IllegalArgumentException(chemin + " n'est pas un cache de positions résolues");
+
+            MappedByteBuffer octets = canal.map(FileChannel.MapMode.READ_WRITE, 0, taille);
+            if (nouveau)
+                octets.putLong(0, MAGIQUE);
+            else if (octets.getLong(0) != MAGIQUE)
+                throw new IllegalArgumentException(chemin + " n'est pas un cache de positions résolues");
+            return new CacheFinales(octets);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Cherche une position dans le cache.
+     *
+     * @param etat la position
+     * @return sa solution (seul le signe du score est conservé), ou <code>null</code> si elle n'est pas résolue
+     */
+    public Solveur.Solution chercher(Etat etat) {
+        long cle = etat.getClePosition();
+        long sym = Etat.symetrique(cle);
+        long canonique = Math.min(cle, sym);
+
+        for (int k = 0, i = indice(canonique); k < SONDES; k++, i = (i + 1) & masque) {
+            long entree = cases.get(i);
+            if (entree == 0)
+                return null;
+            if (entree >>> Byte.SIZE == canonique) {
+                int colonne = (int) (entree & 0x7);
+                int score = (int) ((entree >>> 3) & 0x3) - 1;
+                return new Solveur.Solution(sym < cle ? Etat.COLONNE - 1 - colonne : colonne, score);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Ajoute une position résolue au cache. Si toutes les cases où elle pourrait aller sont occupées, elle remplace
+     * l'entrée de sa première case.
+     *
+     * @param etat     la position
+     * @param solution sa solution
+     */
+    public void ajouter(Etat etat, Solveur.Solution solution) {
+        long cle = etat.getClePosition();
+        long sym = Etat.symetrique(cle);
+        long canonique = Math.min(cle, sym);
+        int colonne = sym < cle ? Etat.COLONNE - 1 - solution.getColonne() : solution.getColonne();
+        long entree = (canonique << Byte.SIZE) | ((long) (Integer.signum(solution.getScore()) + 1) << 3) | colonne;
+
+        int premiere = indice(canonique);
+        for (int k = 0, i = premiere; k < SONDES; k++, i = (i + 1) & masque) {
+            long occupant = cases.get(i);
+            if (occupant == 0 || occupant >>> Byte.SIZE == canonique) {
+                cases.put(i, entree);
+                return;
+            }
+        }
+        cases.put(premiere, entree);
+    }
+
+    /**
+     * @return le nombre d'entrées que peut contenir le cache
+     */
+    public int getCapacite() {
+        return cases.limit();
+    }
+
+    private int indice(long canonique) {
+        return (int) ((canonique * 0x9E37_79B9_7F4A_7C15L) >>> decalage) & masque;
+    }
+}
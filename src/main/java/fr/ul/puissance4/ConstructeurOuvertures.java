@@ -0,0 +1,126 @@
+package fr.ul.puissance4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Construit hors ligne un {@link LivreOuvertures} : chaque position atteignable en au plus <code>profondeur</code>
+ * coups (à une symétrie près) est analysée par une longue recherche MCTS, et le coup choisi est écrit dans le livre.
+ * <p>
+ * Usage : <code>java fr.ul.puissance4.ConstructeurOuvertures [profondeur] [temps par position en ms] [threads]
+ * [fichier]</code>
+ */
+public class ConstructeurOuvertures {
+    public static void main(String[] args) throws IOException {
+        int profondeur = 4;
+        long temps = 5000L;
+        String fichier = "ouvertures.bin";
+        Parametres parametres = new Parametres();
+        parametres.setNbThreads(Runtime.getRuntime().availableProcessors());
+        parametres.setTailleTable(64);
+        if (args.length >= 1) {
+            profondeur = Integer.parseInt(args[0]);
+        }
+        if (args.length >= 2) {
+            temps = Long.parseLong(args[1]);
+        }
+        if (args.length >= 3) {
+            parametres.setNbThreads(Integer.parseInt(args[2]));
+        }
+        if (args.length >= 4) {
+            fichier = args[3];
+        }
+
+        List<Etat> positions = positions(profondeur);
+        System.out.println(positions.size() + " positions à analyser (" + temps + " ms chacune)");
+
+        long[] entrees = new long[positions.size()];
+        for (int i = 0; i < positions.size(); i++) {
+            entrees[i] = analyser(positions.get(i), temps, parametres);
+            System.out.print("\r" + (i + 1) + " / " + positions.size());
+            System.out.flush();
+        }
+        System.out.println();
+        Arrays.sort(entrees);
+
+        ByteBuffer octets = ByteBuffer.allocate(Long.BYTES * (entrees.length + 1));
+        octets.putLong(LivreOuvertures.MAGIQUE);
+        for (long entree : entrees)
+            octets.putLong(entree);
+        octets.flip();
+        try (FileChannel canal = FileChannel.open(Paths.get(fichier), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (octets.hasRemaining())
+                canal.write(octets);
+        }
+        System.out.println("Livre écrit dans " + fichier);
+    }
+
+    /**
+     * Énumère les positions non finies atteignables en au plus <code>profondeur</code> coups depuis le plateau vide,
+     * en ne gardant qu'une position de chaque paire de positions symétriques.
+     *
+     * @param profondeur le nombre maximum de pions posés
+     * @return les positions, par nombre de pions croissant
+     */
+    private static List<Etat> positions(int profondeur) {
+        List<Etat> positions = new ArrayList<>();
+        Set<Long> vues = new HashSet<>();
+        List<Etat> niveau = new ArrayList<>();
+        niveau.add(new Etat());
+        vues.add(new Etat().getClePosition());
+
+        for (int d = 0; d <= profondeur; d++) {
+            positions.addAll(niveau);
+            if (d == profondeur)
+                break;
+
+            List<Etat> suivant = new ArrayList<>();
+            for (Etat etat : niveau) {
+                for (int jouables = etat.colonnesJouables(); jouables != 0; jouables &= jouables - 1) {
+                    Etat enfant = etat.copieEtat();
+                    if (enfant.jouerCoupEtTester(Integer.numberOfTrailingZeros(jouables)) != FinDePartie.NON)
+                        continue;
+                    long cle = enfant.getClePosition();
+                    if (vues.add(Math.min(cle, Etat.symetrique(cle))))
+                        suivant.add(enfant);
+                }
+            }
+            niveau = suivant;
+        }
+        return positions;
+    }
+
+    /**
+     * Cherche le meilleur coup d'une position.
+     *
+     * @param position   la position à analyser
+     * @param temps      la durée de la recherche, en ms
+     * @param parametres les réglages de la recherche
+     * @return l'entrée du livre pour cette position
+     */
+    private static long analyser(Etat position, long temps, Parametres parametres) {
+        // la recherche se fait toujours du point de vue de l'ordinateur : il prend la place du joueur qui a le trait
+        Etat etat = new Etat();
+        if (position.getJoueur() == Etat.COMPUTER_PLAYER)
+            etat.charger(position.getPionsOrdi(), position.getPionsHumain(), Etat.COMPUTER_PLAYER);
+        else
+            etat.charger(position.getPionsHumain(), position.getPionsOrdi(), Etat.COMPUTER_PLAYER);
+
+        StatistiquesRecherche statistiques = new StatistiquesRecherche();
+        TableTransposition table = parametres.getTailleTable() > 0 ? new TableTransposition(parametres.getTailleTable()) : null;
+        etat.rechercher(temps, parametres, table, null, statistiques);
+        int colonne = Etat.choisirColonne(statistiques.getSimusRacine(), statistiques.getVictoiresRacine(), statistiques.getPreuvesRacine(), parametres.isGestionTemps());
+
+        long cle = etat.getClePosition();
+        long sym = Etat.symetrique(cle);
+        return sym < cle ? LivreOuvertures.entree(sym, Etat.COLONNE - 1 - colonne) : LivreOuvertures.entree(cle, colonne);
+    }
+}
@@ -4,6 +4,16 @@ import java.util.Objects;
 import java.util.Scanner;
 
 public class Coup {
+    /**
+     * Les coups partagés renvoyés par {@link #de(int)}, un par colonne.
+     */
+    private static final Coup[] COUPS = new Coup[Long.SIZE];
+
+    static {
+        for (int j = 0; j < COUPS.length; j++)
+            COUPS[j] = new Coup(j);
+    }
+
     /* Le joueur ne peut choisir que la colonne dans le puissance 4.*/
     private final int colonne;
 
@@ -11,6 +21,16 @@ public class Coup {
         colonne = j;
     }
 
+    /**
+     * Récupère le coup partagé correspondant à une colonne, sans allocation.
+     *
+     * @param j le numéro de la colonne
+     * @return le coup jouant dans cette colonne
+     */
+    public static Coup de(int j) {
+        return j >= 0 && j < COUPS.length ? COUPS[j] : new Coup(j);
+    }
+
     /**
      * Récupère la colonne jouée dans le coup
      * @return le numéro de la colonne
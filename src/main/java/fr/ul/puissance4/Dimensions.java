@@ -0,0 +1,104 @@
+package fr.ul.puissance4;
+
+/**
+ * Les dimensions d'une variante du puissance 4 : nombre de colonnes, de lignes, et nombre de pions à aligner pour
+ * gagner.
+ * <p>
+ * Le jeu standard ({@link #STANDARD}) est celui de {@link Etat} ; les autres variantes se jouent sur une
+ * {@link Grille}.
+ */
+public final class Dimensions {
+    /**
+     * Le puissance 4 standard : 7 colonnes, 6 lignes, 4 pions à aligner.
+     */
+    public static final Dimensions STANDARD = new Dimensions(Etat.COLONNE, Etat.LIGNE, 4);
+
+    private final int colonnes;
+    private final int lignes;
+    private final int alignement;
+
+    /**
+     * @param colonnes   le nombre de colonnes
+     * @param lignes     le nombre de lignes
+     * @param alignement le nombre de pions à aligner pour gagner
+     * @throws IllegalArgumentException si une dimension est hors limites, ou si aucun alignement n'est possible
+     */
+    public Dimensions(int colonnes, int lignes, int alignement) {
+        if (colonnes < 1 || colonnes > 64 || lignes < 1 || lignes > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("Plateau invalide : " + colonnes + "x" + lignes);
+        if (alignement < 2 || alignement > Math.max(colonnes, lignes))
+            throw new IllegalArgumentException("Alignement de " + alignement + " impossible sur " + colonnes + "x" + lignes);
+        this.colonnes = colonnes;
+        this.lignes = lignes;
+        this.alignement = alignement;
+    }
+
+    /**
+     * Lit des dimensions écrites <code>colonnes x lignes [x alignement]</code>, par exemple <code>9x7</code> ou
+     * <code>10x8x5</code> ; l'alignement vaut 4 s'il est absent.
+     *
+     * @param texte les dimensions
+     * @return les dimensions lues
+     * @throws IllegalArgumentException si le texte n'est pas de cette forme ou les dimensions sont invalides
+     */
+    public static Dimensions lire(String texte) {
+        String[] valeurs = texte.trim().split("[x×]");
+        if (valeurs.length != 2 && valeurs.length != 3)
+            throw new IllegalArgumentException("Dimensions invalides : " + texte);
+        return new Dimensions(Integer.parseInt(valeurs[0]), Integer.parseInt(valeurs[1]),
+                valeurs.length == 3 ? Integer.parseInt(valeurs[2]) : 4);
+    }
+
+    public int getColonnes() {
+        return colonnes;
+    }
+
+    public int getLignes() {
+        return lignes;
+    }
+
+    public int getAlignement() {
+        return alignement;
+    }
+
+    /**
+     * @return le nombre de bits réservés à chaque colonne dans les masques de pions : une case par ligne plus une case
+     * sentinelle toujours vide, comme dans {@link Etat}
+     */
+    public int getHauteur() {
+        return lignes + 1;
+    }
+
+    /**
+     * @return le nombre de cases du plateau
+     */
+    public int getCases() {
+        return lignes * colonnes;
+    }
+
+    /**
+     * @return <code>true</code> si les pions d'un joueur tiennent dans un seul <code>long</code>, sentinelles
+     * comprises
+     */
+    public boolean tientSurUnMot() {
+        return colonnes * getHauteur() <= Long.SIZE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Dimensions that = (Dimensions) o;
+        return colonnes == that.colonnes && lignes == that.lignes && alignement == that.alignement;
+    }
+
+    @Override
+    public int hashCode() {
+        return (colonnes * 31 + lignes) * 31 + alignement;
+    }
+
+    @Override
+    public String toString() {
+        return colonnes + "x" + lignes + "x" + alignement;
+    }
+}
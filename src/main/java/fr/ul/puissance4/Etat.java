@@ -1,7 +1,14 @@
 package fr.ul.puissance4;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class Etat {
     public static final int LIGNE = 6;
@@ -11,15 +18,128 @@ public class Etat {
     private static final int STRAT_MAX = 0;
     private static final int STRAT_ROBUSTE = 1;
     /**
-     * L'état actuel de la grille du puissance 4.
+     * Nombre de bits réservés à chaque colonne dans les masques : une case par ligne plus une case
+     * sentinelle toujours vide, qui empêche les alignements de « déborder » d'une colonne sur la suivante.
+     */
+    private static final int HAUTEUR = LIGNE + 1;
+    /**
+     * Masque contenant la case du bas de chaque colonne.
+     */
+    private static final long BAS = basPlateau();
+    /**
+     * Masque contenant toutes les cases jouables du plateau (sentinelles exclues).
+     */
+    private static final long PLATEAU_PLEIN = BAS * ((1L << LIGNE) - 1);
+    /**
+     * Les clés de Zobrist de chaque case, pour chaque joueur : <code>ZOBRIST[joueur][case]</code>.
+     */
+    private static final long[][] ZOBRIST = new long[2][COLONNE * HAUTEUR];
+    /**
+     * La clé de Zobrist ajoutée lorsque c'est à l'ordinateur de jouer.
+     */
+    private static final long ZOBRIST_TRAIT;
+
+    static {
+        SplittableRandom alea = new SplittableRandom(0x50_75_69_73_73_34L);
+        for (long[] cles : ZOBRIST) {
+            for (int k = 0; k < cles.length; k++)
+                cles[k] = alea.nextLong();
+        }
+        ZOBRIST_TRAIT = alea.nextLong();
+    }
+    /**
+     * Les pions de l'ordinateur (<code>X</code>), sous forme de masque de bits.
      * <p>
-     * Taille : {@link #LIGNE} × {@link #COLONNE}
+     * La case de la colonne <code>j</code> située à <code>r</code> cases du bas correspond au bit
+     * <code>j × {@link #HAUTEUR} + r</code>.
+     */
+    private long pionsOrdi;
+    /**
+     * Les pions de l'humain (<code>O</code>), sous forme de masque de bits.
+     *
+     * @see #pionsOrdi
+     */
+    private long pionsHumain;
+    /**
+     * Le nombre de pions déjà posés dans chaque colonne.
+     */
+    private final byte[] hauteurs;
+    /**
+     * Le nombre de pions posés sur le plateau depuis le début de la partie.
+     */
+    private int nbCoups;
+    /**
+     * La clé de Zobrist de la position : le ou exclusif des clés de chaque pion posé, et de
+     * {@link #ZOBRIST_TRAIT} si c'est à l'ordinateur de jouer.
+     */
+    private long cle;
+    /**
+     * Les arbres de recherche conservés depuis le dernier coup de l'ordinateur, enracinés sous ce coup.
+     * <p>
+     * Uniquement utilisé par l'état de la partie en cours : jamais recopié par {@link #copieEtat()}.
+     */
+    private Noeud[] arbres;
+    /**
+     * Le thread qui développe les {@link #arbres} pendant que l'adversaire réfléchit, ou <code>null</code>.
+     */
+    private Thread reflexion;
+    /**
+     * La gestion du temps de la {@link #reflexion} en cours, qui permet de l'interrompre.
+     */
+    private GestionTemps tempsReflexion;
+    /**
+     * Les arbres compacts utilisés par la recherche, alloués une seule fois pour toute la partie.
+     * <p>
+     * Uniquement utilisé par l'état de la partie en cours : jamais recopié par {@link #copieEtat()}.
+     */
+    private ArbreCompact[] arbresCompacts;
+    /**
+     * La table de transposition de la recherche MCTS, allouée au premier coup et conservée d'un coup à l'autre, comme
+     * les arbres : les statistiques d'une position restent valables tant que la partie se poursuit.
+     * <p>
+     * Uniquement utilisé par l'état de la partie en cours : jamais recopié par {@link #copieEtat()}.
+     */
+    private TableTransposition table;
+    /**
+     * Les pions de l'ordinateur et de l'humain lors de la dernière recherche avec la {@link #table}, pour savoir si
+     * la position actuelle en découle.
+     */
+    private long pionsOrdiTable, pionsHumainTable;
+    /**
+     * Le solveur exact, dont la table de transposition est conservée pour toute la partie.
+     * <p>
+     * Uniquement utilisé par l'état de la partie en cours : jamais recopié par {@link #copieEtat()}.
+     */
+    private Solveur solveur;
+    /**
+     * Le livre d'ouvertures, ouvert au premier coup de l'ordinateur.
+     * <p>
+     * Uniquement utilisé par l'état de la partie en cours : jamais recopié par {@link #copieEtat()}.
+     */
+    private LivreOuvertures livre;
+    /**
+     * Le cache des positions résolues, ouvert au premier coup de l'ordinateur.
+     * <p>
+     * Uniquement utilisé par l'état de la partie en cours : jamais recopié par {@link #copieEtat()}.
+     */
+    private CacheFinales finales;
+    /**
+     * Le nombre de simulations réalisées par l'ordinateur depuis la création de l'état.
+     */
+    private long simulations;
+    /**
+     * Les mesures du dernier coup de l'ordinateur, ou <code>null</code> s'il n'a pas encore joué.
+     */
+    private StatistiquesRecherche derniereRecherche;
+    /**
+     * La plus grande part du temps imparti à un coup accordée au {@link Solveur}, y compris quand il est prioritaire :
+     * le reste est réservé à MCTS, qui doit encore pouvoir choisir un coup sensé si la position n'est pas résolue.
      */
-    private final char[][] plateau; //ligne/colonne
+    static final double PART_SOLVEUR_PRIORITAIRE = 0.75;
     /**
      * Undocumented
      */
-    private final int strategy = STRAT_MAX;
+    private static final int strategy = STRAT_MAX;
     /**
      * Contient le joueur actuellement en train de jouer.
      * Peut être soit {@link #HUMAN_PLAYER} soit {@link #COMPUTER_PLAYER}.
@@ -31,15 +151,8 @@ public class Etat {
      */
     public Etat() {
         joueur = COMPUTER_PLAYER; //L'ordinateur qui commence :)
-        plateau = new char[LIGNE][COLONNE]; //plateau du Puissance 4
-
-        //Initialisation du plateau vide
-        int i, j;
-        for (i = 0; i < LIGNE; i++) {
-            for (j = 0; j < COLONNE; j++) {
-                this.plateau[i][j] = ' ';
-            }
-        }
+        hauteurs = new byte[COLONNE]; //plateau du Puissance 4 vide
+        cle = ZOBRIST_TRAIT;
     }
 
     /**
@@ -50,29 +163,74 @@ public class Etat {
     public Etat(int joueur) {
         this();
 
-        this.joueur = joueur;
+        this.setJoueur(joueur);
     }
 
     /**
      * Crée un nouvelle état à partir d'un joueur et d'un plateau.
      *
-     * @param j   le joueur dans l'état (soit {@link #HUMAN_PLAYER} soit {@link #COMPUTER_PLAYER})
-     * @param tab le plateau de taille {@link #LIGNE} × {@link #COLONNE}
+     * @param j           le joueur dans l'état (soit {@link #HUMAN_PLAYER} soit {@link #COMPUTER_PLAYER})
+     * @param pionsOrdi   le masque des pions de l'ordinateur
+     * @param pionsHumain le masque des pions de l'humain
+     * @param hauteurs    le nombre de pions de chaque colonne
+     * @param nbCoups     le nombre de pions sur le plateau
+     * @param cle         la clé de Zobrist de la position
      */
-    private Etat(int j, char[][] tab) {
+    private Etat(int j, long pionsOrdi, long pionsHumain, byte[] hauteurs, int nbCoups, long cle) {
         this.joueur = j;
-        this.plateau = tab;
+        this.pionsOrdi = pionsOrdi;
+        this.pionsHumain = pionsHumain;
+        this.hauteurs = hauteurs;
+        this.nbCoups = nbCoups;
+        this.cle = cle;
     }
 
     /**
-     * Get du plateau
+     * Construit le masque contenant la case du bas de chaque colonne.
      *
-     * @return le plateau de jeu
+     * @return le masque {@link #BAS}
+     */
+    private static long basPlateau() {
+        long bas = 0L;
+        for (int j = 0; j < COLONNE; j++)
+            bas |= 1L << (j * HAUTEUR);
+        return bas;
+    }
+
+    /**
+     * Get du plateau.
+     * <p>
+     * Le plateau est reconstruit à partir des masques : le modifier n'a aucun effet sur l'état.
+     *
+     * @return le plateau de jeu (ligne 0 en haut), <code>'X'</code> pour l'ordinateur, <code>'O'</code> pour l'humain
+     * et <code>' '</code> pour une case vide
      */
     public char[][] getPlateau() {
+        char[][] plateau = new char[LIGNE][COLONNE];
+        for (int i = 0; i < LIGNE; i++) {
+            for (int j = 0; j < COLONNE; j++) {
+                plateau[i][j] = caseEn(i, j);
+            }
+        }
         return plateau;
     }
 
+    /**
+     * Récupère le contenu d'une case du plateau.
+     *
+     * @param i la ligne (0 en haut)
+     * @param j la colonne
+     * @return <code>'X'</code>, <code>'O'</code> ou <code>' '</code>
+     */
+    private char caseEn(int i, int j) {
+        long bit = 1L << (j * HAUTEUR + LIGNE - 1 - i);
+        if ((pionsOrdi & bit) != 0)
+            return 'X';
+        if ((pionsHumain & bit) != 0)
+            return 'O';
+        return ' ';
+    }
+
     /**
      * Get le joueur
      *
@@ -82,45 +240,220 @@ public class Etat {
         return joueur;
     }
 
+    /**
+     * Get le nombre de coups joués
+     *
+     * @return le nombre de pions posés sur le plateau
+     */
+    public int getNbCoups() {
+        return nbCoups;
+    }
+
     /**
      * Set joueur
      *
      * @param joueur le joueur qui va jouer
      */
     public void setJoueur(int joueur) {
+        if (this.joueur != joueur)
+            cle ^= ZOBRIST_TRAIT;
         this.joueur = joueur;
     }
 
+    /**
+     * Get le nombre de simulations
+     *
+     * @return le nombre de simulations MCTS réalisées par {@link #ordijoue_mcts(long, Parametres)} sur cet état
+     * depuis sa création
+     */
+    public long getSimulations() {
+        return simulations;
+    }
+
+    /**
+     * Get les mesures du dernier coup de l'ordinateur
+     *
+     * @return les mesures de la recherche du dernier appel à {@link #ordijoue_mcts(long, Parametres)} sur cet état,
+     * ou <code>null</code> s'il n'y en a pas encore eu
+     */
+    public StatistiquesRecherche getDerniereRecherche() {
+        return derniereRecherche;
+    }
+
+    /**
+     * @return la table de transposition conservée d'un coup de l'ordinateur à l'autre, ou <code>null</code> si aucune
+     * recherche ne l'a encore utilisée
+     */
+    TableTransposition getTable() {
+        return table;
+    }
+    /**
+     * Get la clé de la position
+     *
+     * @return la clé de Zobrist de la position (plateau et joueur qui doit jouer)
+     */
+    public long getCle() {
+        return cle;
+    }
+
+    /**
+     * Get la clé exacte de la position, indépendante du nom des joueurs
+     * <p>
+     * La clé est la somme des pions du joueur qui doit jouer, du masque des cases occupées et de la case du bas de
+     * chaque colonne : deux positions différentes ont toujours deux clés différentes, de moins de 49 bits.
+     *
+     * @return la clé de la position pour le joueur qui doit jouer
+     * @see #symetrique(long)
+     */
+    long getClePosition() {
+        long trait = joueur == COMPUTER_PLAYER ? pionsOrdi : pionsHumain;
+        return trait + (pionsOrdi | pionsHumain) + BAS;
+    }
+
+    /**
+     * Donne la clé de la position symétrique (colonnes inversées) de celle dont on a la clé.
+     *
+     * @param cle la clé d'une position, donnée par {@link #getClePosition()}
+     * @return la clé de la position symétrique
+     */
+    static long symetrique(long cle) {
+        long sym = 0L;
+        for (int j = 0; j < COLONNE; j++)
+            sym |= ((cle >>> (j * HAUTEUR)) & ((1L << HAUTEUR) - 1)) << ((COLONNE - 1 - j) * HAUTEUR);
+        return sym;
+    }
+
     /**
      * Copie de l'Etat en cours
      *
      * @return un nouvel état identique à <code>this</code> mais dont la modification n'affectera pas <code>this</code>.
      */
     public Etat copieEtat() {
-        char[][] tab = new char[LIGNE][COLONNE];
-        for (int i = 0; i < LIGNE; i++) {
-            System.arraycopy(plateau[i], 0, tab[i], 0, COLONNE);
+        return new Etat(joueur, pionsOrdi, pionsHumain, hauteurs.clone(), nbCoups, cle);
+    }
+
+    /**
+     * Recopie un autre état dans <code>this</code>, sans aucune allocation.
+     *
+     * @param source l'état à recopier
+     */
+    public void copier(Etat source) {
+        this.joueur = source.joueur;
+        this.pionsOrdi = source.pionsOrdi;
+        this.pionsHumain = source.pionsHumain;
+        System.arraycopy(source.hauteurs, 0, this.hauteurs, 0, COLONNE);
+        this.nbCoups = source.nbCoups;
+        this.cle = source.cle;
+    }
+
+    /**
+     * Get des pions de l'ordinateur
+     *
+     * @return le masque des pions de l'ordinateur
+     */
+    long getPionsOrdi() {
+        return pionsOrdi;
+    }
+
+    /**
+     * Get des pions de l'humain
+     *
+     * @return le masque des pions de l'humain
+     */
+    long getPionsHumain() {
+        return pionsHumain;
+    }
+
+    /**
+     * Remplace la position de <code>this</code> par celle décrite par les masques de pions, sans aucune allocation.
+     * <p>
+     * Les hauteurs des colonnes, le nombre de coups et la clé de Zobrist sont recalculés à partir des masques.
+     *
+     * @param pionsOrdi   le masque des pions de l'ordinateur
+     * @param pionsHumain le masque des pions de l'humain
+     * @param joueur      le joueur qui doit jouer
+     */
+    void charger(long pionsOrdi, long pionsHumain, int joueur) {
+        this.pionsOrdi = pionsOrdi;
+        this.pionsHumain = pionsHumain;
+        this.joueur = joueur;
+
+        long pions = pionsOrdi | pionsHumain;
+        for (int j = 0; j < COLONNE; j++)
+            hauteurs[j] = (byte) Long.bitCount((pions >>> (j * HAUTEUR)) & ((1L << LIGNE) - 1));
+        nbCoups = Long.bitCount(pions);
+
+        cle = joueur == COMPUTER_PLAYER ? ZOBRIST_TRAIT : 0L;
+        for (long m = pionsOrdi; m != 0; m &= m - 1)
+            cle ^= ZOBRIST[COMPUTER_PLAYER][Long.numberOfTrailingZeros(m)];
+        for (long m = pionsHumain; m != 0; m &= m - 1)
+            cle ^= ZOBRIST[HUMAN_PLAYER][Long.numberOfTrailingZeros(m)];
+    }
+
+    /**
+     * Vérifie si deux états correspondent à la même position.
+     *
+     * @param autre l'état à comparer
+     * @return <code>true</code> si les plateaux et les joueurs qui doivent jouer sont identiques
+     */
+    public boolean memePosition(Etat autre) {
+        return cle == autre.cle && joueur == autre.joueur && pionsOrdi == autre.pionsOrdi && pionsHumain == autre.pionsHumain;
+    }
+
+    /**
+     * Vérifie si un pion peut être posé dans une colonne.
+     *
+     * @param colonne le numéro de la colonne
+     * @return <code>true</code> si la colonne existe et n'est pas pleine, <code>false</code> sinon
+     */
+    public boolean peutJouer(int colonne) {
+        return colonne >= 0 && colonne < COLONNE && hauteurs[colonne] < LIGNE;
+    }
+
+    /**
+     * Récupère les colonnes jouables sous forme de masque, sans allocation.
+     *
+     * @return un masque dont le bit <code>j</code> vaut 1 si la colonne <code>j</code> n'est pas pleine
+     */
+    public int colonnesJouables() {
+        int masque = 0;
+        for (int j = 0; j < COLONNE; j++) {
+            if (hauteurs[j] < LIGNE)
+                masque |= 1 << j;
+        }
+        return masque;
+    }
+
+    /**
+     * Remplit un tableau fourni par l'appelant avec les colonnes jouables, sans allocation.
+     *
+     * @param colonnes le tableau à remplir, de taille au moins {@link #COLONNE}
+     * @return le nombre de colonnes jouables, rangées au début de <code>colonnes</code>
+     */
+    public int colonnesJouables(int[] colonnes) {
+        int n = 0;
+        for (int j = 0; j < COLONNE; j++) {
+            if (hauteurs[j] < LIGNE)
+                colonnes[n++] = j;
         }
-        int jour = joueur;
-        return new Etat(jour, tab);
+        return n;
     }
 
     /**
      * Récupère tous les coups possibles dans la grille.
+     * <p>
+     * Les coups renvoyés sont les coups partagés de {@link Coup#de(int)}, mais la liste est allouée à chaque appel :
+     * les boucles de recherche utilisent plutôt {@link #colonnesJouables()}.
      *
-     * @return la liste contenant tous les coups possibles (de taille ≤ 9)
+     * @return la liste contenant tous les coups possibles, un par colonne non pleine (de taille ≤ {@link #COLONNE})
      */
     public List<Coup> coupsPossibles() {
-        List<Coup> listCoup = new ArrayList<>();
-        int i, j;
-        for (i = 0; i < LIGNE; i++) {
-            for (j = 0; j < COLONNE; j++) {
-                if (plateau[i][j] == ' ')
-                    listCoup.add(new Coup(j));
-            }
+        List<Coup> listCoup = new ArrayList<>(COLONNE);
+        for (int j = 0; j < COLONNE; j++) {
+            if (hauteurs[j] < LIGNE)
+                listCoup.add(Coup.de(j));
         }
         return listCoup;
-
     }
 
     /**
@@ -128,6 +461,7 @@ public class Etat {
      */
     public void changerJoueur() {
         this.joueur = 1 - this.joueur;
+        this.cle ^= ZOBRIST_TRAIT;
     }
 
     /**
@@ -137,23 +471,68 @@ public class Etat {
      * @return <code>true</code> si le pion a été joué, <code>false</code> sinon.
      */
     public boolean jouerCoup(Coup coup) {
-        if (coup == null)
-            return false;
+        return coup != null && jouerCoupEtTester(coup.getColonne()) != null;
+    }
 
-        //verifie que la ligne n'est pas pleine
-        if (this.getPlateau()[0][coup.getColonne()] != ' ')
-            return false;
+    /**
+     * Pose le pion à la colonne donnée et teste si ce coup termine la partie.
+     * <p>
+     * Contrairement à {@link #testFin()}, seules les 4 lignes passant par le pion qui vient d'être posé sont
+     * examinées : c'est la seule façon pour le joueur qui vient de jouer de gagner.
+     * Le match nul se déduit du nombre de coups joués.
+     *
+     * @param colonne la colonne où on souhaite poser le pion
+     * @return <code>null</code> si le pion n'a pas pu être joué, sinon l'état de fin de la partie après ce coup
+     */
+    public FinDePartie jouerCoupEtTester(int colonne) {
+        //verifie que la colonne existe et n'est pas pleine
+        if (!peutJouer(colonne))
+            return null;
 
-        this.getPlateau()[0][coup.getColonne()] = joueur == HUMAN_PLAYER ? 'O' : 'X';
-        for (int i = 1; i < LIGNE; i++) {
-            if (this.getPlateau()[i][coup.getColonne()] == ' ') {
-                this.getPlateau()[i][coup.getColonne()] = joueur == HUMAN_PLAYER ? 'O' : 'X';
-                this.getPlateau()[i - 1][coup.getColonne()] = ' ';
-            }
+        int k = colonne * HAUTEUR + hauteurs[colonne];
+        long pion = 1L << k;
+        long pions;
+        if (joueur == HUMAN_PLAYER) {
+            pions = pionsHumain |= pion;
+            cle ^= ZOBRIST[HUMAN_PLAYER][k];
+        } else {
+            pions = pionsOrdi |= pion;
+            cle ^= ZOBRIST[COMPUTER_PLAYER][k];
         }
+        hauteurs[colonne]++;
+        nbCoups++;
+
+        FinDePartie fin;
+        if (alignementPar(pions, pion))
+            fin = joueur == HUMAN_PLAYER ? FinDePartie.HUMAIN_GAGNE : FinDePartie.ORDI_GAGNE;
+        else
+            fin = nbCoups == LIGNE * COLONNE ? FinDePartie.MATCH_NUL : FinDePartie.NON;
 
         this.changerJoueur();
-        return true;
+        return fin;
+    }
+
+    /**
+     * Annule le dernier coup joué, qui doit avoir été joué dans la colonne donnée.
+     * <p>
+     * Permet aux recherches qui explorent les coups un par un de revenir en arrière sans copier l'état.
+     *
+     * @param colonne la colonne du dernier pion posé
+     */
+    public void annulerCoup(int colonne) {
+        hauteurs[colonne]--;
+        nbCoups--;
+        int k = colonne * HAUTEUR + hauteurs[colonne];
+        long pion = 1L << k;
+
+        this.changerJoueur();
+        if (joueur == HUMAN_PLAYER) {
+            pionsHumain &= ~pion;
+            cle ^= ZOBRIST[HUMAN_PLAYER][k];
+        } else {
+            pionsOrdi &= ~pion;
+            cle ^= ZOBRIST[COMPUTER_PLAYER][k];
+        }
     }
 
     /**
@@ -174,207 +553,870 @@ public class Etat {
      * </ol>
      */
     public FinDePartie testFin() {
-        int k, n = 0;
-        for (int i = 0; i < LIGNE; i++) {
-            for (int j = 0; j < COLONNE; j++) {
-                if (plateau[i][j] != ' ') {
-                    n++; //nb de coups joués
-
-                    //lignes
-                    k = 0;
-                    while (k < 4 && i + k < LIGNE && plateau[i + k][j] == plateau[i][j])
-                        k++;
-                    if (k == 4) return plateau[i][j] == 'X' ? FinDePartie.ORDI_GAGNE : FinDePartie.HUMAIN_GAGNE;
-
-                    // colonnes
-                    k = 0;
-                    while (k < 4 && j + k < COLONNE && plateau[i][j + k] == plateau[i][j])
-                        k++;
-                    if (k == 4)
-                        return plateau[i][j] == 'X' ? FinDePartie.ORDI_GAGNE : FinDePartie.HUMAIN_GAGNE;
-
-                    // diagonales
-                    k = 0;
-                    while (k < 4 && i + k < LIGNE && j + k < COLONNE && plateau[i + k][j + k] == plateau[i][j])
-                        k++;
-                    if (k == 4)
-                        return plateau[i][j] == 'X' ? FinDePartie.ORDI_GAGNE : FinDePartie.HUMAIN_GAGNE;
-
-                    k = 0;
-                    while (k < 4 && i + k < LIGNE && j - k >= 0 && plateau[i + k][j - k] == plateau[i][j])
-                        k++;
-                    if (k == 4)
-                        return plateau[i][j] == 'X' ? FinDePartie.ORDI_GAGNE : FinDePartie.HUMAIN_GAGNE;
-
-                }
-            }
-        }
-        if (n == COLONNE * LIGNE) return FinDePartie.MATCH_NUL;
+        if (alignement(pionsOrdi))
+            return FinDePartie.ORDI_GAGNE;
+        if (alignement(pionsHumain))
+            return FinDePartie.HUMAIN_GAGNE;
+        if ((pionsOrdi | pionsHumain) == PLATEAU_PLEIN)
+            return FinDePartie.MATCH_NUL;
         return FinDePartie.NON;
     }
 
     /**
-     * Fait jouer l'ordinateur sur l'état actuel à l'aide de l'algorithme MCTS UCT.
+     * Vérifie si un pion fait partie d'un alignement d'au moins 4 pions.
+     *
+     * @param pions le masque des pions du joueur, contenant <code>pion</code>
+     * @param pion  le masque du pion à tester (un seul bit)
+     * @return <code>true</code> si le pion est aligné avec 3 autres pions, <code>false</code> sinon
+     */
+    private static boolean alignementPar(long pions, long pion) {
+        return longueurAlignement(pions, pion, 1) >= 4 // verticale
+                || longueurAlignement(pions, pion, HAUTEUR) >= 4 // horizontale
+                || longueurAlignement(pions, pion, HAUTEUR - 1) >= 4 // diagonales
+                || longueurAlignement(pions, pion, HAUTEUR + 1) >= 4;
+    }
+
+    /**
+     * Compte le nombre de pions consécutifs dans une direction donnée, de part et d'autre d'un pion.
+     *
+     * @param pions     le masque des pions du joueur
+     * @param pion      le masque du pion de départ
+     * @param direction le décalage entre deux cases voisines dans la direction souhaitée
+     * @return la longueur de la ligne passant par le pion (au moins 1)
+     */
+    private static int longueurAlignement(long pions, long pion, int direction) {
+        int n = 1;
+        long b = pion;
+        while (((b <<= direction) & pions) != 0)
+            n++;
+        b = pion;
+        while (((b >>>= direction) & pions) != 0)
+            n++;
+        return n;
+    }
+
+    /**
+     * Vérifie si un masque de pions contient 4 pions alignés.
+     * <p>
+     * Pour chaque direction (verticale, horizontale et les deux diagonales), on garde les pions dont le
+     * voisin est aussi occupé, puis ceux dont le voisin à 2 cases l'est aussi.
+     *
+     * @param pions le masque des pions d'un joueur
+     * @return <code>true</code> s'il y a au moins un alignement de 4 pions, <code>false</code> sinon
+     */
+    private static boolean alignement(long pions) {
+        // verticale
+        long m = pions & (pions >> 1);
+        if ((m & (m >> 2)) != 0) return true;
+
+        // horizontale
+        m = pions & (pions >> HAUTEUR);
+        if ((m & (m >> 2 * HAUTEUR)) != 0) return true;
+
+        // diagonales
+        m = pions & (pions >> (HAUTEUR - 1));
+        if ((m & (m >> 2 * (HAUTEUR - 1))) != 0) return true;
+
+        m = pions & (pions >> (HAUTEUR + 1));
+        return (m & (m >> 2 * (HAUTEUR + 1))) != 0;
+    }
+
+    /**
+     * Fait jouer l'ordinateur sur l'état actuel à l'aide de l'algorithme MCTS UCT, sur un seul thread.
      *
      * @param tempsmax le temps maximum en ms durant lequel l'algorithme a le droit de s'exécuter
      */
     public void ordijoue_mcts(long tempsmax) {
+        ordijoue_mcts(tempsmax, 1);
+    }
+
+    /**
+     * Fait jouer l'ordinateur sur l'état actuel à l'aide de l'algorithme MCTS UCT, parallélisé à la racine.
+     *
+     * @param tempsmax  le temps maximum en ms durant lequel l'algorithme a le droit de s'exécuter
+     * @param nbThreads le nombre d'arbres construits en parallèle
+     */
+    public void ordijoue_mcts(long tempsmax, int nbThreads) {
+        ordijoue_mcts(tempsmax, nbThreads, Parallelisme.RACINE);
+    }
+
+    /**
+     * Fait jouer l'ordinateur sur l'état actuel à l'aide de l'algorithme MCTS UCT, sur plusieurs threads.
+     *
+     * @param tempsmax  le temps maximum en ms durant lequel l'algorithme a le droit de s'exécuter
+     * @param nbThreads le nombre de threads de recherche
+     * @param mode      la façon de répartir la recherche entre les threads
+     */
+    public void ordijoue_mcts(long tempsmax, int nbThreads, Parallelisme mode) {
+        Parametres parametres = new Parametres();
+        parametres.setNbThreads(nbThreads);
+        parametres.setParallelisme(mode);
+        ordijoue_mcts(tempsmax, parametres);
+    }
+
+    /**
+     * Fait jouer l'ordinateur sur l'état actuel à l'aide de l'algorithme MCTS UCT.
+     * <p>
+     * Les mesures de la recherche sont ensuite disponibles avec {@link #getDerniereRecherche()}, enregistrées
+     * comme {@link EvenementRecherche événement JFR} et, si les réglages le demandent, écrites sur une ligne de
+     * journal sur la sortie d'erreur. Le temps passé dans chaque étape de MCTS n'est mesuré que si le journal est
+     * demandé ou qu'un enregistrement JFR est en cours.
+     *
+     * @param tempsmax   le temps maximum en ms durant lequel l'algorithme a le droit de s'exécuter
+     * @param parametres les réglages de la recherche
+     */
+    public void ordijoue_mcts(long tempsmax, Parametres parametres) {
+        EvenementRecherche evenement = new EvenementRecherche();
+        evenement.begin();
+        final long debut = System.nanoTime();
+        StatistiquesRecherche statistiques = new StatistiquesRecherche(parametres.isJournal() || evenement.isEnabled());
+        int colonne = chercherCoup(tempsmax, parametres, statistiques);
+        jouerCoup(Coup.de(colonne));
+
+        statistiques.terminer(colonne, System.nanoTime() - debut);
+        simulations += statistiques.getIterations();
+        derniereRecherche = statistiques;
+        if (parametres.isJournal())
+            System.err.println(statistiques.versJournal());
+        evenement.enregistrer(statistiques);
+    }
+
+    /**
+     * Cherche le coup de l'ordinateur dans l'état actuel, sans le jouer : dans le livre d'ouvertures, dans le cache
+     * des positions résolues, avec le solveur, et sinon avec MCTS.
+     * <p>
+     * Avec la gestion du temps, un coup forcé est joué sans réfléchir, et le temps accordé au coup dépend de
+     * l'avancement de la partie (voir {@link GestionTemps#budget(long, int)}).
+     *
+     * @param tempsmax     le temps maximum en ms durant lequel l'algorithme a le droit de s'exécuter
+     * @param parametres   les réglages de la recherche
+     * @param statistiques rempli avec les mesures de la recherche
+     * @return la colonne à jouer
+     */
+    private int chercherCoup(long tempsmax, Parametres parametres, StatistiquesRecherche statistiques) {
         final long tic = System.currentTimeMillis();
+        arreterReflexion();
+        long budget = tempsmax;
+        if (parametres.isGestionTemps()) {
+            // inutile de réfléchir quand il n'y a qu'un coup sensé
+            int force = coupForce();
+            if (force != -1) {
+                arbres = null;
+                afficher(parametres, " Coup forcé");
+                statistiques.setOrigine(StatistiquesRecherche.Origine.FORCE);
+                return force;
+            }
+            budget = GestionTemps.budget(tempsmax, nbCoups);
+        }
+        final long temps = budget;
 
-        //Créer l'arbre de recherche
-        Noeud racine = new Noeud(null, null);
-        racine.setEtat(copieEtat());
+        // en début de partie, le coup est peut-être déjà connu
+        int ouverture = coupOuverture(parametres);
+        if (ouverture != -1) {
+            arbres = null;
+            afficher(parametres, " Coup tiré du livre d'ouvertures");
+            statistiques.setOrigine(StatistiquesRecherche.Origine.LIVRE);
+            return ouverture;
+        }
 
-        Thread progress = new Thread(() -> {
-            final String indicators = "⠋⠙⠹⠸⠼⠴⠦⠧⠇⠏";
-            int i = 0;
+        // une position déjà résolue, par cette partie ou une précédente, se joue immédiatement
+        Solveur.Solution connue = solutionConnue(parametres);
+        if (connue != null) {
+            arbres = null;
+            afficher(parametres, " Position déjà résolue : " + connue);
+            statistiques.setOrigine(StatistiquesRecherche.Origine.CACHE);
+            return connue.getColonne();
+        }
 
-            while (true) {
-                System.out.print("\r" + indicators.charAt(i) + " L'ordinateur réfléchit... (" + ((tempsmax - (System.currentTimeMillis() - tic)) / 1000) + "s restantes)");
-                System.out.flush();
+        TableTransposition table = tableTransposition(parametres);
+        Noeud[] racines = parametres.isReutiliserArbre() ? reprendreArbres(parametres) : null;
+        long dejaConnues = 0;
+        if (racines != null) {
+            for (Noeud racine : racines)
+                dejaConnues += racine == null ? 0 : racine.getNb_simus();
+        }
+        statistiques.setSimulationsReprises(dejaConnues);
 
-                try {
-                    Thread.sleep(75);
-                } catch (InterruptedException e) {
-                    // do nothing
-                    break;
-                }
+        afficher(parametres, " L'ordinateur réfléchit (" + temps / 1000 + " s au plus)...");
+
+        // le solveur peut trouver le coup exact bien avant la fin du temps imparti, surtout en fin de partie
+        Solveur.Solution solution = resoudre(temps, parametres);
+        if (solution != null) {
+            afficher(parametres, "\n Position résolue : " + solution);
+            memoriser(solution);
+            statistiques.setOrigine(StatistiquesRecherche.Origine.SOLVEUR);
+            return solution.getColonne();
+        }
 
-                i = ++i > indicators.length() - 1 ? 0 : i;
+        racines = rechercher(temps - (System.currentTimeMillis() - tic), parametres, table, racines, statistiques);
+        statistiques.releverTable(table);
+        // on récupère le meilleur coup à jouer
+        int[] simus = statistiques.getSimusRacine();
+        int[] victoires = statistiques.getVictoiresRacine();
+        Preuve[] preuves = statistiques.getPreuvesRacine();
+        int meilleur_coup = choisirColonne(simus, victoires, preuves, parametres.isGestionTemps());
+        assert meilleur_coup != -1;
+        Solveur.Solution prouvee = solutionProuvee(meilleur_coup, preuves);
+        if (prouvee != null)
+            memoriser(prouvee);
+        if (preuves[meilleur_coup] == Preuve.VICTOIRE)
+            afficher(parametres, "\n Coup prouvé gagnant par la recherche");
+        else if (preuves[meilleur_coup] == Preuve.DEFAITE)
+            afficher(parametres, "\n Tous les coups sont prouvés perdants");
+        if (simus[meilleur_coup] > 0)
+            afficher(parametres, "\n La probabilité de victoire est : " + victoires[meilleur_coup] + " / " + simus[meilleur_coup] + " = " + (double) victoires[meilleur_coup] / simus[meilleur_coup]);
+
+        // on ne garde que les sous-arbres sous le coup qui va être joué, le reste peut être libéré
+        Coup coup = Coup.de(meilleur_coup);
+        if (parametres.isReutiliserArbre() && racines != null) {
+            arbres = new Noeud[racines.length];
+            for (int i = 0; i < racines.length; i++) {
+                arbres[i] = racines[i].enfantAvecCoup(coup);
+                if (arbres[i] != null)
+                    arbres[i].detacher();
             }
+        }
+        return meilleur_coup;
+    }
 
-            System.out.println();
-        });
+    /**
+     * Prépare la table de transposition d'une recherche : celle des coups précédents si la position actuelle en
+     * découle, vidée sinon, et allouée au premier coup ou quand sa taille change.
+     *
+     * @param parametres les réglages de la recherche
+     * @return la table, ou <code>null</code> si les réglages n'en demandent pas
+     */
+    private TableTransposition tableTransposition(Parametres parametres) {
+        if (parametres.getTailleTable() <= 0)
+            return null;
+        if (table == null || table.getMegaOctets() != parametres.getTailleTable()) {
+            table = new TableTransposition(parametres.getTailleTable());
+        } else if ((pionsOrdiTable & ~pionsOrdi) != 0 || (pionsHumainTable & ~pionsHumain) != 0) {
+            // une autre partie, ou des coups annulés : les positions de la table ne seront plus rencontrées
+            table.vider();
+        } else {
+            table.remettreCompteurs();
+        }
+        pionsOrdiTable = pionsOrdi;
+        pionsHumainTable = pionsHumain;
+        return table;
+    }
 
-        progress.start();
-        do {
-            // MCTS :
-            // - sélection du noeud le + propice à être développé
-            // - développement du noeud
-            // - simulation aléatoire d'une partie à partir de ce noeud
-            // - propagation du score jusqu'à la racine de l'arbre
+    /**
+     * Continue de développer les arbres conservés depuis le dernier coup de l'ordinateur pendant que l'adversaire
+     * réfléchit, sur des threads en arrière-plan.
+     * <p>
+     * Les arbres sont enracinés sous le coup de l'ordinateur : la recherche se poursuit donc sous chaque réponse
+     * possible de l'adversaire. Au coup suivant de l'ordinateur, la réflexion est arrêtée et seul le sous-arbre de la
+     * réponse jouée est repris (voir {@link #reprendreArbres(Parametres)}). Sans effet si les réglages ne demandent
+     * pas de réflexion pendant le temps de l'adversaire ({@link Parametres#getTempsAdversaire()}), ne conservent pas
+     * les arbres ou utilisent des arbres compacts, ou si la partie est finie.
+     * <p>
+     * L'état peut être modifié pendant la réflexion : les arbres n'en gardent que des copies.
+     *
+     * @param parametres les réglages de la recherche, les mêmes que ceux du coup suivant de l'ordinateur
+     */
+    public void reflechir(Parametres parametres) {
+        arreterReflexion();
+        if (parametres.getTempsAdversaire() <= 0 || !parametres.isReutiliserArbre() || parametres.getTailleArbreCompact() > 0
+                || arbres == null || arbres.length != nbArbres(parametres) || testFin() != FinDePartie.NON)
+            return;
+
+        final Noeud[] racines = arbres;
+        for (int i = 0; i < racines.length; i++) {
+            if (racines[i] == null)
+                racines[i] = nouvelleRacine();
+        }
+        final GestionTemps temps = new GestionTemps(parametres.getTempsAdversaire(), false);
+        List<Callable<Noeud>> taches = new ArrayList<>();
+        for (int t = 0; t < Math.max(1, parametres.getNbThreads()); t++) {
+            final Noeud racine = racines[t % racines.length];
+            taches.add(() -> mcts(racine, racines, 0, new Simulateur(), null, parametres.getExploration(), temps, new StatistiquesRecherche()));
+        }
+
+        tempsReflexion = temps;
+        reflexion = new Thread(() -> executer(taches), "reflexion");
+        reflexion.setDaemon(true);
+        reflexion.start();
+    }
+
+    /**
+     * Arrête la réflexion pendant le temps de l'adversaire, s'il y en a une en cours, et attend la fin de ses
+     * threads.
+     */
+    public void arreterReflexion() {
+        if (reflexion == null)
+            return;
+
+        tempsReflexion.interrompre();
+        try {
+            reflexion.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        reflexion = null;
+        tempsReflexion = null;
+    }
+
+    /**
+     * Affiche un message sur la sortie standard, si les réglages le demandent.
+     *
+     * @param parametres les réglages de la recherche
+     * @param message    le message à afficher
+     */
+    private static void afficher(Parametres parametres, String message) {
+        if (parametres.isAffichage())
+            System.out.println(message);
+    }
+
+    /**
+     * Choisit la colonne à jouer à partir des statistiques de la recherche : celle qui mène au plus grand taux de
+     * parties gagnées, ou la plus visitée quand la recherche a pu s'arrêter avant l'échéance (l'arrêt anticipé ne
+     * garantit que la colonne la plus visitée, voir {@link GestionTemps}). Un coup prouvé gagnant passe avant tous
+     * les autres, un coup prouvé perdant n'est joué que faute de mieux.
+     *
+     * @param simus     le nombre de simulations par colonne, pour toutes les colonnes du plateau
+     * @param victoires le nombre de victoires de l'ordinateur par colonne
+     * @param preuves   la valeur prouvée pour l'ordinateur de chaque colonne (<code>null</code> si inconnue)
+     * @param robuste   <code>true</code> pour choisir la colonne la plus visitée plutôt que le meilleur taux
+     * @return la colonne à jouer, ou -1 si aucune colonne n'a été explorée
+     */
+    static int choisirColonne(int[] simus, int[] victoires, Preuve[] preuves, boolean robuste) {
+        int meilleur_coup = -1, meilleur_rang = -1;
+        double val = Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < simus.length; j++) {
+            if (simus[j] == 0 && preuves[j] == null)
+                continue;
+            int rang = preuves[j] == Preuve.VICTOIRE ? 2 : preuves[j] == Preuve.DEFAITE ? 0 : 1;
+            @SuppressWarnings("ConstantConditions") double val2 = strategy == STRAT_MAX && !robuste ? (double) victoires[j] / simus[j] : (double) simus[j];
+            if (rang > meilleur_rang || (rang == meilleur_rang && val2 > val)) {
+                meilleur_rang = rang;
+                val = val2;
+                meilleur_coup = j;
+            }
+        }
+        return meilleur_coup;
+    }
+
+    /**
+     * Cherche un coup forcé dans l'état actuel : la seule colonne jouable, un coup qui gagne immédiatement, ou le
+     * seul coup qui empêche l'adversaire de gagner au coup suivant.
+     *
+     * @return la colonne forcée, ou -1 s'il n'y en a pas
+     */
+    int coupForce() {
+        int jouables = colonnesJouables();
+        if (Integer.bitCount(jouables) == 1)
+            return Integer.numberOfTrailingZeros(jouables);
+
+        long siens = joueur == COMPUTER_PLAYER ? pionsOrdi : pionsHumain;
+        long autres = joueur == COMPUTER_PLAYER ? pionsHumain : pionsOrdi;
+        int parade = -1;
+        for (; jouables != 0; jouables &= jouables - 1) {
+            int j = Integer.numberOfTrailingZeros(jouables);
+            long pion = 1L << (j * HAUTEUR + hauteurs[j]);
+            if (alignementPar(siens | pion, pion))
+                return j;
+            if (alignementPar(autres | pion, pion))
+                parade = parade == -1 ? j : -2; // deux menaces : la partie est perdue, rien n'est forcé
+        }
+        return Math.max(parade, -1);
+    }
+
+    /**
+     * Cherche l'état actuel dans le livre d'ouvertures des réglages.
+     *
+     * @param parametres les réglages de la recherche
+     * @return la colonne à jouer, ou -1 si l'état n'est pas dans le livre (ou s'il n'y a pas de livre)
+     */
+    private int coupOuverture(Parametres parametres) {
+        if (parametres.getFichierOuvertures() == null)
+            return -1;
+
+        if (livre == null)
+            livre = LivreOuvertures.ouvrir(Paths.get(parametres.getFichierOuvertures()));
+        int colonne = livre.coup(this);
+        return colonne != -1 && peutJouer(colonne) ? colonne : -1;
+    }
+
+    /**
+     * Cherche l'état actuel dans le cache des positions résolues des réglages.
+     *
+     * @param parametres les réglages de la recherche
+     * @return la solution de l'état, ou <code>null</code> si elle n'est pas connue (ou s'il n'y a pas de cache)
+     */
+    private Solveur.Solution solutionConnue(Parametres parametres) {
+        if (parametres.getFichierFinales() == null)
+            return null;
+
+        if (finales == null)
+            finales = CacheFinales.ouvrir(Paths.get(parametres.getFichierFinales()), parametres.getTailleFinales());
+        Solveur.Solution solution = finales.chercher(this);
+        return solution != null && peutJouer(solution.getColonne()) ? solution : null;
+    }
+
+    /**
+     * Conserve la solution de l'état actuel dans le cache des positions résolues, s'il y en a un.
+     *
+     * @param solution la solution de l'état actuel
+     */
+    private void memoriser(Solveur.Solution solution) {
+        if (finales != null)
+            finales.ajouter(this, solution);
+    }
+
+    /**
+     * Déduit la solution de l'état actuel des valeurs prouvées par la recherche MCTS : l'état est gagné si un coup
+     * est prouvé gagnant, sinon il n'est résolu que si tous les coups sont prouvés.
+     *
+     * @param colonne la colonne choisie par {@link #choisirColonne(int[], int[], Preuve[], boolean)}
+     * @param preuves la valeur prouvée pour l'ordinateur de chaque colonne (<code>null</code> si inconnue)
+     * @return la solution, ou <code>null</code> si l'état n'est pas résolu
+     */
+    private Solveur.Solution solutionProuvee(int colonne, Preuve[] preuves) {
+        if (preuves[colonne] == Preuve.VICTOIRE)
+            return new Solveur.Solution(colonne, 1);
+        for (int jouables = colonnesJouables(); jouables != 0; jouables &= jouables - 1) {
+            if (preuves[Integer.numberOfTrailingZeros(jouables)] == null)
+                return null;
+        }
+        return new Solveur.Solution(colonne, preuves[colonne] == Preuve.NUL ? 0 : -1);
+    }
+
+    /**
+     * Tente de résoudre exactement l'état actuel avec le {@link Solveur}.
+     * <p>
+     * Quand il reste moins de {@link Parametres#getSeuilSolveur()} cases vides, le solveur dispose de
+     * {@link #PART_SOLVEUR_PRIORITAIRE} du temps imparti ; sinon, il n'en a que {@link Parametres#getPartSolveur()}.
+     * MCTS prend le relais s'il n'a pas fini, avec le temps restant.
+     *
+     * @param tempsmax   le temps maximum en ms accordé au coup
+     * @param parametres les réglages de la recherche
+     * @return la solution, ou <code>null</code> si l'état n'a pas été résolu
+     */
+    private Solveur.Solution resoudre(long tempsmax, Parametres parametres) {
+        double part = LIGNE * COLONNE - nbCoups < parametres.getSeuilSolveur() ? PART_SOLVEUR_PRIORITAIRE : parametres.getPartSolveur();
+        long budget = (long) (tempsmax * Math.min(part, PART_SOLVEUR_PRIORITAIRE));
+        if (budget <= 0)
+            return null;
 
-            Noeud toExpand = selection(racine);
-            if (toExpand == null)
-                break; // l'arbre a été complètement exploré, plus aucun noeud n'est sélectionnable
+        if (solveur == null)
+            solveur = new Solveur(parametres.getTailleTableSolveur());
+        return solveur.resoudre(this, budget);
+    }
 
-            Noeud expanded = toExpand.developpement();
-            FinDePartie status = simulation(expanded);
-            expanded.propagationScore(status);
+    /**
+     * Lance la recherche MCTS à partir de l'état actuel, sans jouer de coup.
+     * <p>
+     * Avec {@link Parallelisme#RACINE}, chaque thread construit son propre arbre et les statistiques des enfants
+     * de chaque racine sont additionnées colonne par colonne. Avec {@link Parallelisme#ARBRE}, tous les threads
+     * construisent un seul arbre partagé. Si les réglages demandent des {@link ArbreCompact}, chaque thread
+     * développe le sien, quel que soit le mode de parallélisme.
+     *
+     * @param tempsmax     le temps maximum en ms durant lequel l'algorithme a le droit de s'exécuter
+     * @param parametres   les réglages de la recherche
+     * @param table        la table de transposition partagée par tous les threads, ou <code>null</code>
+     * @param racines      les racines des arbres à développer (une case <code>null</code> est remplacée par un
+     *                     nouvel arbre), ou <code>null</code> pour partir de nouveaux arbres
+     * @param statistiques rempli avec les mesures de la recherche et les statistiques de chaque colonne jouée depuis
+     *                     l'état actuel, cumulées sur tous les arbres (la preuve d'une colonne reste
+     *                     <code>null</code> si aucun arbre ne l'a prouvée)
+     * @return les racines des arbres développés, ou <code>null</code> si la recherche a utilisé des arbres compacts
+     */
+    Noeud[] rechercher(long tempsmax, Parametres parametres, TableTransposition table, Noeud[] racines, StatistiquesRecherche statistiques) {
+        final GestionTemps temps = new GestionTemps(tempsmax, parametres.isGestionTemps());
+        final int nbThreads = Math.max(1, parametres.getNbThreads());
 
+        if (parametres.getTailleArbreCompact() > 0) {
+            rechercherCompact(temps, parametres, statistiques);
+            return null;
+        }
 
-            // on applique MCTS jusqu'à avoir dépassé le temps limite
-        } while (System.currentTimeMillis() - tic < tempsmax);
-        progress.interrupt();
+        if (racines == null)
+            racines = new Noeud[nbArbres(parametres)];
+        long noeudsRepris = 0, simusDebut = 0;
+        for (int i = 0; i < racines.length; i++) {
+            if (racines[i] == null)
+                racines[i] = nouvelleRacine();
+            else
+                noeudsRepris += racines[i].compterNoeuds();
+            simusDebut += racines[i].getNb_simus();
+        }
 
-        System.out.println("\n Le nombre de simulation réalisée : " + racine.getNb_simus());
+        final Noeud[] toutes = racines;
+        final long debut = simusDebut;
+        List<Callable<Noeud>> arbres = new ArrayList<>();
+        List<StatistiquesRecherche> parThread = new ArrayList<>();
+        for (int t = 0; t < nbThreads; t++) {
+            final Noeud racine = racines[t % racines.length];
+            final StatistiquesRecherche mesures = new StatistiquesRecherche(statistiques.isChronometre());
+            parThread.add(mesures);
+            arbres.add(() -> mcts(racine, toutes, debut, new Simulateur(), table, parametres.getExploration(), temps, mesures));
+        }
+        executer(arbres);
 
+        for (StatistiquesRecherche mesures : parThread)
+            statistiques.cumuler(mesures);
+        long noeuds = -noeudsRepris;
+        for (Noeud racine : racines) {
+            noeuds += racine.compterNoeuds();
+            cumulerRacine(racine, statistiques.getSimusRacine(), statistiques.getVictoiresRacine(), statistiques.getPreuvesRacine());
+        }
+        statistiques.ajouterNoeuds(noeuds);
+        return racines;
+    }
 
-        //Vérifier que le joueur ne va pas gagner au prochain tour !
-        Noeud racineE = new Noeud(null, null);
-        racineE.setEtat(copieEtat());
+    /**
+     * Lance la recherche MCTS à partir de l'état actuel dans des arbres compacts, un par thread.
+     * <p>
+     * Les arbres compacts sont alloués à la première recherche, puis vidés et réutilisés aux recherches suivantes.
+     *
+     * @param temps        la gestion du temps de la recherche
+     * @param parametres   les réglages de la recherche
+     * @param statistiques rempli avec les mesures de la recherche et les statistiques de chaque colonne jouée
+     *                     depuis l'état actuel
+     */
+    private void rechercherCompact(GestionTemps temps, Parametres parametres, StatistiquesRecherche statistiques) {
+        final int nbThreads = Math.max(1, parametres.getNbThreads());
+        if (arbresCompacts == null || arbresCompacts.length != nbThreads || arbresCompacts[0].getCapacite() != parametres.getTailleArbreCompact()) {
+            arbresCompacts = new ArbreCompact[nbThreads];
+            for (int t = 0; t < nbThreads; t++)
+                arbresCompacts[t] = new ArbreCompact(parametres.getTailleArbreCompact());
+        }
 
-        List<Coup> coups = coupsPossibles();
-        Noeud enfant;
-        Coup meilleur_coup = null;
-        racineE.getEtat().setJoueur(HUMAN_PLAYER);
+        List<Callable<ArbreCompact>> arbres = new ArrayList<>();
+        List<StatistiquesRecherche> parThread = new ArrayList<>();
+        for (ArbreCompact arbre : arbresCompacts) {
+            arbre.reinitialiser(this);
+            final StatistiquesRecherche mesures = new StatistiquesRecherche(statistiques.isChronometre());
+            parThread.add(mesures);
+            arbres.add(() -> arbre.mcts(new Simulateur(), parametres.getExploration(), temps, mesures, arbresCompacts));
+        }
+        executer(arbres);
 
-        Noeud e1 = null;
-        for (Coup coup : coups) {
-            enfant = new Noeud(racineE, coup);
+        for (StatistiquesRecherche mesures : parThread)
+            statistiques.cumuler(mesures);
+        for (ArbreCompact arbre : arbresCompacts) {
+            statistiques.ajouterNoeuds(arbre.getTaille());
+            arbre.cumulerRacine(statistiques.getSimusRacine(), statistiques.getVictoiresRacine(), statistiques.getPreuvesRacine());
+        }
+    }
 
-            FinDePartie fin = enfant.getEtat().testFin();
-            if (fin == FinDePartie.HUMAIN_GAGNE) {
-                meilleur_coup = coup;
-                e1 = enfant;
+    /**
+     * Exécute des tâches de recherche, chacune sur son propre thread (sauf s'il n'y en a qu'une).
+     *
+     * @param taches les tâches à exécuter
+     */
+    private static <T> void executer(List<Callable<T>> taches) {
+        if (taches.size() == 1) {
+            try {
+                taches.get(0).call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
             }
+            return;
         }
-        //Si le joueur peut gagner
-        if (meilleur_coup != null) {
-            //Vérifier si l'ordi peut gagner (PRIORITAIRE)
-            for (Noeud enf : racine.getEnfants()) {
-                if (enf.getEtat().testFin() == FinDePartie.ORDI_GAGNE) {
-                    meilleur_coup = enf.getCoup();
-                    e1 = enf;
-                }
+
+        ForkJoinPool pool = new ForkJoinPool(taches.size());
+        try {
+            for (Future<T> tache : pool.invokeAll(taches))
+                tache.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Donne le nombre d'arbres construits par une recherche.
+     *
+     * @param parametres les réglages de la recherche
+     * @return 1 avec un seul thread ou {@link Parallelisme#ARBRE}, sinon un arbre par thread
+     */
+    private static int nbArbres(Parametres parametres) {
+        return parametres.getParallelisme() == Parallelisme.ARBRE ? 1 : Math.max(1, parametres.getNbThreads());
+    }
+
+    /**
+     * Reprend les arbres conservés depuis le dernier coup de l'ordinateur : dans chacun, on descend jusqu'à
+     * l'enfant correspondant au coup joué depuis (la réponse de l'humain), qui devient la nouvelle racine.
+     *
+     * @param parametres les réglages de la recherche
+     * @return les racines à partir desquelles reprendre la recherche (<code>null</code> pour un arbre à recréer),
+     * ou <code>null</code> si aucun arbre n'est réutilisable
+     */
+    private Noeud[] reprendreArbres(Parametres parametres) {
+        Noeud[] conserves = arbres;
+        arbres = null;
+        if (conserves == null || conserves.length != nbArbres(parametres))
+            return null;
+
+        Noeud[] racines = new Noeud[conserves.length];
+        for (int i = 0; i < conserves.length; i++) {
+            if (conserves[i] == null)
+                continue;
+            if (conserves[i].getEtat().memePosition(this)) {
+                racines[i] = conserves[i];
+                continue;
             }
-            System.out.println("\n La probabilité de victoire est : " + e1.getNb_victoires() + " / " + e1.getNb_simus() + " = " + e1.ratio());
-            jouerCoup(meilleur_coup);
-        } else {
-            Coup best = null;
-            double val = Double.NEGATIVE_INFINITY;
-            // on récupère le meilleur coup à jouer (celui qui mène au + grand nombre de parties gagnées)
-            Noeud e = null;
-            for (Noeud enf : racine.getEnfants()) {
-                @SuppressWarnings("ConstantConditions") double val2 = strategy == STRAT_MAX ? enf.ratio() : (double) enf.getNb_simus();
-                if (val2 > val) {
-                    val = val2;
-                    best = enf.getCoup();
-                    e = enf;
+            for (Noeud enfant : conserves[i].getEnfants()) {
+                if (enfant.getEtat().memePosition(this)) {
+                    racines[i] = enfant;
+                    enfant.detacher();
+                    break;
                 }
-            } // et on joue ce coup
+            }
+        }
+        return racines;
+    }
+
+    /**
+     * Crée la racine d'un nouvel arbre de recherche à partir de l'état actuel.
+     * <p>
+     * Le joueur de la racine est celui qui vient de jouer, l'adversaire du {@link #joueur} qui a le trait : les
+     * victoires de chaque noeud sont ainsi comptées pour le bon joueur, même quand la recherche part d'un état où
+     * l'humain doit jouer (la réflexion pendant le temps de l'adversaire).
+     *
+     * @return la racine, contenant une copie de l'état actuel
+     */
+    Noeud nouvelleRacine() {
+        Noeud racine = new Noeud(null, null);
+        if (racine.getJoueur() == joueur)
+            racine.changerJoueur();
+        racine.setEtat(copieEtat());
+        return racine;
+    }
+
+    /**
+     * Développe un arbre MCTS jusqu'à ce que le temps imparti soit écoulé, ou que le coup le plus visité depuis la
+     * racine ne puisse plus changer.
+     * <p>
+     * Plusieurs threads peuvent développer le même arbre en même temps, chacun avec son propre simulateur. Avec
+     * plusieurs arbres, le coup le plus visité est celui de leurs statistiques additionnées : tous les threads
+     * s'arrêtent ensemble, sur le coup qui sera joué.
+     *
+     * @param racine       la racine de l'arbre à développer
+     * @param racines      les racines de tous les arbres de la recherche, <code>racine</code> comprise
+     * @param simusDebut   le nombre de simulations de toutes ces racines au début de la recherche
+     * @param simulateur   le simulateur utilisé par ce thread
+     * @param table        la table de transposition, ou <code>null</code>
+     * @param exploration  la constante <code>c</code> de UCB1
+     * @param temps        la gestion du temps de la recherche
+     * @param statistiques les mesures de ce thread
+     * @return la racine de l'arbre
+     */
+    private Noeud mcts(Noeud racine, Noeud[] racines, long simusDebut, Simulateur simulateur, TableTransposition table, double exploration, GestionTemps temps, StatistiquesRecherche statistiques) {
+        final int[] visites = new int[COLONNE];
+        for (int k = 1; ; k++) {
+            if (!iteration(racine, simulateur, table, exploration, statistiques))
+                break; // la valeur de la racine est prouvée, inutile de chercher plus loin
+
+            // on applique MCTS jusqu'à avoir dépassé le temps limite, en ne lisant l'horloge que de temps en temps
+            if (k % GestionTemps.PERIODE_HORLOGE == 0 && arreter(racines, simusDebut, temps, visites))
+                break;
+        }
+
+        return racine;
+    }
+
+    /**
+     * Développe un arbre MCTS d'une tranche d'itérations, sur le thread appelant : une longue recherche peut ainsi
+     * être découpée en tâches courtes, exécutées l'une après l'autre par n'importe quel thread.
+     *
+     * @param racine       la racine de l'arbre à développer, créée par {@link #nouvelleRacine()}
+     * @param simusDebut   le nombre de simulations de la racine au début de toute la recherche
+     * @param simulateur   le simulateur de la recherche
+     * @param exploration  la constante <code>c</code> de UCB1
+     * @param temps        la gestion du temps de toute la recherche
+     * @param iterations   le nombre d'itérations MCTS de la tranche
+     * @param statistiques les mesures de la recherche, complétées par celles de la tranche
+     * @return <code>true</code> si la recherche est finie, <code>false</code> si elle doit continuer à la tranche
+     * suivante
+     */
+    boolean developper(Noeud racine, long simusDebut, Simulateur simulateur, double exploration, GestionTemps temps, int iterations, StatistiquesRecherche statistiques) {
+        final Noeud[] racines = {racine};
+        final int[] visites = new int[COLONNE];
+        for (int k = 1; k <= iterations; k++) {
+            if (!iteration(racine, simulateur, null, exploration, statistiques))
+                return true; // la valeur de la racine est prouvée
 
-            assert e != null;
-            System.out.println("\n La probabilité de victoire est : " + e.getNb_victoires() + " / " + e.getNb_simus() + " = " + e.ratio());
-            jouerCoup(best);
+            if (k % GestionTemps.PERIODE_HORLOGE == 0 && arreter(racines, simusDebut, temps, visites))
+                return true;
         }
+        return arreter(racines, simusDebut, temps, visites);
+    }
 
+    /**
+     * Vérifie si la recherche doit s'arrêter : le temps imparti est écoulé, ou la deuxième colonne la plus visitée
+     * depuis les racines ne peut plus rattraper la première, leurs visites étant additionnées sur tous les arbres.
+     *
+     * @param racines    les racines de tous les arbres de la recherche
+     * @param simusDebut le nombre de simulations de ces racines au début de la recherche
+     * @param temps      la gestion du temps de la recherche
+     * @param visites    un tableau de {@link #COLONNE} cases, rempli avec les visites de chaque colonne
+     * @return <code>true</code> si la recherche doit s'arrêter
+     */
+    private static boolean arreter(Noeud[] racines, long simusDebut, GestionTemps temps, int[] visites) {
+        long maintenant = System.nanoTime();
+        if (temps.estEcoule(maintenant))
+            return true;
+        if (!temps.isArretAnticipe())
+            return false;
 
+        Arrays.fill(visites, 0);
+        long simulations = -simusDebut;
+        for (Noeud racine : racines) {
+            simulations += racine.getNb_simus();
+            for (int j = 0; j < COLONNE; j++) {
+                Noeud enfant = racine.enfantEnColonne(j);
+                if (enfant != null)
+                    visites[j] += enfant.getNb_simus();
+            }
+        }
+        return temps.peutArreter(visites, simulations, maintenant);
+    }
+
+    /**
+     * Développe un nouvel arbre MCTS à partir de l'état actuel, d'un nombre fixé d'itérations, sur le thread appelant.
+     * <p>
+     * Permet de mesurer la recherche indépendamment de l'horloge.
+     *
+     * @param iterations   le nombre d'itérations MCTS
+     * @param parametres   les réglages de la recherche (seule la constante d'exploration est utilisée)
+     * @param simulateur   le simulateur utilisé pour les parties aléatoires
+     * @param statistiques les mesures de la recherche, complétées par celles de chaque itération
+     * @return la racine de l'arbre
+     */
+    Noeud iterer(int iterations, Parametres parametres, Simulateur simulateur, StatistiquesRecherche statistiques) {
+        Noeud racine = nouvelleRacine();
+        for (int k = 0; k < iterations; k++) {
+            if (!iteration(racine, simulateur, null, parametres.getExploration(), statistiques))
+                break;
+        }
+        return racine;
+    }
+
+    /**
+     * Effectue une itération de MCTS :
+     * <ul>
+     *     <li>sélection du noeud le + propice à être développé</li>
+     *     <li>développement du noeud</li>
+     *     <li>simulation aléatoire d'une partie à partir de ce noeud</li>
+     *     <li>propagation du score jusqu'à la racine de l'arbre</li>
+     * </ul>
+     *
+     * @param racine       la racine de l'arbre à développer
+     * @param simulateur   le simulateur utilisé par ce thread
+     * @param table        la table de transposition, ou <code>null</code>
+     * @param exploration  la constante <code>c</code> de UCB1
+     * @param statistiques les mesures de ce thread, complétées par celles de l'itération
+     * @return <code>false</code> si la valeur de la racine est prouvée et que rien n'a été fait
+     */
+    private boolean iteration(Noeud racine, Simulateur simulateur, TableTransposition table, double exploration, StatistiquesRecherche statistiques) {
+        // l'horloge n'est lue que si les étapes sont chronométrées : c'est sinon une part notable de l'itération
+        final boolean chrono = statistiques.isChronometre();
+        long t0 = chrono ? System.nanoTime() : 0;
+        Noeud toExpand = selection(racine, table, exploration);
+        if (toExpand == null)
+            return false;
+
+        long t1 = chrono ? System.nanoTime() : 0;
+        Noeud expanded = toExpand.developpement(table);
+        if (expanded != toExpand)
+            expanded.ajouterPerteVirtuelle();
+        long t2 = chrono ? System.nanoTime() : 0;
+        boolean aleatoire = !expanded.estProuve();
+        FinDePartie status = simulation(expanded, simulateur);
+        long t3 = chrono ? System.nanoTime() : 0;
+        expanded.propagationScore(status, table);
+        long t4 = chrono ? System.nanoTime() : 0;
+        int profondeur = expanded.getEtat().getNbCoups() - racine.getEtat().getNbCoups();
+        statistiques.compterIteration(profondeur, aleatoire, t1 - t0, t2 - t1, t3 - t2, t4 - t3);
+        return true;
+    }
+
+    /**
+     * Ajoute les statistiques des enfants d'une racine aux statistiques cumulées de chaque colonne.
+     *
+     * @param racine    la racine d'un arbre MCTS
+     * @param simus     le nombre de simulations par colonne jouée depuis la racine
+     * @param victoires le nombre de victoires par colonne jouée depuis la racine
+     * @param preuves   la valeur prouvée de chaque colonne jouée depuis la racine, complétée par celles de cet arbre
+     */
+    static void cumulerRacine(Noeud racine, int[] simus, int[] victoires, Preuve[] preuves) {
+        for (Noeud enf : racine.getEnfants()) {
+            simus[enf.getCoup().getColonne()] += enf.getNb_simus();
+            victoires[enf.getCoup().getColonne()] += enf.getNb_victoires();
+            if (enf.estProuve())
+                preuves[enf.getCoup().getColonne()] = enf.getPreuve();
+        }
     }
 
     /**
      * MCTS : sélection du noeud à développer.
+     * <p>
+     * Une perte virtuelle est comptée sur chaque noeud du chemin menant au noeud sélectionné ; elle sera retirée
+     * lors de la propagation du score. Les sous-arbres dont la valeur est déjà prouvée ne sont plus visités.
+     * <p>
+     * Avec une table de transposition, les enfants sont comparés à l'aide des statistiques cumulées de leur
+     * position, et un enfant créé en descendant reprend les statistiques déjà connues de sa position.
      *
-     * @param racine la racine de l'arbre à partir de laquelle chercher le noeud
-     * @return <code>null</code> si aucun noeud n'est à développer, sinon le noeud à développer
+     * @param racine      la racine de l'arbre à partir de laquelle chercher le noeud
+     * @param table       la table de transposition, ou <code>null</code>
+     * @param exploration la constante <code>c</code> de UCB1
+     * @return <code>null</code> si la valeur de la racine est prouvée, sinon le noeud à développer
      */
-    private Noeud selection(Noeud racine) {
+    private Noeud selection(Noeud racine, TableTransposition table, double exploration) {
         Noeud current = racine, next;
+        racine.ajouterPerteVirtuelle();
 
         do {
-            Coup c = current.selection();
+            Coup c = current.selection(table, exploration);
 
             if (c == null) {
-                // feuille car pas de coups possibles
-                current.setTerminal(true);
+                // tous les enfants sont prouvés, donc le noeud aussi
+                current.evaluerPreuve();
+                current.retirerPerteVirtuelle();
                 if (current == racine) {
-                    return null; // arbre fini d'être exploré
+                    return null; // racine prouvée
                 } else {
                     // on revient au parent, peut-être qu'il a encore des enfants à explorer
                     next = current.getParent();
                 }
             } else {
-                next = current.enfantAvecCoup(c);
-                if (next == null) {
-                    // jamais exploré ici...
-                    next = new Noeud(current, c);
-                }
+                // jamais exploré ici... ou déjà exploré, on descend
+                next = current.obtenirEnfant(c, table);
+                next.ajouterPerteVirtuelle();
             }
 
             current = next;
-        } while (!current.estFeuille() && !current.estTerminal());
+        } while (!current.estFeuille() && !current.estProuve());
 
         return current;
     }
 
     /**
      * MCTS : simule une partie aléatoirement à partir d'un noeud
+     * <p>
+     * La partie aléatoire est jouée par le simulateur, en dehors de l'arbre : aucun noeud n'est ajouté.
      *
      * @param racineLocale le noeud servant de racine locale à la simulation aléatoire
-     * @return si la partie est finie ou non
+     * @param simulateur   le moteur de simulation utilisé pour jouer la partie aléatoire
+     * @return le résultat de la partie simulée
      */
-    private FinDePartie simulation(Noeud racineLocale) {
-        Noeud current = racineLocale;
-        FinDePartie fin = current.estTerminal() ? (current.getNb_victoires() == 1 ? FinDePartie.ORDI_GAGNE : FinDePartie.HUMAIN_GAGNE) : FinDePartie.NON;
-
-        while (!current.estTerminal() && (fin = current.getEtat().testFin()) == FinDePartie.NON) {
+    private FinDePartie simulation(Noeud racineLocale, Simulateur simulateur) {
+        if (!racineLocale.estProuve()) {
             // tant que la partie n'est pas finie, on continue de simuler aléatoirement
-            current = current.developpement();
+            return simulateur.simuler(racineLocale.getEtat());
         }
-        current.setTerminal(true);
 
-        // et on donne le score final (match nul, gagnant ou perdant)
-        return fin;
+        // sinon on donne le score prouvé (match nul, gagnant ou perdant)
+        return racineLocale.resultatProuve();
     }
 
     /**
@@ -384,23 +1426,6 @@ public class Etat {
      */
     @Override
     public String toString() {
-        StringBuilder string = new StringBuilder();
-        int i, j;
-        string.append("   ┃");
-        for (j = 1; j <= COLONNE; j++)
-            string.append(" ").append(j).append(" ┃");
-        string.append("\n").append("━━━╋━━━╇━━━╇━━━╇━━━╇━━━╇━━━╇━━━┫").append("\n");
-
-        for (i = 1; i <= LIGNE; i++) {
-            string.append(" ").append(i).append(" ┃");
-            for (j = 0; j < COLONNE; j++) {
-                string.append(" ");
-                char x = plateau[i - 1][j];
-                string.append(x == 'X' ? "\033[41m\033[31mX" : x == 'O' ? "\033[43m\033[33mO" : " ").append("\033[0m");
-                string.append(j == COLONNE - 1 ? " ┃" : " │");
-            }
-            string.append("\n").append(i == LIGNE ? "━━━┻━━━┷━━━┷━━━┷━━━┷━━━┷━━━┷━━━┛" : "━━━╉───┼───┼───┼───┼───┼───┼───┨").append("\n");
-        }
-        return string.toString();
+        return Grille.dessiner(getPlateau());
     }
 }
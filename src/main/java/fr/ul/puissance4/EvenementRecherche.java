@@ -0,0 +1,91 @@
+package fr.ul.puissance4;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Événement JFR (Java Flight Recorder) émis à chaque coup de l'ordinateur, avec les mesures de sa recherche.
+ * <p>
+ * L'événement n'est enregistré que pendant un enregistrement JFR, par exemple avec
+ * <code>java -XX:StartFlightRecording=filename=partie.jfr ...</code> ; il se lit ensuite avec
+ * <code>jfr print --events fr.ul.puissance4.Recherche partie.jfr</code> ou JDK Mission Control. Sa durée est celle
+ * de toute la réflexion de l'ordinateur.
+ */
+@Name("fr.ul.puissance4.Recherche")
+@Label("Recherche de l'ordinateur")
+@Category("Puissance 4")
+@Description("Mesures de la recherche d'un coup de l'ordinateur")
+@StackTrace(false)
+class EvenementRecherche extends Event {
+    @Label("Origine du coup")
+    String origine;
+    @Label("Colonne jouée")
+    int coup;
+    @Label("Itérations MCTS")
+    long iterations;
+    @Label("Parties aléatoires")
+    long simulations;
+    @Label("Parties aléatoires par seconde")
+    double simulationsParSeconde;
+    @Label("Noeuds créés")
+    long noeuds;
+    @Label("Profondeur maximale")
+    int profondeurMax;
+    @Label("Profondeur moyenne")
+    double profondeurMoyenne;
+    @Label("Sélection")
+    @Timespan(Timespan.NANOSECONDS)
+    long tempsSelection;
+    @Label("Développement")
+    @Timespan(Timespan.NANOSECONDS)
+    long tempsDeveloppement;
+    @Label("Simulation")
+    @Timespan(Timespan.NANOSECONDS)
+    long tempsSimulation;
+    @Label("Propagation")
+    @Timespan(Timespan.NANOSECONDS)
+    long tempsPropagation;
+    @Label("Simulations reprises")
+    @Description("Simulations déjà connues des arbres repris du coup précédent")
+    long simulationsReprises;
+    @Label("Positions trouvées dans la table")
+    long succesTable;
+    @Label("Positions absentes de la table")
+    long echecsTable;
+    @Label("Enfants de la racine")
+    @Description("colonne:simulations/victoires[/preuve] de chaque colonne explorée")
+    String racine;
+
+    /**
+     * Termine l'événement et l'enregistre, si un enregistrement JFR est en cours.
+     *
+     * @param statistiques les mesures de la recherche terminée
+     */
+    void enregistrer(StatistiquesRecherche statistiques) {
+        end();
+        if (!shouldCommit())
+            return;
+        origine = statistiques.getOrigine().name();
+        coup = statistiques.getCoup();
+        iterations = statistiques.getIterations();
+        simulations = statistiques.getSimulations();
+        simulationsParSeconde = statistiques.getSimulationsParSeconde();
+        noeuds = statistiques.getNoeuds();
+        profondeurMax = statistiques.getProfondeurMax();
+        profondeurMoyenne = statistiques.getProfondeurMoyenne();
+        tempsSelection = statistiques.getTempsSelection();
+        tempsDeveloppement = statistiques.getTempsDeveloppement();
+        tempsSimulation = statistiques.getTempsSimulation();
+        tempsPropagation = statistiques.getTempsPropagation();
+        simulationsReprises = statistiques.getSimulationsReprises();
+        succesTable = statistiques.getSuccesTable();
+        echecsTable = statistiques.getEchecsTable();
+        racine = statistiques.resumerRacine();
+        commit();
+    }
+}
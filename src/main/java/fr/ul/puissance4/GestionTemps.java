@@ -0,0 +1,156 @@
+package fr.ul.puissance4;
+
+/**
+ * Gestion du temps de réflexion d'une recherche MCTS.
+ * <p>
+ * La recherche s'arrête à une échéance mesurée avec {@link System#nanoTime()}, mais ne lit l'horloge que toutes les
+ * {@link #PERIODE_HORLOGE} itérations. Avec l'arrêt anticipé, elle s'arrête aussi dès que le coup le plus visité
+ * depuis la racine ne peut plus être rattrapé : l'écart de visites avec le deuxième dépasse le nombre de simulations
+ * que la recherche peut encore faire, à son rythme actuel, avant l'échéance. Le coup joué doit alors être le plus
+ * visité (voir {@link #isArretAnticipe()}), et avec plusieurs arbres, les visites sont additionnées sur tous les arbres.
+ * <p>
+ * Une gestion du temps est partagée par tous les threads d'une recherche ; {@link #interrompre()} les arrête tous
+ * avant l'échéance.
+ */
+public class GestionTemps {
+    /**
+     * Le nombre d'itérations MCTS entre deux lectures de l'horloge.
+     */
+    public static final int PERIODE_HORLOGE = 64;
+    /**
+     * La part du temps imparti accordée aux coups du tout début et de la toute fin de la partie.
+     */
+    private static final double PART_MINIMALE = 0.4;
+    /**
+     * Le nombre de pions posés à partir duquel un coup dispose de tout le temps imparti.
+     */
+    private static final int FIN_OUVERTURE = 8;
+    /**
+     * Le nombre de cases vides en dessous duquel le temps accordé à un coup diminue de nouveau.
+     */
+    private static final int DEBUT_FINALE = 12;
+
+    /**
+     * L'instant (en ns, selon {@link System#nanoTime()}) de début de la recherche.
+     */
+    private final long debut;
+    /**
+     * L'instant (en ns, selon {@link System#nanoTime()}) au-delà duquel la recherche est interrompue.
+     */
+    private final long echeance;
+    /**
+     * <code>true</code> si la recherche peut s'arrêter avant l'échéance quand son coup ne peut plus changer.
+     */
+    private final boolean arretAnticipe;
+    /**
+     * <code>true</code> si la recherche a été interrompue avant l'échéance.
+     */
+    private volatile boolean interrompue;
+
+    /**
+     * Commence la gestion du temps d'une recherche.
+     *
+     * @param tempsmax      le temps maximum en ms accordé à la recherche, à partir de maintenant
+     * @param arretAnticipe <code>true</code> si la recherche peut s'arrêter avant l'échéance
+     */
+    public GestionTemps(long tempsmax, boolean arretAnticipe) {
+        this.debut = System.nanoTime();
+        this.echeance = debut + Math.max(0, tempsmax) * 1_000_000;
+        this.arretAnticipe = arretAnticipe;
+    }
+
+    /**
+     * Calcule le temps accordé à un coup selon l'avancement de la partie.
+     * <p>
+     * Les premiers coups, souvent dans le livre d'ouvertures, et les derniers, vite résolus par le {@link Solveur},
+     * n'ont droit qu'à une part du temps imparti ; les coups du milieu de partie, où elle se décide, en disposent
+     * entièrement.
+     *
+     * @param tempsmax le temps maximum en ms accordé à un coup
+     * @param nbCoups  le nombre de pions déjà posés
+     * @return le temps en ms accordé au coup, au plus <code>tempsmax</code>
+     */
+    public static long budget(long tempsmax, int nbCoups) {
+        int vides = Etat.LIGNE * Etat.COLONNE - nbCoups;
+        double ouverture = Math.min(1.0, (double) nbCoups / FIN_OUVERTURE);
+        double finale = Math.min(1.0, (double) vides / DEBUT_FINALE);
+        return Math.round(tempsmax * (PART_MINIMALE + (1 - PART_MINIMALE) * ouverture * finale));
+    }
+
+    /**
+     * @return <code>true</code> si la recherche peut s'arrêter avant l'échéance : le coup à jouer est alors le plus
+     * visité, le seul que l'arrêt anticipé garantit
+     */
+    public boolean isArretAnticipe() {
+        return arretAnticipe;
+    }
+
+    /**
+     * Vérifie si l'échéance est dépassée.
+     *
+     * @param maintenant l'instant actuel, selon {@link System#nanoTime()}
+     * @return <code>true</code> si la recherche doit s'arrêter
+     */
+    public boolean estEcoule(long maintenant) {
+        return interrompue || maintenant - echeance >= 0;
+    }
+
+    /**
+     * @param maintenant l'instant actuel, selon {@link System#nanoTime()}
+     * @return la part du temps imparti déjà écoulée, entre 0 et 1
+     */
+    public double partEcoulee(long maintenant) {
+        long total = echeance - debut;
+        return total <= 0 ? 1 : Math.max(0, Math.min(1, (double) (maintenant - debut) / total));
+    }
+
+    /**
+     * Interrompt la recherche : ses threads s'arrêtent à leur prochaine lecture de l'horloge.
+     */
+    public void interrompre() {
+        interrompue = true;
+    }
+
+    /**
+     * Vérifie si la recherche peut s'arrêter avant l'échéance parce que son coup ne peut plus changer.
+     *
+     * @param premier     le nombre de visites de l'enfant le plus visité de la racine
+     * @param second      le nombre de visites du deuxième enfant le plus visité
+     * @param simulations le nombre de simulations faites depuis la racine depuis le début de la recherche
+     * @param maintenant  l'instant actuel, selon {@link System#nanoTime()}
+     * @return <code>true</code> si le deuxième enfant ne peut plus rattraper le premier avant l'échéance
+     */
+    public boolean peutArreter(int premier, int second, long simulations, long maintenant) {
+        long ecoule = maintenant - debut;
+        if (!arretAnticipe || ecoule <= 0 || simulations <= 0)
+            return false;
+
+        // au rythme actuel, le nombre de simulations que la recherche peut encore faire avant l'échéance
+        double restantes = (double) simulations * (echeance - maintenant) / ecoule;
+        return premier - second > restantes;
+    }
+
+    /**
+     * Vérifie si la recherche peut s'arrêter avant l'échéance parce que son coup ne peut plus changer.
+     *
+     * @param visites     le nombre de visites de chaque colonne jouée depuis la racine, additionné sur tous les arbres
+     *                    de la recherche
+     * @param simulations le nombre de simulations faites depuis la racine depuis le début de la recherche, dans tous
+     *                    les arbres
+     * @param maintenant  l'instant actuel, selon {@link System#nanoTime()}
+     * @return <code>true</code> si la deuxième colonne la plus visitée ne peut plus rattraper la première avant
+     * l'échéance
+     */
+    public boolean peutArreter(int[] visites, long simulations, long maintenant) {
+        int premier = 0, second = 0;
+        for (int n : visites) {
+            if (n > premier) {
+                second = premier;
+                premier = n;
+            } else if (n > second) {
+                second = n;
+            }
+        }
+        return peutArreter(premier, second, simulations, maintenant);
+    }
+}
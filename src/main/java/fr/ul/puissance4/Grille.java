@@ -0,0 +1,284 @@
+package fr.ul.puissance4;
+
+/**
+ * Plateau d'une variante du puissance 4, de {@link Dimensions} choisies à l'exécution.
+ * <p>
+ * Comme dans {@link Etat}, les pions de chaque joueur sont rangés dans un masque de bits, colonne par colonne, avec
+ * une case sentinelle en haut de chaque colonne. Quand ce masque tient dans un <code>long</code>, {@link #creer}
+ * donne une {@link GrilleMot}, aussi rapide qu'un {@link Etat} ; au-delà, une {@link GrilleMots} range chaque masque
+ * dans un tableau de <code>long</code>.
+ * <p>
+ * Les joueurs et les fins de partie sont ceux d'{@link Etat} : l'ordinateur commence, sauf avec
+ * {@link #setJoueur(int)}. Le {@link Moteur} analyse une grille avec un {@link ArbreGrille}.
+ */
+public abstract class Grille {
+    final Dimensions dimensions;
+    /**
+     * Le nombre de bits réservés à chaque colonne, voir {@link Dimensions#getHauteur()}.
+     */
+    final int hauteur;
+    /**
+     * Le nombre de pions déjà posés dans chaque colonne.
+     */
+    final byte[] hauteurs;
+    /**
+     * Le nombre de pions posés sur le plateau.
+     */
+    int nbCoups;
+    /**
+     * Le joueur qui doit jouer, {@link Etat#HUMAN_PLAYER} ou {@link Etat#COMPUTER_PLAYER}.
+     */
+    int joueur = Etat.COMPUTER_PLAYER;
+    /**
+     * L'état de fin de partie après le dernier coup joué.
+     */
+    FinDePartie fin = FinDePartie.NON;
+
+    Grille(Dimensions dimensions) {
+        this.dimensions = dimensions;
+        this.hauteur = dimensions.getHauteur();
+        this.hauteurs = new byte[dimensions.getColonnes()];
+    }
+
+    /**
+     * Crée un plateau vide, avec la représentation la plus rapide possible pour ses dimensions.
+     *
+     * @param dimensions les dimensions du plateau
+     * @return un plateau vide, dans lequel l'ordinateur commence
+     */
+    public static Grille creer(Dimensions dimensions) {
+        return dimensions.tientSurUnMot() ? new GrilleMot(dimensions) : new GrilleMots(dimensions);
+    }
+
+    /**
+     * Construit un plateau en jouant une suite de coups depuis le plateau vide.
+     * <p>
+     * Les colonnes sont numérotées à partir de 1 comme pour l'humain. Avec au plus 9 colonnes, chaque chiffre est un
+     * coup, par exemple <code>"4453"</code> ou <code>"4 4 5 3"</code> ; au-delà, les coups sont séparés par des espaces,
+     * par exemple <code>"10 4 12"</code>.
+     *
+     * @param dimensions les dimensions du plateau
+     * @param coups      les colonnes jouées
+     * @return le plateau obtenu, dans lequel l'ordinateur a commencé
+     * @throws IllegalArgumentException si un coup n'est pas une colonne jouable, ou est joué après la fin de la partie
+     */
+    public static Grille depuisCoups(Dimensions dimensions, String coups) {
+        Grille grille = creer(dimensions);
+        for (String mot : coups.trim().split("\\s+")) {
+            if (mot.isEmpty())
+                continue;
+            if (dimensions.getColonnes() <= 9) {
+                for (int i = 0; i < mot.length(); i++)
+                    grille.jouerCoup(Character.digit(mot.charAt(i), 10), coups);
+            } else {
+                try {
+                    grille.jouerCoup(Integer.parseInt(mot), coups);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Colonne invalide '" + mot + "' dans " + coups);
+                }
+            }
+        }
+        return grille;
+    }
+
+    /**
+     * Joue un coup de {@link #depuisCoups(Dimensions, String)}.
+     *
+     * @param colonne la colonne jouée, à partir de 1
+     * @param coups   tous les coups, pour les messages d'erreur
+     */
+    private void jouerCoup(int colonne, String coups) {
+        if (fin != FinDePartie.NON)
+            throw new IllegalArgumentException("La partie est finie avant la fin de " + coups);
+        if (jouer(colonne - 1) == null)
+            throw new IllegalArgumentException("Colonne " + colonne + " non jouable dans " + coups);
+    }
+
+    public Dimensions getDimensions() {
+        return dimensions;
+    }
+
+    public int getJoueur() {
+        return joueur;
+    }
+
+    /**
+     * Choisit le joueur qui doit jouer, par exemple celui qui commence la partie.
+     *
+     * @param joueur {@link Etat#HUMAN_PLAYER} ou {@link Etat#COMPUTER_PLAYER}
+     */
+    public void setJoueur(int joueur) {
+        this.joueur = joueur;
+    }
+
+    /**
+     * @return l'état de fin de partie après le dernier coup joué, {@link FinDePartie#NON} sur le plateau vide
+     */
+    public FinDePartie getFin() {
+        return fin;
+    }
+    public int getNbCoups() {
+        return nbCoups;
+    }
+
+    /**
+     * Vérifie si un pion peut être posé dans une colonne.
+     *
+     * @param colonne le numéro de la colonne
+     * @return <code>true</code> si la colonne existe et n'est pas pleine, <code>false</code> sinon
+     */
+    public boolean peutJouer(int colonne) {
+        return colonne >= 0 && colonne < hauteurs.length && hauteurs[colonne] < dimensions.getLignes();
+    }
+
+    /**
+     * Remplit un tableau fourni par l'appelant avec les colonnes jouables, sans allocation.
+     *
+     * @param colonnes le tableau à remplir, de taille au moins le nombre de colonnes
+     * @return le nombre de colonnes jouables, rangées au début de <code>colonnes</code>
+     */
+    public int colonnesJouables(int[] colonnes) {
+        int n = 0;
+        for (int j = 0; j < hauteurs.length; j++) {
+            if (hauteurs[j] < dimensions.getLignes())
+                colonnes[n++] = j;
+        }
+        return n;
+    }
+
+    /**
+     * Pose un pion du joueur qui doit jouer dans une colonne, et teste si ce coup termine la partie : seules les
+     * lignes passant par le pion posé sont examinées.
+     *
+     * @param colonne la colonne où on souhaite poser le pion
+     * @return <code>null</code> si le pion n'a pas pu être joué, sinon l'état de fin de la partie après ce coup
+     */
+    public FinDePartie jouer(int colonne) {
+        if (!peutJouer(colonne))
+            return null;
+
+        boolean aligne = poser(colonne, hauteurs[colonne]);
+        hauteurs[colonne]++;
+        nbCoups++;
+
+        if (aligne)
+            fin = joueur == Etat.HUMAN_PLAYER ? FinDePartie.HUMAIN_GAGNE : FinDePartie.ORDI_GAGNE;
+        else
+            fin = nbCoups == dimensions.getCases() ? FinDePartie.MATCH_NUL : FinDePartie.NON;
+
+        joueur = 1 - joueur;
+        return fin;
+    }
+
+    /**
+     * Pose un pion du joueur qui doit jouer.
+     *
+     * @param colonne la colonne du pion
+     * @param ligne   la ligne du pion, 0 en bas
+     * @return <code>true</code> si le pion est aligné avec au moins {@link Dimensions#getAlignement()} - 1 autres
+     */
+    abstract boolean poser(int colonne, int ligne);
+
+    /**
+     * Vérifie si une case contient un pion d'un joueur.
+     *
+     * @param joueur  le joueur
+     * @param colonne la colonne de la case
+     * @param ligne   la ligne de la case, 0 en bas
+     * @return <code>true</code> si la case contient un pion du joueur
+     */
+    abstract boolean occupee(int joueur, int colonne, int ligne);
+
+    /**
+     * Recopie un autre plateau de mêmes dimensions dans <code>this</code>, sans aucune allocation.
+     *
+     * @param source le plateau à recopier
+     * @throws IllegalArgumentException si les dimensions sont différentes
+     */
+    public void copier(Grille source) {
+        if (!dimensions.equals(source.dimensions))
+            throw new IllegalArgumentException("Dimensions différentes : " + dimensions + " et " + source.dimensions);
+        joueur = source.joueur;
+        nbCoups = source.nbCoups;
+        fin = source.fin;
+        System.arraycopy(source.hauteurs, 0, hauteurs, 0, hauteurs.length);
+        copierPions(source);
+    }
+
+    /**
+     * Recopie les masques de pions d'un plateau de même classe et de mêmes dimensions.
+     */
+    abstract void copierPions(Grille source);
+
+    /**
+     * @return un nouveau plateau identique à <code>this</code>
+     */
+    public Grille copie() {
+        Grille copie = creer(dimensions);
+        copie.copier(this);
+        return copie;
+    }
+
+    /**
+     * Get du plateau.
+     *
+     * @return le plateau de jeu (ligne 0 en haut), <code>'X'</code> pour l'ordinateur, <code>'O'</code> pour l'humain
+     * et <code>' '</code> pour une case vide
+     */
+    public char[][] getPlateau() {
+        int lignes = dimensions.getLignes();
+        char[][] plateau = new char[lignes][hauteurs.length];
+        for (int i = 0; i < lignes; i++) {
+            for (int j = 0; j < hauteurs.length; j++) {
+                int r = lignes - 1 - i;
+                plateau[i][j] = occupee(Etat.COMPUTER_PLAYER, j, r) ? 'X' : occupee(Etat.HUMAN_PLAYER, j, r) ? 'O' : ' ';
+            }
+        }
+        return plateau;
+    }
+
+    @Override
+    public String toString() {
+        return dessiner(getPlateau());
+    }
+
+    /**
+     * Dessine un plateau de n'importe quelles dimensions, avec le numéro de chaque ligne et de chaque colonne.
+     *
+     * @param plateau le plateau (ligne 0 en haut), comme donné par {@link Etat#getPlateau()}
+     * @return le dessin du plateau
+     */
+    static String dessiner(char[][] plateau) {
+        int lignes = plateau.length;
+        int colonnes = plateau[0].length;
+        StringBuilder string = new StringBuilder();
+        string.append("   ┃");
+        for (int j = 1; j <= colonnes; j++)
+            string.append(String.format("%2d ┃", j));
+        string.append("\n").append(bordure("━━━╋", "━━━", "╇", "┫", colonnes)).append("\n");
+
+        for (int i = 1; i <= lignes; i++) {
+            string.append(String.format("%2d ┃", i));
+            for (int j = 0; j < colonnes; j++) {
+                string.append(" ");
+                char x = plateau[i - 1][j];
+                string.append(x == 'X' ? "\033[41m\033[31mX" : x == 'O' ? "\033[43m\033[33mO" : " ").append("\033[0m");
+                string.append(j == colonnes - 1 ? " ┃" : " │");
+            }
+            string.append("\n").append(i == lignes
+                    ? bordure("━━━┻", "━━━", "┷", "┛", colonnes)
+                    : bordure("━━━╉", "───", "┼", "┨", colonnes)).append("\n");
+        }
+        return string.toString();
+    }
+
+    /**
+     * @return une ligne de bordure : le début, puis chaque colonne suivie du séparateur, ou de la fin pour la dernière
+     */
+    private static String bordure(String debut, String colonne, String separateur, String fin, int colonnes) {
+        StringBuilder ligne = new StringBuilder(debut);
+        for (int j = 0; j < colonnes; j++)
+            ligne.append(colonne).append(j == colonnes - 1 ? fin : separateur);
+        return ligne.toString();
+    }
+}
@@ -0,0 +1,62 @@
+package fr.ul.puissance4;
+
+/**
+ * {@link Grille} dont les pions de chaque joueur tiennent dans un seul <code>long</code>, comme dans {@link Etat} :
+ * jusqu'à 8 colonnes de 7 lignes, ou 9 colonnes de 6 lignes.
+ * <p>
+ * La case de la colonne <code>j</code> située à <code>r</code> cases du bas correspond au bit
+ * <code>j × hauteur + r</code>.
+ */
+class GrilleMot extends Grille {
+    private long pionsOrdi;
+    private long pionsHumain;
+
+    GrilleMot(Dimensions dimensions) {
+        super(dimensions);
+    }
+
+    @Override
+    boolean poser(int colonne, int ligne) {
+        long pion = 1L << (colonne * hauteur + ligne);
+        long pions = joueur == Etat.HUMAN_PLAYER ? (pionsHumain |= pion) : (pionsOrdi |= pion);
+
+        int n = dimensions.getAlignement();
+        return longueurAlignement(pions, pion, 1) >= n // verticale
+                || longueurAlignement(pions, pion, hauteur) >= n // horizontale
+                || longueurAlignement(pions, pion, hauteur - 1) >= n // diagonales
+                || longueurAlignement(pions, pion, hauteur + 1) >= n;
+    }
+
+    /**
+     * Compte le nombre de pions consécutifs dans une direction donnée, de part et d'autre d'un pion ; la case
+     * sentinelle de chaque colonne empêche les lignes de passer d'une colonne à la suivante.
+     *
+     * @param pions     le masque des pions du joueur
+     * @param pion      le masque du pion de départ
+     * @param direction le décalage entre deux cases voisines dans la direction souhaitée
+     * @return la longueur de la ligne passant par le pion (au moins 1)
+     */
+    private static int longueurAlignement(long pions, long pion, int direction) {
+        int n = 1;
+        long b = pion;
+        while (((b <<= direction) & pions) != 0)
+            n++;
+        b = pion;
+        while (((b >>>= direction) & pions) != 0)
+            n++;
+        return n;
+    }
+
+    @Override
+    boolean occupee(int joueur, int colonne, int ligne) {
+        long pions = joueur == Etat.HUMAN_PLAYER ? pionsHumain : pionsOrdi;
+        return (pions >>> (colonne * hauteur + ligne) & 1) != 0;
+    }
+
+    @Override
+    void copierPions(Grille source) {
+        GrilleMot grille = (GrilleMot) source;
+        pionsOrdi = grille.pionsOrdi;
+        pionsHumain = grille.pionsHumain;
+    }
+}
@@ -0,0 +1,72 @@
+package fr.ul.puissance4;
+
+/**
+ * {@link Grille} dont les pions de chaque joueur ne tiennent pas dans un seul <code>long</code> : le masque, rangé
+ * comme dans {@link GrilleMot}, est découpé en mots de 64 bits.
+ * <p>
+ * Les alignements sont comptés case par case, en suivant chaque direction depuis le pion posé.
+ */
+class GrilleMots extends Grille {
+    private final long[] pionsOrdi;
+    private final long[] pionsHumain;
+
+    GrilleMots(Dimensions dimensions) {
+        super(dimensions);
+        int mots = (dimensions.getColonnes() * hauteur + Long.SIZE - 1) / Long.SIZE;
+        pionsOrdi = new long[mots];
+        pionsHumain = new long[mots];
+    }
+
+    @Override
+    boolean poser(int colonne, int ligne) {
+        long[] pions = joueur == Etat.HUMAN_PLAYER ? pionsHumain : pionsOrdi;
+        int k = colonne * hauteur + ligne;
+        pions[k >>> 6] |= 1L << k;
+
+        int n = dimensions.getAlignement();
+        return longueurAlignement(pions, colonne, ligne, 0, 1) >= n // verticale
+                || longueurAlignement(pions, colonne, ligne, 1, 0) >= n // horizontale
+                || longueurAlignement(pions, colonne, ligne, 1, -1) >= n // diagonales
+                || longueurAlignement(pions, colonne, ligne, 1, 1) >= n;
+    }
+
+    /**
+     * Compte le nombre de pions consécutifs dans une direction donnée, de part et d'autre d'un pion.
+     *
+     * @param pions   le masque des pions du joueur
+     * @param colonne la colonne du pion de départ
+     * @param ligne   la ligne du pion de départ, 0 en bas
+     * @param dj      le déplacement en colonnes entre deux cases voisines
+     * @param dr      le déplacement en lignes entre deux cases voisines
+     * @return la longueur de la ligne passant par le pion (au moins 1)
+     */
+    private int longueurAlignement(long[] pions, int colonne, int ligne, int dj, int dr) {
+        int n = 1;
+        for (int j = colonne + dj, r = ligne + dr; dansPlateau(j, r) && contient(pions, j, r); j += dj, r += dr)
+            n++;
+        for (int j = colonne - dj, r = ligne - dr; dansPlateau(j, r) && contient(pions, j, r); j -= dj, r -= dr)
+            n++;
+        return n;
+    }
+
+    private boolean dansPlateau(int colonne, int ligne) {
+        return colonne >= 0 && colonne < hauteurs.length && ligne >= 0 && ligne < hauteurs[colonne];
+    }
+
+    private boolean contient(long[] pions, int colonne, int ligne) {
+        int k = colonne * hauteur + ligne;
+        return (pions[k >>> 6] >>> k & 1) != 0;
+    }
+
+    @Override
+    boolean occupee(int joueur, int colonne, int ligne) {
+        return contient(joueur == Etat.HUMAN_PLAYER ? pionsHumain : pionsOrdi, colonne, ligne);
+    }
+
+    @Override
+    void copierPions(Grille source) {
+        GrilleMots grille = (GrilleMots) source;
+        System.arraycopy(grille.pionsOrdi, 0, pionsOrdi, 0, pionsOrdi.length);
+        System.arraycopy(grille.pionsHumain, 0, pionsHumain, 0, pionsHumain.length);
+    }
+}
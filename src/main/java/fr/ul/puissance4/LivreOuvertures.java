@@ -0,0 +1,117 @@
+package fr.ul.puissance4;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Livre d'ouvertures : le meilleur coup de chaque position du début de partie, calculé à l'avance par le
+ * {@link ConstructeurOuvertures}.
+ * <p>
+ * Le fichier commence par {@link #MAGIQUE}, suivi d'une entrée de 8 octets par position, triées par ordre croissant :
+ * la clé canonique de la position (la plus petite de sa {@link Etat#getClePosition() clé} et de celle de son
+ * symétrique) dans les 7 octets de poids fort, la colonne à jouer dans l'octet de poids faible.
+ * <p>
+ * Le fichier est projeté en mémoire plutôt que lu : son ouverture est immédiate quelle que soit sa taille, et une
+ * position est cherchée par dichotomie directement dans le fichier. Un livre peut être consulté par plusieurs
+ * threads à la fois.
+ */
+public class LivreOuvertures {
+    /**
+     * Les 8 premiers octets d'un fichier de livre d'ouvertures (« P4LIVRE » suivi de la version du format).
+     */
+    static final long MAGIQUE = 0x50_34_4C_49_56_52_45_01L;
+
+    /**
+     * Les entrées du livre, triées.
+     */
+    private final LongBuffer entrees;
+
+    private LivreOuvertures(LongBuffer entrees) {
+        this.entrees = entrees;
+    }
+
+    /**
+     * Ouvre un livre d'ouvertures.
+     *
+     * @param fichier le fichier du livre
+     * @return le livre, vide si le fichier n'existe pas
+     * @throws UncheckedIOException     si le fichier ne peut pas être lu
+     * @throws IllegalArgumentException si le fichier n'est pas un livre d'ouvertures
+     */
+    public static LivreOuvertures ouvrir(Path fichier) {
+        if (!Files.exists(fichier))
+            return new LivreOuvertures(LongBuffer.allocate(0));
+
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            long taille = canal.size();
+            ByteBuffer octets = canal.map(FileChannel.MapMode.READ_ONLY, 0, taille);
+            if (taille < Long.BYTES || taille % Long.BYTES != 0 || octets.getLong(0) != MAGIQUE)
+                throw new IllegalArgumentException(fichier + " n'est pas un livre d'ouvertures");
+
+            octets.position(Long.BYTES);
+            return new LivreOuvertures(octets.slice().asLongBuffer());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Cherche le coup à jouer dans une position.
+     *
+     * @param etat la position
+     * @return la colonne à jouer, ou -1 si la position n'est pas dans le livre
+     */
+    public int coup(Etat etat) {
+        long cle = etat.getClePosition();
+        long sym = Etat.symetrique(cle);
+        int colonne = chercher(Math.min(cle, sym));
+        if (colonne < 0 || sym >= cle)
+            return colonne;
+        return Etat.COLONNE - 1 - colonne;
+    }
+
+    /**
+     * @return le nombre de positions du livre
+     */
+    public int getTaille() {
+        return entrees.limit();
+    }
+
+    /**
+     * Construit une entrée du livre.
+     *
+     * @param cle     la clé canonique de la position
+     * @param colonne la colonne à jouer dans la position de clé <code>cle</code>
+     * @return l'entrée
+     */
+    static long entree(long cle, int colonne) {
+        return (cle << Byte.SIZE) | colonne;
+    }
+
+    /**
+     * Cherche par dichotomie l'entrée d'une clé canonique.
+     *
+     * @return la colonne de l'entrée, ou -1 si la clé est absente
+     */
+    private int chercher(long cle) {
+        int bas = 0, haut = entrees.limit() - 1;
+        while (bas <= haut) {
+            int milieu = (bas + haut) >>> 1;
+            long entree = entrees.get(milieu);
+            long c = entree >>> Byte.SIZE;
+            if (c < cle)
+                bas = milieu + 1;
+            else if (c > cle)
+                haut = milieu - 1;
+            else
+                return (int) (entree & 0xFF);
+        }
+        return -1;
+    }
+}
@@ -8,18 +8,50 @@ public class Main {
         if (args.length >= 1) {
             timeToThink = Long.parseLong(args[0]);
         }
-
+        Parametres parametres = new Parametres();
+        parametres.setNbThreads(Runtime.getRuntime().availableProcessors());
+        parametres.setTailleTable(64);
+        parametres.setReutiliserArbre(true);
+        parametres.setSeuilSolveur(22);
+        parametres.setPartSolveur(0.1);
+        parametres.setFichierOuvertures("ouvertures.bin");
+        parametres.setGestionTemps(true);
+        parametres.setTempsAdversaire(2 * timeToThink * 1000);
+        if (args.length >= 2) {
+            parametres.setNbThreads(Integer.parseInt(args[1]));
+        }
+        if (args.length >= 3) {
+            parametres.setParallelisme(Parallelisme.valueOf(args[2].toUpperCase()));
+        }
+        if (args.length >= 4) {
+            parametres.setTailleTable(Integer.parseInt(args[3]));
+        }
+        if (args.length >= 5) {
+            parametres.setTailleArbreCompact(Integer.parseInt(args[4]));
+        }
+        if (args.length >= 6) {
+            parametres.setFichierFinales(args[5]);
+        }
+        Dimensions dimensions = Dimensions.STANDARD;
+        if (args.length >= 7) {
+            dimensions = Dimensions.lire(args[6]);
+        }
         Coup coup;
         FinDePartie fin;
 
-        //Initialisation
-        Etat etat = new Etat();
-
         //Choisir qui commence :
         System.out.printf("Qui commence (%d : humain, %d : ordinateur) ? ", Etat.HUMAN_PLAYER, Etat.COMPUTER_PLAYER);
         Scanner scanner = new Scanner(System.in);
-        etat.setJoueur(scanner.nextInt());
+        int premier = scanner.nextInt();
+
+        if (!dimensions.equals(Dimensions.STANDARD)) {
+            afficherFin(jouerVariante(dimensions, premier, timeToThink, parametres));
+            return;
+        }
 
+        //Initialisation
+        Etat etat = new Etat();
+        etat.setJoueur(premier);
         //boucle de jeu
         do {
             //System.out.print("\033[2J\033[0;0H");
@@ -31,21 +63,50 @@ public class Main {
                     coup = Coup.demanderCoup();
                 } while (!etat.jouerCoup(coup));
             } else {
-                //tour de l'ordinateur
-                etat.ordijoue_mcts(timeToThink * 1000);
-
-                // `racine` non libéré de la mémoire ?
-                System.gc();
+                //tour de l'ordinateur, qui continue de réfléchir pendant que l'humain choisit son coup
+                etat.ordijoue_mcts(timeToThink * 1000, parametres);
+                etat.reflechir(parametres);
             }
         } while ((fin = etat.testFin()) == FinDePartie.NON);
-
+        etat.arreterReflexion();
         System.out.println(etat);
 
+        afficherFin(fin);
+    }
+
+    /**
+     * Joue une partie sur un plateau d'autres dimensions que le standard, dont les coups de l'ordinateur sont
+     * cherchés par le {@link Moteur} sur un {@link ArbreGrille}. Le livre d'ouvertures, le solveur et la table de
+     * transposition ne servent qu'au plateau standard.
+     *
+     * @return l'état de fin de la partie
+     */
+    private static FinDePartie jouerVariante(Dimensions dimensions, int premier, long timeToThink, Parametres parametres) {
+        Moteur moteur = new Moteur(parametres);
+        Grille grille = Grille.creer(dimensions);
+        grille.setJoueur(premier);
+        do {
+            System.out.println(grille);
+
+            if (grille.getJoueur() == Etat.HUMAN_PLAYER) {
+                Coup coup;
+                do {
+                    coup = Coup.demanderCoup();
+                } while (grille.jouer(coup.getColonne()) == null);
+            } else {
+                System.out.println(" L'ordinateur réfléchit (" + timeToThink + " s au plus)...");
+                ResultatRecherche resultat = moteur.analyser(grille, timeToThink * 1000).join();
+                System.out.printf(" L'ordinateur joue la colonne %d (%d itérations)%n", resultat.getCoup() + 1, resultat.getIterations());
+                grille.jouer(resultat.getCoup());
+            }
+        } while (grille.getFin() == FinDePartie.NON);
+        System.out.println(grille);
+        return grille.getFin();
+    }
+
+    private static void afficherFin(FinDePartie fin) {
         if (fin == FinDePartie.ORDI_GAGNE) System.out.println("**L'ordinateur a gagné **");
         else if (fin == FinDePartie.MATCH_NUL) System.out.println("Match nul !");
         else System.out.println("**Bravo, l'ordinateur a perdu **");
-
     }
-
-
 }
@@ -0,0 +1,400 @@
+package fr.ul.puissance4;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Moteur d'analyse non bloquant : chaque analyse d'une position par MCTS se termine par un
+ * {@link CompletableFuture}, sans rien afficher ni modifier.
+ * <p>
+ * Une analyse n'occupe pas de thread pendant toute sa durée : elle est découpée en tranches de {@link #TRANCHE}
+ * itérations, chacune soumise à l'exécuteur du moteur quand la précédente est finie. Beaucoup d'analyses peuvent
+ * ainsi se partager un petit groupe de threads, à tour de rôle avec un exécuteur qui traite ses tâches dans l'ordre,
+ * ou la plus en retard d'abord avec un {@link Ordonnanceur}. Une analyse s'arrête au bout du temps imparti, quand son coup ne peut
+ * plus changer (avec {@link Parametres#isGestionTemps()}), quand la valeur de la position est prouvée, au bout de
+ * son quota d'itérations ({@link Parametres#getQuotaIterations()}), ou à la tranche suivante quand son résultat est
+ * annulé avec {@link CompletableFuture#cancel(boolean)}.
+ * <p>
+ * Avec {@link Parametres#getFichierSauvegarde()}, l'arbre d'une analyse est sauvegardé régulièrement et à sa fin :
+ * une analyse de la même position, après un arrêt du processus ou sur une autre machine où le fichier a été copié,
+ * reprend à partir de cet arbre. Un même fichier ne doit servir qu'à une analyse à la fois.
+ * <p>
+ * Les variantes du puissance 4, de {@link Dimensions} quelconques, s'analysent de la même façon à partir d'une
+ * {@link Grille} ({@link #analyser(Grille, GestionTemps, Consumer)}), sur un {@link ArbreGrille}.
+ * <p>
+ * Un moteur peut être utilisé par plusieurs threads à la fois.
+ */
+public class Moteur {
+    /**
+     * Le nombre d'itérations MCTS d'une tranche d'analyse, quelques ms de calcul.
+     */
+    static final int TRANCHE = 8 * GestionTemps.PERIODE_HORLOGE;
+    /**
+     * Le temps minimum entre deux résultats intermédiaires d'une analyse, en ms.
+     */
+    static final long PERIODE_PROGRESSION = 100;
+    /**
+     * Le nombre de noeuds de l'arbre de l'analyse d'une {@link Grille}, quand les réglages ne le fixent pas : une
+     * vingtaine de Mo.
+     */
+    static final int NOEUDS_GRILLE = 1 << 20;
+    private final Executor executeur;
+    private final Parametres parametres;
+
+    /**
+     * Crée un moteur dont les analyses s'exécutent sur le {@link ForkJoinPool#commonPool()}.
+     *
+     * @param parametres les réglages des analyses (seuls la constante d'exploration, l'arrêt anticipé, le quota
+     *                   d'itérations, la sauvegarde de l'arbre et la taille des arbres des variantes sont utilisés)
+     */
+    public Moteur(Parametres parametres) {
+        this(ForkJoinPool.commonPool(), parametres);
+    }
+
+    /**
+     * Crée un moteur.
+     *
+     * @param executeur  l'exécuteur sur lequel s'exécutent les tranches d'analyse
+     * @param parametres les réglages des analyses (seuls la constante d'exploration, l'arrêt anticipé, le quota
+     *                   d'itérations, la sauvegarde de l'arbre et la taille des arbres des variantes sont utilisés)
+     */
+    public Moteur(Executor executeur, Parametres parametres) {
+        this.executeur = executeur;
+        this.parametres = parametres;
+    }
+
+    /**
+     * @return les réglages des analyses, dont les changements s'appliquent aux analyses lancées ensuite
+     */
+    public Parametres getParametres() {
+        return parametres;
+    }
+    /**
+     * Lance l'analyse d'une position.
+     *
+     * @param position la position à analyser, qui ne doit pas être finie
+     * @param tempsmax le temps maximum en ms accordé à l'analyse
+     * @return le résultat final de l'analyse
+     * @throws IllegalArgumentException si la partie est finie dans la position, ou si le fichier de sauvegarde
+     *                                  n'est pas une sauvegarde d'arbre
+     * @throws UncheckedIOException     si le fichier de sauvegarde ne peut pas être lu
+     */
+    public CompletableFuture<ResultatRecherche> analyser(Position position, long tempsmax) {
+        return analyser(position, tempsmax, null);
+    }
+
+    /**
+     * Lance l'analyse d'une position, en suivant sa progression.
+     *
+     * @param position    la position à analyser, qui ne doit pas être finie
+     * @param tempsmax    le temps maximum en ms accordé à l'analyse
+     * @param progression appelé avec un résultat intermédiaire au plus toutes les {@link #PERIODE_PROGRESSION} ms,
+     *                    sur le thread de l'analyse, ou <code>null</code>
+     * @return le résultat final de l'analyse
+     * @throws IllegalArgumentException si la partie est finie dans la position, ou si le fichier de sauvegarde
+     *                                  n'est pas une sauvegarde d'arbre
+     * @throws UncheckedIOException     si le fichier de sauvegarde ne peut pas être lu
+     */
+    public CompletableFuture<ResultatRecherche> analyser(Position position, long tempsmax, Consumer<ResultatRecherche> progression) {
+        return analyser(position, new GestionTemps(tempsmax, parametres.isGestionTemps()), progression);
+    }
+
+    /**
+     * Lance l'analyse d'une position avec une gestion du temps fournie par l'appelant, qui peut ainsi terminer
+     * l'analyse avant l'échéance : {@link GestionTemps#interrompre()} la termine à la tranche suivante avec son
+     * résultat courant, alors que l'annulation du {@link CompletableFuture} l'abandonne.
+     *
+     * @param position    la position à analyser, qui ne doit pas être finie
+     * @param temps       la gestion du temps de l'analyse, propre à cette analyse
+     * @param progression appelé avec un résultat intermédiaire au plus toutes les {@link #PERIODE_PROGRESSION} ms,
+     *                    sur le thread de l'analyse, ou <code>null</code>
+     * @return le résultat final de l'analyse
+     * @throws IllegalArgumentException si la partie est finie dans la position, ou si le fichier de sauvegarde
+     *                                  n'est pas une sauvegarde d'arbre
+     * @throws UncheckedIOException     si le fichier de sauvegarde ne peut pas être lu
+     */
+    public CompletableFuture<ResultatRecherche> analyser(Position position, GestionTemps temps, Consumer<ResultatRecherche> progression) {
+        if (position.getFin() != FinDePartie.NON)
+            throw new IllegalArgumentException("La partie est finie : " + position);
+
+        Analyse analyse = new AnalyseEtat(position, temps, progression);
+        analyse.soumettre();
+        return analyse.resultat;
+    }
+
+    /**
+     * Lance l'analyse d'un plateau de {@link Dimensions} quelconques.
+     *
+     * @param grille   le plateau à analyser (copié), dans lequel la partie ne doit pas être finie
+     * @param tempsmax le temps maximum en ms accordé à l'analyse
+     * @return le résultat final de l'analyse
+     * @throws IllegalArgumentException si la partie est finie sur le plateau
+     * @see #analyser(Grille, GestionTemps, Consumer)
+     */
+    public CompletableFuture<ResultatRecherche> analyser(Grille grille, long tempsmax) {
+        return analyser(grille, new GestionTemps(tempsmax, parametres.isGestionTemps()), null);
+    }
+
+    /**
+     * Lance l'analyse d'un plateau de {@link Dimensions} quelconques, comme celle d'une {@link Position}, sur un
+     * {@link ArbreGrille} de {@link Parametres#getTailleArbreCompact()} noeuds ({@link #NOEUDS_GRILLE} si elle vaut
+     * 0). L'arbre n'est jamais sauvegardé : {@link Parametres#getFichierSauvegarde()} ne s'applique qu'au plateau
+     * standard.
+     *
+     * @param grille      le plateau à analyser (copié), dans lequel la partie ne doit pas être finie
+     * @param temps       la gestion du temps de l'analyse, propre à cette analyse
+     * @param progression appelé avec un résultat intermédiaire au plus toutes les {@link #PERIODE_PROGRESSION} ms,
+     *                    sur le thread de l'analyse, ou <code>null</code>
+     * @return le résultat final de l'analyse, dont les tableaux ont une case par colonne du plateau
+     * @throws IllegalArgumentException si la partie est finie sur le plateau
+     */
+    public CompletableFuture<ResultatRecherche> analyser(Grille grille, GestionTemps temps, Consumer<ResultatRecherche> progression) {
+        if (grille.getFin() != FinDePartie.NON)
+            throw new IllegalArgumentException("La partie est finie :\n" + grille);
+
+        Analyse analyse = new AnalyseGrille(grille, temps, progression);
+        analyse.soumettre();
+        return analyse.resultat;
+    }
+
+    /**
+     * Une analyse en cours, exécutée tranche par tranche.
+     */
+    private abstract class Analyse implements Ordonnanceur.Tache {
+        final CompletableFuture<ResultatRecherche> resultat = new CompletableFuture<>();
+        private final Consumer<ResultatRecherche> progression;
+        final StatistiquesRecherche statistiques = new StatistiquesRecherche();
+        final GestionTemps temps;
+        private final long quota;
+        final long debut;
+        private long prochaineProgression;
+
+        Analyse(GestionTemps temps, Consumer<ResultatRecherche> progression) {
+            this.progression = progression;
+            this.temps = temps;
+            this.quota = parametres.getQuotaIterations();
+            this.debut = System.nanoTime();
+            this.prochaineProgression = debut + PERIODE_PROGRESSION * 1_000_000;
+        }
+
+        /**
+         * Développe l'arbre de l'analyse d'une tranche d'itérations.
+         *
+         * @param iterations le nombre d'itérations de la tranche
+         * @return <code>true</code> si l'analyse est finie
+         */
+        abstract boolean developper(int iterations);
+
+        /**
+         * Sauvegarde l'arbre si l'analyse en a un fichier et que c'est le moment.
+         *
+         * @param fin        <code>true</code> à la fin de l'analyse, où l'arbre est toujours sauvegardé
+         * @param maintenant l'heure actuelle, selon {@link System#nanoTime()}
+         */
+        abstract void sauvegarder(boolean fin, long maintenant);
+
+        /**
+         * Construit le résultat de l'analyse à partir de l'état actuel de l'arbre.
+         */
+        abstract ResultatRecherche resultat(boolean termine);
+
+        @Override
+        public void run() {
+            if (resultat.isDone())
+                return; // annulée
+
+            try {
+                if (statistiques.getIterations() > 0 && temps.estEcoule(System.nanoTime())) {
+                    // le temps s'est écoulé pendant que la tranche attendait son tour
+                    terminer();
+                    return;
+                }
+
+                int tranche = quota > 0 ? (int) Math.min(TRANCHE, quota - statistiques.getIterations()) : TRANCHE;
+                if (developper(tranche) || (quota > 0 && statistiques.getIterations() >= quota)) {
+                    terminer();
+                    return;
+                }
+                long maintenant = System.nanoTime();
+                if (progression != null && maintenant - prochaineProgression >= 0) {
+                    prochaineProgression = maintenant + PERIODE_PROGRESSION * 1_000_000;
+                    progression.accept(resultat(false));
+                }
+                sauvegarder(false, maintenant);
+                soumettre();
+            } catch (RuntimeException | Error e) {
+                resultat.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * Sauvegarde l'arbre si besoin, puis donne le résultat final de l'analyse.
+         */
+        private void terminer() {
+            sauvegarder(true, System.nanoTime());
+            resultat.complete(resultat(true));
+        }
+
+        /**
+         * Soumet la prochaine tranche de l'analyse à l'exécuteur du moteur.
+         */
+        void soumettre() {
+            executeur.execute(this);
+        }
+
+        /**
+         * La priorité de la prochaine tranche dans un {@link Ordonnanceur}, calculée quand un thread se libère : le
+         * nombre d'itérations de l'analyse divisé par la part écoulée de son temps, soit celles qu'elle aura faites à
+         * son échéance au rythme où elle a été servie jusqu'ici. Une nouvelle analyse passe ainsi tout de suite, et
+         * une analyse longue n'est pas affamée par une suite de nouvelles : sa priorité ne grandit pas avec sa durée.
+         * Une analyse dont le temps est écoulé, interrompue ou annulée passe avant toutes les autres.
+         */
+        @Override
+        public long priorite(long maintenant) {
+            if (resultat.isDone() || temps.estEcoule(maintenant))
+                return Long.MIN_VALUE;
+            double part = temps.partEcoulee(maintenant);
+            return part <= 0 ? 0 : (long) Math.min(Long.MAX_VALUE / 2, statistiques.getIterations() / part);
+        }
+        /**
+         * Construit un résultat à partir des statistiques cumulées des colonnes jouées depuis la racine.
+         */
+        ResultatRecherche resultat(int[] simus, int[] victoires, Preuve[] preuves, int[] variante, boolean termine) {
+            double[] taux = new double[simus.length];
+            for (int j = 0; j < simus.length; j++)
+                taux[j] = simus[j] > 0 ? (double) victoires[j] / simus[j] : Double.NaN;
+
+            return new ResultatRecherche(Etat.choisirColonne(simus, victoires, preuves, temps.isArretAnticipe()), simus, taux, preuves,
+                    variante, statistiques.getIterations(), System.nanoTime() - debut, termine);
+        }
+    }
+
+    /**
+     * L'analyse d'une {@link Position} du plateau standard, sur un arbre de {@link Noeud}.
+     */
+    private class AnalyseEtat extends Analyse {
+        private final Etat etat;
+        private final Noeud racine;
+        /**
+         * Le nombre de simulations de la racine au début de l'analyse, non nul pour une analyse reprise.
+         */
+        private final long simusDebut;
+        private final Simulateur simulateur = new Simulateur();
+        /**
+         * Le fichier où l'arbre est sauvegardé, ou <code>null</code>.
+         */
+        private final Path sauvegarde;
+        private long prochaineSauvegarde;
+
+        private AnalyseEtat(Position position, GestionTemps temps, Consumer<ResultatRecherche> progression) {
+            super(temps, progression);
+            this.etat = position.versEtat();
+            this.sauvegarde = parametres.getFichierSauvegarde() == null ? null : Paths.get(parametres.getFichierSauvegarde());
+            this.racine = reprendre(position);
+            this.simusDebut = racine.getNb_simus();
+            this.prochaineSauvegarde = debut + parametres.getPeriodeSauvegarde() * 1_000_000;
+        }
+
+        /**
+         * Le fichier est projeté en mémoire : seuls les noeuds rechargés en sont lus, même pour un très grand arbre.
+         *
+         * @return l'arbre sauvegardé s'il est celui de la position analysée, limité à
+         * {@link Parametres#getNoeudsReprise()} noeuds, sinon un nouvel arbre
+         */
+        private Noeud reprendre(Position position) {
+            if (sauvegarde != null && Files.exists(sauvegarde)) {
+                SauvegardeArbre arbre = SauvegardeArbre.ouvrir(sauvegarde);
+                if (Position.de(arbre.getEtat()).equals(position)) {
+                    int noeudsMax = parametres.getNoeudsReprise();
+                    return arbre.charger(noeudsMax > 0 ? noeudsMax : arbre.getNbNoeuds());
+                }
+            }
+            return etat.nouvelleRacine();
+        }
+
+        @Override
+        boolean developper(int iterations) {
+            return etat.developper(racine, simusDebut, simulateur, parametres.getExploration(), temps, iterations, statistiques);
+        }
+
+        @Override
+        void sauvegarder(boolean fin, long maintenant) {
+            if (sauvegarde != null && (fin || maintenant - prochaineSauvegarde >= 0)) {
+                prochaineSauvegarde = maintenant + parametres.getPeriodeSauvegarde() * 1_000_000;
+                SauvegardeArbre.sauvegarder(racine, sauvegarde);
+            }
+        }
+
+        @Override
+        ResultatRecherche resultat(boolean termine) {
+            int[] simus = new int[Etat.COLONNE];
+            int[] victoires = new int[Etat.COLONNE];
+            Preuve[] preuves = new Preuve[Etat.COLONNE];
+            Etat.cumulerRacine(racine, simus, victoires, preuves);
+            return resultat(simus, victoires, preuves, variantePrincipale(), termine);
+        }
+
+        /**
+         * @return les colonnes jouées en suivant à chaque coup l'enfant le plus visité, depuis la racine
+         */
+        private int[] variantePrincipale() {
+            int[] variante = new int[Etat.LIGNE * Etat.COLONNE];
+            int n = 0;
+            for (Noeud noeud = racine; noeud != null; ) {
+                Noeud suivant = null;
+                for (int j = 0; j < Etat.COLONNE; j++) {
+                    Noeud enfant = noeud.enfantEnColonne(j);
+                    if (enfant != null && enfant.getNb_simus() > 0 && (suivant == null || enfant.getNb_simus() > suivant.getNb_simus()))
+                        suivant = enfant;
+                }
+                if (suivant != null)
+                    variante[n++] = suivant.getCoup().getColonne();
+                noeud = suivant;
+            }
+            return Arrays.copyOf(variante, n);
+        }
+    }
+
+    /**
+     * L'analyse d'une {@link Grille} de {@link Dimensions} quelconques, sur un {@link ArbreGrille}.
+     */
+    private class AnalyseGrille extends Analyse {
+        private final ArbreGrille arbre;
+        private final SimulateurGrille simulateur;
+
+        private AnalyseGrille(Grille grille, GestionTemps temps, Consumer<ResultatRecherche> progression) {
+            super(temps, progression);
+            int capacite = parametres.getTailleArbreCompact() > 0 ? parametres.getTailleArbreCompact() : NOEUDS_GRILLE;
+            this.arbre = new ArbreGrille(grille.getDimensions(), capacite);
+            this.arbre.reinitialiser(grille);
+            this.simulateur = new SimulateurGrille(grille.getDimensions());
+        }
+
+        @Override
+        boolean developper(int iterations) {
+            return arbre.developper(simulateur, parametres.getExploration(), temps, iterations, statistiques);
+        }
+
+        @Override
+        void sauvegarder(boolean fin, long maintenant) {
+            // les arbres des variantes ne sont pas sauvegardés
+        }
+
+        @Override
+        ResultatRecherche resultat(boolean termine) {
+            int colonnes = arbre.getDimensions().getColonnes();
+            int[] simus = new int[colonnes];
+            int[] victoires = new int[colonnes];
+            Preuve[] preuves = new Preuve[colonnes];
+            arbre.cumulerRacine(simus, victoires, preuves);
+            return resultat(simus, victoires, preuves, arbre.variantePrincipale(), termine);
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package fr.ul.puissance4;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public class Noeud {
     /**
@@ -12,8 +14,18 @@ public class Noeud {
      * coefficient trop petit empêche de voir de meilleurs coups.
      * <p>
      * Par défaut égal à <code>Math.sqrt(2)</code>.
-  NEGA*/
-    private static final double C = Math.sqrt(2);
+     *
+     * @see Parametres#getExploration()
+     */
+    static final double C = Math.sqrt(2);
+    private static final AtomicIntegerFieldUpdater<Noeud> NB_VICTOIRES = AtomicIntegerFieldUpdater.newUpdater(Noeud.class, "nb_victoires");
+    private static final AtomicIntegerFieldUpdater<Noeud> NB_SIMUS = AtomicIntegerFieldUpdater.newUpdater(Noeud.class, "nb_simus");
+    private static final AtomicIntegerFieldUpdater<Noeud> NB_PERTES_VIRTUELLES = AtomicIntegerFieldUpdater.newUpdater(Noeud.class, "nb_pertes_virtuelles");
+    private static final AtomicIntegerFieldUpdater<Noeud> NB_ENFANTS = AtomicIntegerFieldUpdater.newUpdater(Noeud.class, "nb_enfants");
+    /**
+     * Accès atomique aux cases de {@link #enfants}.
+     */
+    private static final VarHandle ENFANT = MethodHandles.arrayElementVarHandle(Noeud[].class);
 
     /**
      * Le joueur qui a joué pour arriver à ce noeud.
@@ -27,6 +39,10 @@ public class Noeud {
      * L'état global du puissance 4 dans ce noeud (après application du {@link #coup}.
      */
     private Etat etat; //etat du jeu
+    /**
+     * L'état de fin de partie de {@link #etat}, calculé une seule fois à la création du noeud.
+     */
+    private FinDePartie fin;
     /**
      * Le noeud parent de ce noeud.
      * <p>
@@ -34,43 +50,61 @@ public class Noeud {
      */
     private Noeud parent;
     /**
-     * La liste des noeuds enfants de ce noeud.
+     * Les noeuds enfants de ce noeud, rangés par colonne jouée : <code>enfants[j]</code> est l'enfant atteint en
+     * jouant dans la colonne <code>j</code>, ou <code>null</code> s'il n'a pas encore été créé.
      * <p>
-     * Vide si le noeud est une feuille.
+     * Les cases sont lues et remplies par {@link #ENFANT}, si bien que plusieurs threads peuvent les parcourir
+     * pendant qu'un enfant est ajouté.
+     */
+    private final Noeud[] enfants; // chaque enfant correspond à un coup possible
+    /**
+     * Le nombre de cases non vides de {@link #enfants}.
      */
-    private final List<Noeud> enfants; // Liste d'enfants : chaque enfant correspond à un coup possible
+    private volatile int nb_enfants;
     //Pour MCTS
     /**
      * Le nombre de victoires pour le joueur courant qui ont eu lieu en dessous de ce noeud.
      */
-    private int nb_victoires;
+    private volatile int nb_victoires;
     /**
      * Le nombre de simulations qui sont passées à travers ce noeud.
      */
-    private int nb_simus;
+    private volatile int nb_simus;
     /**
-     * La valeur de UCB1 pour le noeud actuel (afin d'éviter de le recalculer tout le temps).
+     * Le nombre de threads dont la simulation en cours passe par ce noeud.
+     * <p>
+     * Chacune compte comme une défaite tant que son score n'a pas été propagé (perte virtuelle), ce qui pousse les
+     * autres threads à explorer d'autres branches de l'arbre.
+     */
+    private volatile int nb_pertes_virtuelles;
+    /**
+     * La dernière valeur de UCB1 calculée pour le noeud actuel, lors de la sélection de son parent (la propagation
+     * ne la recalcule pas : elle dépend de la table de transposition et de la constante d'exploration de la
+     * recherche, que seule la sélection connaît).
      *
-     * @see #calculerUCB1()
+     * @see #calculerUCB1(TableTransposition, double)
      */
     private double ucb1;
     /**
-     * <code>true</code> si tous les noeuds fils ont été explorés.
+     * La valeur prouvée du noeud, pour le {@link #joueur} qui y a mené.
      * <p>
-     * Permet de spécifier à l'algorithme MCTS qu'il n'est plus utile d'aller plus bas dans le noeud.
+     * Un noeud prouvé n'a plus besoin d'être exploré : l'algorithme MCTS ne descend plus en dessous.
+     *
+     * @see #evaluerPreuve()
      */
-    private boolean terminal;
+    private volatile Preuve preuve;
 
     public Noeud() {
         this.joueur = 0;
         this.coup = new Coup(0);
         etat = new Etat();
+        fin = FinDePartie.NON;
         parent = null;
-        enfants = new ArrayList<>();
+        enfants = new Noeud[Etat.COLONNE];
         nb_victoires = 0;
         nb_simus = 0;
         ucb1 = 0.d;
-        terminal = false;
+        preuve = Preuve.INCONNUE;
     }
 
     /**
@@ -85,16 +119,14 @@ public class Noeud {
         if (parent != null && coup != null) {
             // on copie l'état du parent et on joue le coup donné
             this.etat = parent.etat.copieEtat();
-            this.etat.jouerCoup(coup);
+            this.fin = this.etat.jouerCoupEtTester(coup.getColonne());
 
             this.coup = coup;
 
-            // on s'ajoute aux enfants de notre parent
-            parent.enfants.add(this);
-
             // on prend l'autre joueur par rapport au parent
             this.joueur = parent.joueur;
             this.changerJoueur();
+            this.preuve = Preuve.de(this.fin, this.joueur);
         } else {
             this.etat = null;
             this.coup = null;
@@ -105,6 +137,11 @@ public class Noeud {
         //Pour MCTS
         this.nb_simus = this.nb_victoires = 0;
         this.ucb1 = 0.d;
+
+        // on s'ajoute aux enfants de notre parent, une fois complètement construit, si aucun autre thread
+        // ne l'a fait avant nous
+        if (parent != null && coup != null && ENFANT.compareAndSet(parent.enfants, coup.getColonne(), null, this))
+            NB_ENFANTS.incrementAndGet(parent);
     }
 
     public int getNb_victoires() {
@@ -119,36 +156,144 @@ public class Noeud {
         return coup;
     }
 
+    /**
+     * @return le joueur qui a joué pour arriver à ce noeud
+     */
+    int getJoueur() {
+        return joueur;
+    }
     public Etat getEtat() {
         return etat;
     }
 
     public void setEtat(Etat etat) {
         this.etat = etat;
+        this.fin = etat.testFin();
+        this.preuve = Preuve.de(this.fin, this.joueur);
+    }
+
+    /**
+     * Récupère l'état de fin de partie du noeud, sans avoir à réexaminer le plateau.
+     *
+     * @return l'état de fin de partie après le coup menant à ce noeud
+     */
+    public FinDePartie getFin() {
+        return fin;
     }
 
     public Noeud getParent() {
         return parent;
     }
 
+    /**
+     * Récupère les enfants déjà créés de ce noeud.
+     *
+     * @return une nouvelle liste contenant les enfants, par ordre de colonne
+     */
     public List<Noeud> getEnfants() {
-        return enfants;
+        List<Noeud> liste = new ArrayList<>(nb_enfants);
+        for (int j = 0; j < enfants.length; j++) {
+            Noeud enfant = enfantEnColonne(j);
+            if (enfant != null)
+                liste.add(enfant);
+        }
+        return liste;
     }
 
     public Noeud getEnfants(Coup coup) {
-        for (Noeud c : enfants){
-            if(c.getCoup() == coup)
-                return c;
+        Noeud c = enfantAvecCoup(coup);
+        return c != null ? c : new Noeud();
+    }
+
+    /**
+     * Récupère l'enfant atteint en jouant dans une colonne.
+     *
+     * @param colonne la colonne jouée
+     * @return le noeud enfant s'il existe, sinon <code>null</code>
+     */
+    public Noeud enfantEnColonne(int colonne) {
+        return (Noeud) ENFANT.getAcquire(enfants, colonne);
+    }
+
+    /**
+     * Récupère l'enfant atteint par le coup donné, en le créant s'il n'existe pas encore.
+     * <p>
+     * Si plusieurs threads demandent le même enfant en même temps, un seul noeud est créé.
+     *
+     * @param c le coup menant à l'enfant
+     * @return le noeud enfant
+     */
+    public Noeud obtenirEnfant(Coup c) {
+        return obtenirEnfant(c, null);
+    }
+
+    /**
+     * Récupère l'enfant atteint par le coup donné, en le créant s'il n'existe pas encore.
+     * <p>
+     * Un enfant créé reprend les statistiques déjà cumulées pour sa position dans la table de transposition, ramenées
+     * au plus au nombre de simulations de <code>this</code> (voir {@link #plafonner(long, int)}).
+     *
+     * @param c     le coup menant à l'enfant
+     * @param table la table de transposition, ou <code>null</code>
+     * @return le noeud enfant
+     */
+    public Noeud obtenirEnfant(Coup c, TableTransposition table) {
+        Noeud enfant = enfantEnColonne(c.getColonne());
+        if (enfant != null)
+            return enfant;
+
+        // le nouveau noeud ne s'ajoute à nos enfants que si aucun autre thread ne l'a devancé
+        Noeud nouveau = new Noeud(this, c);
+        enfant = enfantEnColonne(c.getColonne());
+        if (enfant != nouveau)
+            return enfant;
+
+        if (table != null) {
+            long stats = plafonner(table.lire(enfant.etat.getCle()), nb_simus);
+            NB_SIMUS.addAndGet(enfant, TableTransposition.simulations(stats));
+            NB_VICTOIRES.addAndGet(enfant, TableTransposition.victoires(stats));
         }
-        return new Noeud();
+        return enfant;
+    }
+
+    /**
+     * Ramène des statistiques lues dans la table de transposition à au plus <code>plafond</code> simulations, en
+     * gardant leur taux de victoire : une position atteinte par d'autres chemins peut compter plus de simulations que
+     * le parent du noeud, et UCB1 suppose <code>N(i) ≤ N(parent(i))</code>.
+     *
+     * @param stats   les statistiques renvoyées par {@link TableTransposition#lire(long)}
+     * @param plafond le nombre maximum de simulations, celui du parent
+     * @return les statistiques plafonnées, dans le même format
+     */
+    static long plafonner(long stats, int plafond) {
+        int n = TableTransposition.simulations(stats);
+        if (n <= plafond)
+            return stats;
+        long w = (long) TableTransposition.victoires(stats) * plafond / n;
+        return (long) plafond << 32 | w;
+    }
+
+    /**
+     * Compte une perte virtuelle sur ce noeud, le temps qu'une simulation passant par lui se termine.
+     */
+    public void ajouterPerteVirtuelle() {
+        NB_PERTES_VIRTUELLES.incrementAndGet(this);
+    }
+
+    /**
+     * Retire une perte virtuelle de ce noeud, lorsqu'une simulation ne passe finalement pas par lui.
+     */
+    public void retirerPerteVirtuelle() {
+        NB_PERTES_VIRTUELLES.decrementAndGet(this);
     }
 
     /**
-     * Rend le noeud terminal, c'est-à-dire qu'il n'est pas nécessaire de visiter ses enfants.
-     * @param terminal la valeur de l'indicateur
+     * Détache le noeud de son parent, pour qu'il devienne la racine d'un arbre.
+     * <p>
+     * Le parent et les autres noeuds de l'ancien arbre peuvent alors être libérés.
      */
-    public void setTerminal(boolean terminal) {
-        this.terminal = terminal;
+    public void detacher() {
+        this.parent = null;
     }
 
     /**
@@ -157,15 +302,94 @@ public class Noeud {
      * @return <code>true</code> si le noeud n'a pas d'enfants, <code>false</code> sinon
      */
     public boolean estFeuille() {
-        return this.enfants.isEmpty();
+        return this.nb_enfants == 0;
+    }
+
+    /**
+     * Compte les noeuds du sous-arbre de ce noeud, lui compris.
+     * <p>
+     * Parcourt tout le sous-arbre : à n'appeler qu'une fois la recherche terminée.
+     *
+     * @return le nombre de noeuds du sous-arbre
+     */
+    public int compterNoeuds() {
+        int n = 1;
+        for (int j = 0; j < enfants.length; j++) {
+            Noeud enfant = enfantEnColonne(j);
+            if (enfant != null)
+                n += enfant.compterNoeuds();
+        }
+        return n;
+    }
+
+    /**
+     * Récupère la valeur prouvée du noeud.
+     *
+     * @return la valeur du noeud pour le joueur qui a joué le coup y menant
+     */
+    public Preuve getPreuve() {
+        return preuve;
     }
 
     /**
-     * Vérifie si le noeud est terminal.
+     * Vérifie si la valeur du noeud est prouvée.
+     *
      * @return <code>true</code> si le noeud n'a plus besoin d'être exploré, <code>false</code> sinon
      */
-    public boolean estTerminal() {
-        return this.terminal;
+    public boolean estProuve() {
+        return this.preuve != Preuve.INCONNUE;
+    }
+
+    /**
+     * Donne le résultat de la partie à partir du noeud prouvé, lorsque les deux joueurs jouent parfaitement.
+     *
+     * @return le résultat de la partie, ou {@link FinDePartie#NON} si le noeud n'est pas prouvé
+     */
+    public FinDePartie resultatProuve() {
+        return preuve.resultat(joueur);
+    }
+
+    /**
+     * Tente de prouver la valeur du noeud à partir de celles de ses enfants : le noeud est perdu dès qu'un enfant
+     * est gagné par l'adversaire, et gagné (ou nul) quand tous ses enfants sont prouvés perdus (ou nuls) pour
+     * l'adversaire.
+     *
+     * @return <code>true</code> si le noeud vient d'être prouvé, <code>false</code> sinon
+     */
+    boolean evaluerPreuve() {
+        if (estProuve())
+            return false;
+
+        boolean tousProuves = true, nul = false;
+        for (int jouables = this.etat.colonnesJouables(); jouables != 0; jouables &= jouables - 1) {
+            Noeud nd = enfantEnColonne(Integer.numberOfTrailingZeros(jouables));
+            Preuve p = nd == null ? Preuve.INCONNUE : nd.preuve;
+            if (p == Preuve.VICTOIRE) {
+                this.preuve = Preuve.DEFAITE;
+                return true;
+            }
+            tousProuves &= p != Preuve.INCONNUE;
+            nul |= p == Preuve.NUL;
+        }
+        if (!tousProuves)
+            return false;
+
+        this.preuve = nul ? Preuve.NUL : Preuve.VICTOIRE;
+        return true;
+    }
+
+    /**
+     * Remet les statistiques et la valeur prouvée d'un noeud telles qu'elles ont été sauvegardées.
+     *
+     * @param simus     le nombre de simulations passées par le noeud
+     * @param victoires le nombre de victoires sous le noeud
+     * @param preuve    la valeur prouvée du noeud
+     * @see SauvegardeArbre#charger(int)
+     */
+    void restaurer(int simus, int victoires, Preuve preuve) {
+        this.nb_simus = simus;
+        this.nb_victoires = victoires;
+        this.preuve = preuve;
     }
 
     /**
@@ -181,24 +405,48 @@ public class Noeud {
      * @return le meilleur coup possible qui descend depuis ce noeud
      */
     public Coup selection() {
+        return selection(null);
+    }
+
+    /**
+     * Sélectionne le meilleur coup possible en partant du noeud actuel.
+     *
+     * @param table la table de transposition dont les statistiques complètent celles des enfants, ou <code>null</code>
+     * @return le meilleur coup possible qui descend depuis ce noeud
+     */
+    public Coup selection(TableTransposition table) {
+        return selection(table, C);
+    }
+
+    /**
+     * Sélectionne le meilleur coup possible en partant du noeud actuel.
+     * <p>
+     * Les enfants déjà prouvés ne sont plus sélectionnés.
+     *
+     * @param table       la table de transposition dont les statistiques complètent celles des enfants, ou <code>null</code>
+     * @param exploration la constante <code>c</code> de UCB1
+     * @return le meilleur coup possible qui descend depuis ce noeud, ou <code>null</code> si tous les enfants sont
+     * prouvés
+     */
+    public Coup selection(TableTransposition table, double exploration) {
         Coup best = null;
         double val = Double.NEGATIVE_INFINITY;
 
-        if (this.estTerminal())
+        if (this.estProuve())
             return null;
 
-        for (Coup c : this.etat.coupsPossibles()) {
-            Optional<Noeud> n = this.enfants.stream().filter(node -> node.coup.equals(c)).findFirst();
-            if (n.isEmpty()) {
+        for (int jouables = this.etat.colonnesJouables(); jouables != 0; jouables &= jouables - 1) {
+            int j = Integer.numberOfTrailingZeros(jouables);
+            Noeud nd = enfantEnColonne(j);
+            if (nd == null) {
                 // chemin non exploré : on explore
-                return c;
+                return Coup.de(j);
             }
-            Noeud nd = n.get();
-            if (!nd.estTerminal() || nd.nb_victoires == (this.joueur == Etat.COMPUTER_PLAYER ? 1 : 0)) {
-                // noeud non terminal mais déjà (partiellement) exploré
-                double ucb1 = nd.calculerUCB1();
+            if (!nd.estProuve()) {
+                // noeud non prouvé mais déjà (partiellement) exploré
+                double ucb1 = nd.calculerUCB1(table, exploration);
                 if (ucb1 > val) {
-                    best = c;
+                    best = nd.coup;
                     val = ucb1;
                 }
             }
@@ -214,7 +462,7 @@ public class Noeud {
      * @return le noeud enfant s'il existe, sinon <code>null</code>
      */
     public Noeud enfantAvecCoup(Coup c) {
-        return this.enfants.stream().filter(n -> n.coup.equals(c)).findFirst().orElse(null);
+        return c == null ? null : enfantEnColonne(c.getColonne());
     }
 
     /**
@@ -222,17 +470,28 @@ public class Noeud {
      * @return le noeud développé à partir duquel faire tourner la simulation
      */
     public Noeud developpement() {
-        if (this.estTerminal()) // si on est terminal, il y a probablement rien à développer
-            return this;
+        return developpement(null);
+    }
 
-        List<Coup> possibles = this.etat.coupsPossibles();
-        if (possibles.isEmpty())
+    /**
+     * MCTS : développe le noeud en ajoutant tous les coups possibles en dessous.
+     *
+     * @param table la table de transposition, ou <code>null</code>
+     * @return le noeud développé à partir duquel faire tourner la simulation
+     */
+    public Noeud developpement(TableTransposition table) {
+        if (this.estProuve()) // la partie est finie ou sa valeur connue : rien à développer
             return this;
-        Coup c = possibles.get(new Random().nextInt(possibles.size()));
-        if (c == null)
+
+        int jouables = this.etat.colonnesJouables();
+        if (jouables == 0)
             return this; // fin de la partie
 
-        return new Noeud(this, c);
+        // on tire uniformément une des colonnes jouables
+        for (int k = ThreadLocalRandom.current().nextInt(Integer.bitCount(jouables)); k > 0; k--)
+            jouables &= jouables - 1;
+
+        return obtenirEnfant(Coup.de(Integer.numberOfTrailingZeros(jouables)), table);
     }
 
     /**
@@ -259,21 +518,37 @@ public class Noeud {
 
     /**
      * Propage les scores obtenus le long de l'arbre, en partant de la feuille, jusqu'à la racine.
+     * <p>
+     * Les pertes virtuelles comptées lors de la sélection sont retirées au passage.
      */
     public void propagationScore(FinDePartie score) {
+        propagationScore(score, null);
+    }
+
+    /**
+     * Propage les scores obtenus le long de l'arbre, en partant de la feuille, jusqu'à la racine.
+     * <p>
+     * Les pertes virtuelles comptées lors de la sélection sont retirées au passage, et le score est aussi cumulé
+     * pour la position de chaque noeud dans la table de transposition. Si le noeud est prouvé, sa preuve remonte
+     * aussi loin qu'elle décide de la valeur de ses ancêtres.
+     *
+     * @param table la table de transposition, ou <code>null</code>
+     */
+    public void propagationScore(FinDePartie score, TableTransposition table) {
         Noeud ptr = this;
+        while (ptr.estProuve() && ptr.parent != null && ptr.parent.evaluerPreuve())
+            ptr = ptr.parent;
 
-        ptr.nb_simus += 1;
-        if (ptr.joueur == Etat.COMPUTER_PLAYER && score == FinDePartie.ORDI_GAGNE) ptr.nb_victoires += 1;
-        ptr.calculerUCB1();
+        ptr = this;
 
-        while (ptr.parent != null) {
+        do {
+            boolean victoire = ptr.joueur == Etat.COMPUTER_PLAYER && score == FinDePartie.ORDI_GAGNE;
+            NB_SIMUS.incrementAndGet(ptr);
+            if (victoire) NB_VICTOIRES.incrementAndGet(ptr);
+            NB_PERTES_VIRTUELLES.decrementAndGet(ptr);
+            if (table != null) table.ajouter(ptr.etat.getCle(), victoire);
             ptr = ptr.parent;
-
-            ptr.nb_simus += 1;
-            if (ptr.joueur == Etat.COMPUTER_PLAYER && score == FinDePartie.ORDI_GAGNE) ptr.nb_victoires += 1;
-            ptr.calculerUCB1();
-        }
+        } while (ptr != null);
     }
 
     /**
@@ -291,12 +566,29 @@ public class Noeud {
      *        ⎩
      * }</pre>
      *
+     * Les pertes virtuelles sont ajoutées à <code>N(i)</code> et <code>N(parent(i))</code> sans victoire.
+     * Si la table de transposition connaît plus de simulations pour la position du noeud que le noeud lui-même
+     * (parce qu'elle a été atteinte par d'autres chemins), <code>w(i)</code> et <code>N(i)</code> sont lus dans la table,
+     * plafonnés à <code>N(parent(i))</code>.
+     *
+     * @param table       la table de transposition, ou <code>null</code>
+     * @param exploration la constante <code>c</code>
      * @return La valeur de <code>B(i)</code> pour le noeud courant (<code>this</code>).
      * @see Noeud#C
      */
-    private double calculerUCB1() {
-        if (nb_simus != 0 && this.parent != null) {
-            ucb1 = ((double) nb_victoires / (double) nb_simus) + C * Math.sqrt(Math.log(this.parent.nb_simus) / nb_simus);
+    private double calculerUCB1(TableTransposition table, double exploration) {
+        int w = nb_victoires, n = nb_simus;
+        if (table != null && parent != null) {
+            long stats = plafonner(table.lire(etat.getCle()), parent.nb_simus);
+            if (TableTransposition.simulations(stats) > n) {
+                w = TableTransposition.victoires(stats);
+                n = TableTransposition.simulations(stats);
+            }
+        }
+
+        n += nb_pertes_virtuelles;
+        if (n > 0 && this.parent != null) {
+            ucb1 = ((double) w / (double) n) + exploration * Math.sqrt(Math.log(this.parent.nb_simus + this.parent.nb_pertes_virtuelles) / n);
             //ucb1 = this.joueur == Etat.COMPUTER_PLAYER ? +ucb1 : -ucb1;
         } else
             ucb1 = Double.POSITIVE_INFINITY;
@@ -0,0 +1,164 @@
+package fr.ul.puissance4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Groupe de threads partagé par les analyses de plusieurs {@link Moteur}, qui exécute d'abord la tâche de plus faible
+ * priorité.
+ * <p>
+ * Le nombre de threads est fixe, en général celui des coeurs : quand il y a plus d'analyses que de threads, les
+ * tranches attendent leur tour au lieu de se disputer les coeurs. La priorité d'une {@link Tache} n'est pas fixée à
+ * sa soumission mais calculée quand un thread se libère, pour toutes les tâches en attente : une analyse dont le temps
+ * s'écoule pendant que sa tranche attend passe aussitôt devant les autres. À priorité égale, les tâches sont
+ * exécutées dans l'ordre de soumission.
+ * <p>
+ * Chaque choix parcourt toutes les tâches en attente, une par analyse en cours : l'ordonnanceur est fait pour
+ * quelques dizaines d'analyses simultanées.
+ */
+public class Ordonnanceur implements Executor {
+    /**
+     * Une tâche dont la priorité change pendant qu'elle attend.
+     */
+    public interface Tache extends Runnable {
+        /**
+         * Appelée par l'ordonnanceur, qui tient alors son verrou, pour choisir la prochaine tâche exécutée.
+         *
+         * @param maintenant l'instant actuel, selon {@link System#nanoTime()}
+         * @return la priorité de la tâche à cet instant, d'autant plus urgente qu'elle est faible
+         */
+        long priorite(long maintenant);
+    }
+
+    /**
+     * Les tâches en attente, dans l'ordre de soumission.
+     */
+    private final List<Tache> enAttente = new ArrayList<>();
+    private int actifs;
+    private boolean arrete;
+
+    /**
+     * @param nbThreads le nombre de threads, qui ne s'arrêtent pas avant {@link #arreter()}
+     */
+    public Ordonnanceur(int nbThreads) {
+        for (int i = 1; i <= nbThreads; i++) {
+            Thread thread = new Thread(this::travailler, "ordonnanceur-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Soumet une tâche, de priorité 0 sauf si c'est une {@link Tache}.
+     *
+     * @param tache la tâche
+     * @throws RejectedExecutionException si l'ordonnanceur est arrêté
+     */
+    @Override
+    public void execute(Runnable tache) {
+        if (tache instanceof Tache)
+            soumettre((Tache) tache);
+        else
+            executer(tache, 0);
+    }
+
+    /**
+     * Soumet une tâche de priorité fixe, exécutée après celles de plus faible priorité.
+     *
+     * @param tache    la tâche
+     * @param priorite la priorité de la tâche, d'autant plus urgente qu'elle est faible
+     * @throws RejectedExecutionException si l'ordonnanceur est arrêté
+     */
+    public void executer(Runnable tache, long priorite) {
+        soumettre(new Tache() {
+            @Override
+            public long priorite(long maintenant) {
+                return priorite;
+            }
+
+            @Override
+            public void run() {
+                tache.run();
+            }
+        });
+    }
+
+    private synchronized void soumettre(Tache tache) {
+        if (arrete)
+            throw new RejectedExecutionException("Ordonnanceur arrêté");
+        enAttente.add(tache);
+        notify();
+    }
+
+    /**
+     * La boucle de chaque thread : prendre la tâche la plus urgente, l'exécuter, recommencer.
+     */
+    private void travailler() {
+        while (true) {
+            Tache tache;
+            synchronized (this) {
+                while (enAttente.isEmpty() && !arrete) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (enAttente.isEmpty())
+                    return;
+                tache = enAttente.remove(plusUrgente(System.nanoTime()));
+                actifs++;
+            }
+            try {
+                tache.run();
+            } catch (RuntimeException e) {
+                Thread.UncaughtExceptionHandler gestionnaire = Thread.currentThread().getUncaughtExceptionHandler();
+                gestionnaire.uncaughtException(Thread.currentThread(), e);
+            } finally {
+                synchronized (this) {
+                    actifs--;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return l'indice de la tâche en attente de plus faible priorité, la première soumise à priorité égale
+     */
+    private int plusUrgente(long maintenant) {
+        int choisie = 0;
+        long minimum = enAttente.get(0).priorite(maintenant);
+        for (int i = 1; i < enAttente.size(); i++) {
+            long priorite = enAttente.get(i).priorite(maintenant);
+            if (priorite < minimum) {
+                minimum = priorite;
+                choisie = i;
+            }
+        }
+        return choisie;
+    }
+
+    /**
+     * @return le nombre de tâches qui attendent un thread
+     */
+    public synchronized int getEnAttente() {
+        return enAttente.size();
+    }
+
+    /**
+     * @return le nombre de threads en train d'exécuter une tâche
+     */
+    public synchronized int getActifs() {
+        return actifs;
+    }
+
+    /**
+     * Arrête les threads une fois les tâches déjà soumises exécutées ; les tâches soumises ensuite sont rejetées.
+     */
+    public synchronized void arreter() {
+        arrete = true;
+        notifyAll();
+    }
+}
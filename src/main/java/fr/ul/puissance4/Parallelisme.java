@@ -0,0 +1,15 @@
+package fr.ul.puissance4;
+
+/**
+ * Classe d'énumération des façons de répartir la recherche MCTS sur plusieurs threads
+ */
+public enum Parallelisme {
+    /**
+     * Chaque thread construit son propre arbre ; les statistiques des racines sont cumulées à la fin.
+     */
+    RACINE,
+    /**
+     * Tous les threads construisent le même arbre, en s'écartant les uns des autres grâce aux pertes virtuelles.
+     */
+    ARBRE
+}
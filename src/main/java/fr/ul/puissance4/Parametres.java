@@ -0,0 +1,284 @@
+package fr.ul.puissance4;
+
+/**
+ * Les réglages de la recherche MCTS de l'ordinateur.
+ */
+public class Parametres {
+    /**
+     * Le nombre de threads de recherche.
+     */
+    private int nbThreads = 1;
+    /**
+     * La façon de répartir la recherche entre les threads.
+     */
+    private Parallelisme parallelisme = Parallelisme.RACINE;
+    /**
+     * La mémoire occupée par la table de transposition, en Mo.
+     * <p>
+     * Vaut 0 si la recherche n'utilise pas de table de transposition.
+     */
+    private int tailleTable = 0;
+    /**
+     * La constante <code>c</code> de UCB1, qui règle l'exploration de l'arbre.
+     *
+     * @see Noeud
+     */
+    private double exploration = Noeud.C;
+    /**
+     * <code>true</code> si l'arbre de recherche est conservé d'un coup de l'ordinateur au suivant.
+     */
+    private boolean reutiliserArbre = false;
+    /**
+     * Le nombre maximum de noeuds de chaque {@link ArbreCompact}.
+     * <p>
+     * Vaut 0 si la recherche construit des arbres de {@link Noeud}. Les arbres compacts sont vidés à chaque coup :
+     * ils ne sont pas compatibles avec {@link #reutiliserArbre} ni avec la table de transposition.
+     * <p>
+     * Fixe aussi le nombre maximum de noeuds de l'{@link ArbreGrille} d'une analyse d'une variante par le
+     * {@link Moteur}, {@link Moteur#NOEUDS_GRILLE} s'il vaut 0.
+     */
+    private int tailleArbreCompact = 0;
+    /**
+     * En dessous de ce nombre de cases vides, le {@link Solveur} dispose de l'essentiel du temps imparti à un coup,
+     * MCTS gardant le reste s'il n'a pas fini.
+     * <p>
+     * Vaut 0 si le solveur n'est jamais prioritaire.
+     */
+    private int seuilSolveur = 0;
+    /**
+     * La part du temps imparti à un coup (entre 0 et 1) accordée au {@link Solveur} au-dessus de
+     * {@link #seuilSolveur}, au plus {@link Etat#PART_SOLVEUR_PRIORITAIRE} ; MCTS utilise le reste si la position
+     * n'est pas résolue à temps.
+     */
+    private double partSolveur = 0;
+    /**
+     * La mémoire occupée par la table de transposition du {@link Solveur}, en Mo.
+     */
+    private int tailleTableSolveur = 16;
+    /**
+     * Le chemin du fichier du {@link LivreOuvertures}.
+     * <p>
+     * Vaut <code>null</code> si l'ordinateur ne consulte pas de livre d'ouvertures.
+     */
+    private String fichierOuvertures = null;
+    /**
+     * Le chemin du fichier du {@link CacheFinales}, créé s'il n'existe pas.
+     * <p>
+     * Vaut <code>null</code> si les positions résolues ne sont pas conservées.
+     */
+    private String fichierFinales = null;
+    /**
+     * La taille du fichier du {@link CacheFinales} lors de sa création, en Mo.
+     */
+    private int tailleFinales = 16;
+    /**
+     * <code>true</code> si l'ordinateur affiche sa réflexion pendant et après la recherche.
+     */
+    private boolean affichage = true;
+    /**
+     * <code>true</code> si chaque coup de l'ordinateur écrit les mesures de sa recherche sur une ligne de la sortie
+     * d'erreur (voir {@link StatistiquesRecherche#versJournal()}). Désactivé par défaut, pour ne pas encombrer la
+     * console d'une partie.
+     */
+    private boolean journal = false;
+    /**
+     * <code>true</code> si l'ordinateur gère son temps de réflexion : il joue les coups forcés sans réfléchir,
+     * n'accorde tout le temps imparti qu'aux coups du milieu de partie et arrête la recherche dès que son coup ne
+     * peut plus changer (voir {@link GestionTemps}).
+     * <p>
+     * Vaut <code>false</code> si chaque coup utilise tout le temps imparti.
+     */
+    private boolean gestionTemps = false;
+    /**
+     * Le temps maximum en ms pendant lequel l'ordinateur continue de développer ses arbres pendant que l'adversaire
+     * réfléchit (voir {@link Etat#reflechir(Parametres)}). Nécessite {@link #reutiliserArbre}.
+     * <p>
+     * Vaut 0 si l'ordinateur ne réfléchit pas pendant le temps de l'adversaire.
+     */
+    private long tempsAdversaire = 0;
+    /**
+     * Le nombre maximum d'itérations MCTS d'une analyse du {@link Moteur}, quel que soit son temps imparti.
+     * <p>
+     * Vaut 0 si seul le temps limite l'analyse.
+     */
+    private long quotaIterations = 0;
+    /**
+     * Le chemin du fichier où le {@link Moteur} sauvegarde régulièrement l'arbre de son analyse (voir
+     * {@link SauvegardeArbre}) ; une analyse de la position sauvegardée reprend là où la sauvegarde s'est arrêtée.
+     * <p>
+     * Vaut <code>null</code> si les analyses ne sont pas sauvegardées.
+     */
+    private String fichierSauvegarde = null;
+    /**
+     * Le temps en ms entre deux sauvegardes de l'arbre d'une analyse du {@link Moteur}.
+     */
+    private long periodeSauvegarde = 60_000;
+    /**
+     * Le nombre maximum de noeuds rechargés d'une sauvegarde pour reprendre une analyse du {@link Moteur} : le haut de
+     * l'arbre, où se décide le coup à jouer. Les noeuds plus profonds ne sont pas rechargés, et les sauvegardes
+     * suivantes ne les contiennent plus : chaque reprise élague l'arbre sauvegardé à cette taille, avant qu'il ne
+     * grandisse à nouveau.
+     * <p>
+     * Vaut 0 pour recharger tout l'arbre.
+     */
+    private int noeudsReprise = 1 << 20;
+    public int getNbThreads() {
+        return nbThreads;
+    }
+
+    public void setNbThreads(int nbThreads) {
+        this.nbThreads = nbThreads;
+    }
+
+    public Parallelisme getParallelisme() {
+        return parallelisme;
+    }
+
+    public void setParallelisme(Parallelisme parallelisme) {
+        this.parallelisme = parallelisme;
+    }
+
+    public int getTailleTable() {
+        return tailleTable;
+    }
+
+    public void setTailleTable(int tailleTable) {
+        this.tailleTable = tailleTable;
+    }
+
+    public boolean isReutiliserArbre() {
+        return reutiliserArbre;
+    }
+
+    public void setReutiliserArbre(boolean reutiliserArbre) {
+        this.reutiliserArbre = reutiliserArbre;
+    }
+
+    public int getTailleArbreCompact() {
+        return tailleArbreCompact;
+    }
+
+    public void setTailleArbreCompact(int tailleArbreCompact) {
+        this.tailleArbreCompact = tailleArbreCompact;
+    }
+
+    public int getSeuilSolveur() {
+        return seuilSolveur;
+    }
+
+    public void setSeuilSolveur(int seuilSolveur) {
+        this.seuilSolveur = seuilSolveur;
+    }
+
+    public double getPartSolveur() {
+        return partSolveur;
+    }
+
+    public void setPartSolveur(double partSolveur) {
+        this.partSolveur = partSolveur;
+    }
+
+    public int getTailleTableSolveur() {
+        return tailleTableSolveur;
+    }
+
+    public void setTailleTableSolveur(int tailleTableSolveur) {
+        this.tailleTableSolveur = tailleTableSolveur;
+    }
+
+    public String getFichierOuvertures() {
+        return fichierOuvertures;
+    }
+
+    public void setFichierOuvertures(String fichierOuvertures) {
+        this.fichierOuvertures = fichierOuvertures;
+    }
+
+    public String getFichierFinales() {
+        return fichierFinales;
+    }
+
+    public void setFichierFinales(String fichierFinales) {
+        this.fichierFinales = fichierFinales;
+    }
+
+    public int getTailleFinales() {
+        return tailleFinales;
+    }
+
+    public void setTailleFinales(int tailleFinales) {
+        this.tailleFinales = tailleFinales;
+    }
+
+    public double getExploration() {
+        return exploration;
+    }
+
+    public void setExploration(double exploration) {
+        this.exploration = exploration;
+    }
+
+    public boolean isAffichage() {
+        return affichage;
+    }
+
+    public void setAffichage(boolean affichage) {
+        this.affichage = affichage;
+    }
+
+    public boolean isJournal() {
+        return journal;
+    }
+
+    public void setJournal(boolean journal) {
+        this.journal = journal;
+    }
+
+    public boolean isGestionTemps() {
+        return gestionTemps;
+    }
+
+    public void setGestionTemps(boolean gestionTemps) {
+        this.gestionTemps = gestionTemps;
+    }
+
+    public long getTempsAdversaire() {
+        return tempsAdversaire;
+    }
+
+    public void setTempsAdversaire(long tempsAdversaire) {
+        this.tempsAdversaire = tempsAdversaire;
+    }
+
+    public long getQuotaIterations() {
+        return quotaIterations;
+    }
+
+    public void setQuotaIterations(long quotaIterations) {
+        this.quotaIterations = quotaIterations;
+    }
+
+    public String getFichierSauvegarde() {
+        return fichierSauvegarde;
+    }
+
+    public void setFichierSauvegarde(String fichierSauvegarde) {
+        this.fichierSauvegarde = fichierSauvegarde;
+    }
+
+    public long getPeriodeSauvegarde() {
+        return periodeSauvegarde;
+    }
+
+    public void setPeriodeSauvegarde(long periodeSauvegarde) {
+        this.periodeSauvegarde = periodeSauvegarde;
+    }
+
+    public int getNoeudsReprise() {
+        return noeudsReprise;
+    }
+
+    public void setNoeudsReprise(int noeudsReprise) {
+        this.noeudsReprise = noeudsReprise;
+    }
+}
@@ -0,0 +1,123 @@
+package fr.ul.puissance4;
+
+/**
+ * Position immuable du puissance 4, vue du joueur qui a le trait : ses pions et ceux de son adversaire, sous forme de
+ * masques comme dans {@link Etat}.
+ * <p>
+ * Contrairement à un {@link Etat}, une position peut être partagée entre threads et conservée sans copie : jouer un
+ * coup donne une nouvelle position.
+ */
+public final class Position {
+    /**
+     * La position de départ, plateau vide.
+     */
+    public static final Position INITIALE = new Position(0L, 0L);
+
+    /**
+     * Les pions du joueur qui a le trait.
+     */
+    private final long pionsJoueur;
+    /**
+     * Les pions de son adversaire.
+     */
+    private final long pionsAdversaire;
+
+    private Position(long pionsJoueur, long pionsAdversaire) {
+        this.pionsJoueur = pionsJoueur;
+        this.pionsAdversaire = pionsAdversaire;
+    }
+
+    /**
+     * Donne la position d'un état.
+     *
+     * @param etat l'état (non modifié)
+     * @return sa position, vue du joueur qui doit y jouer
+     */
+    public static Position de(Etat etat) {
+        return etat.getJoueur() == Etat.COMPUTER_PLAYER
+                ? new Position(etat.getPionsOrdi(), etat.getPionsHumain())
+                : new Position(etat.getPionsHumain(), etat.getPionsOrdi());
+    }
+
+    /**
+     * Construit une position en jouant une suite de coups depuis le plateau vide.
+     *
+     * @param coups les colonnes jouées, numérotées de 1 à {@link Etat#COLONNE} comme pour l'humain, par exemple
+     *              <code>"4453"</code>
+     * @return la position obtenue
+     * @throws IllegalArgumentException si un coup n'est pas une colonne jouable, ou est joué après la fin de la partie
+     */
+    public static Position depuisCoups(String coups) {
+        Position position = INITIALE;
+        for (int i = 0; i < coups.length(); i++) {
+            char c = coups.charAt(i);
+            if (c < '1' || c > '0' + Etat.COLONNE)
+                throw new IllegalArgumentException("Colonne invalide '" + c + "' dans " + coups);
+            position = position.jouer(c - '1');
+        }
+        return position;
+    }
+
+    /**
+     * Joue un coup.
+     *
+     * @param colonne la colonne jouée, de 0 à {@link Etat#COLONNE} - 1
+     * @return la position après le coup, vue de l'adversaire
+     * @throws IllegalArgumentException si la colonne n'est pas jouable ou si la partie est finie
+     */
+    public Position jouer(int colonne) {
+        Etat etat = versEtat();
+        if (etat.testFin() != FinDePartie.NON)
+            throw new IllegalArgumentException("La partie est finie : " + this);
+        if (etat.jouerCoupEtTester(colonne) == null)
+            throw new IllegalArgumentException("Colonne " + (colonne + 1) + " non jouable : " + this);
+        return new Position(pionsAdversaire, etat.getPionsOrdi());
+    }
+
+    /**
+     * @return le nombre de pions posés
+     */
+    public int getNbCoups() {
+        return Long.bitCount(pionsJoueur | pionsAdversaire);
+    }
+
+    /**
+     * @return l'état de fin de partie, l'ordinateur tenant le rôle du joueur qui a le trait
+     */
+    public FinDePartie getFin() {
+        return versEtat().testFin();
+    }
+
+    /**
+     * Crée un état de cette position dans lequel l'ordinateur tient le rôle du joueur qui a le trait : c'est ainsi
+     * que la recherche MCTS analyse une position.
+     *
+     * @return un nouvel état
+     */
+    Etat versEtat() {
+        Etat etat = new Etat();
+        etat.charger(pionsJoueur, pionsAdversaire, Etat.COMPUTER_PLAYER);
+        return etat;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Position position = (Position) o;
+        return pionsJoueur == position.pionsJoueur && pionsAdversaire == position.pionsAdversaire;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(pionsJoueur * 31 + pionsAdversaire);
+    }
+
+    @Override
+    public String toString() {
+        return "Position{" +
+                "pionsJoueur=0x" + Long.toHexString(pionsJoueur) +
+                ", pionsAdversaire=0x" + Long.toHexString(pionsAdversaire) +
+                '}';
+    }
+}
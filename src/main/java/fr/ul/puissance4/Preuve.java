@@ -0,0 +1,61 @@
+package fr.ul.puissance4;
+
+/**
+ * Classe d'énumération des valeurs prouvées d'un noeud de l'arbre de recherche, du point de vue du joueur qui a
+ * joué le coup menant au noeud
+ */
+public enum Preuve {
+    /**
+     * La valeur du noeud n'est pas encore connue.
+     */
+    INCONNUE,
+    /**
+     * Le joueur qui a joué pour arriver au noeud gagne, quoi que fasse son adversaire.
+     */
+    VICTOIRE,
+    /**
+     * Le joueur qui a joué pour arriver au noeud perd, quoi qu'il fasse.
+     */
+    DEFAITE,
+    /**
+     * Aucun des deux joueurs ne peut forcer la victoire.
+     */
+    NUL;
+
+    /**
+     * Donne la valeur prouvée d'une position finie.
+     *
+     * @param fin    l'état de fin de partie de la position
+     * @param joueur le joueur qui a joué le coup menant à la position
+     * @return la valeur de la position pour ce joueur ({@link #INCONNUE} si la partie n'est pas finie)
+     */
+    static Preuve de(FinDePartie fin, int joueur) {
+        switch (fin) {
+            case NON:
+                return INCONNUE;
+            case MATCH_NUL:
+                return NUL;
+            default:
+                return (fin == FinDePartie.ORDI_GAGNE) == (joueur == Etat.COMPUTER_PLAYER) ? VICTOIRE : DEFAITE;
+        }
+    }
+
+    /**
+     * Donne le résultat de la partie lorsque les deux joueurs jouent parfaitement.
+     *
+     * @param joueur le joueur qui a joué le coup menant à la position prouvée
+     * @return le résultat de la partie ({@link FinDePartie#NON} si la valeur est inconnue)
+     */
+    FinDePartie resultat(int joueur) {
+        switch (this) {
+            case VICTOIRE:
+                return joueur == Etat.COMPUTER_PLAYER ? FinDePartie.ORDI_GAGNE : FinDePartie.HUMAIN_GAGNE;
+            case DEFAITE:
+                return joueur == Etat.COMPUTER_PLAYER ? FinDePartie.HUMAIN_GAGNE : FinDePartie.ORDI_GAGNE;
+            case NUL:
+                return FinDePartie.MATCH_NUL;
+            default:
+                return FinDePartie.NON;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package fr.ul.puissance4;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+/**
+ * Moteur piloté par un protocole texte ligne à ligne, dans l'esprit d'UCI : un programme (interface de jeu, serveur,
+ * script) écrit des commandes sur l'entrée du processus et lit ses réponses sur sa sortie. Le processus reste lancé
+ * d'une partie à l'autre, et garde donc le code compilé à chaud par la JVM.
+ * <p>
+ * Commandes :
+ * <ul>
+ *     <li><code>uci</code> : répond <code>id name puissance4</code>, les options puis <code>uciok</code></li>
+ *     <li><code>isready</code> : répond <code>readyok</code></li>
+ *     <li><code>setoption name &lt;option&gt; value &lt;valeur&gt;</code> : règle les analyses suivantes, avec les
+ *     options <code>exploration</code> (la constante <code>c</code> de UCB1), <code>quota</code> (le nombre maximum
+ *     d'itérations d'une analyse, 0 pour aucune limite), <code>dimensions</code> (le plateau des parties suivantes,
+ *     <code>colonnes x lignes [x alignement]</code> comme <code>9x7</code> ou <code>10x8x5</code>, voir
+ *     {@link Dimensions#lire(String)} ; la position revient au plateau vide) et <code>sauvegarde</code> (le fichier où l'arbre de
+ *     l'analyse est sauvegardé régulièrement, pour la reprendre plus tard, <code>&lt;empty&gt;</code> pour aucun ;
+ *     la valeur va jusqu'à la fin de la ligne et peut contenir des espaces)</li>
+ *     <li><code>ucinewgame</code> : revient au plateau vide</li>
+ *     <li><code>position [startpos] [moves] &lt;coups&gt;</code> : la position obtenue en jouant les colonnes
+ *     <code>coups</code> (à partir de 1, par exemple <code>4453</code> ou <code>4 4 5 3</code>, et séparées par des
+ *     espaces au-delà de 9 colonnes) depuis le plateau vide</li>
+ *     <li><code>go movetime &lt;ms&gt;</code> ou <code>go infinite</code> : analyse la position ; des lignes
+ *     <code>info time &lt;ms&gt; nodes &lt;itérations&gt; winrate &lt;taux&gt; [score win|loss] pv &lt;coups&gt;</code>
+ *     suivent la progression, puis <code>bestmove &lt;colonne&gt;</code> donne le coup à jouer</li>
+ *     <li><code>stop</code> : termine l'analyse en cours, qui répond aussitôt <code>bestmove</code></li>
+ *     <li><code>quit</code> : arrête le moteur</li>
+ * </ul>
+ * Une commande invalide reçoit une réponse <code>info string</code> avec le message d'erreur.
+ * <p>
+ * Quand les commandes viennent d'un client moins sûr que le processus, par exemple à travers le {@link Serveur}, la
+ * sauvegarde peut être limitée à un répertoire (voir {@link #Protocole(Moteur, PrintStream, Path)}) : l'option
+ * <code>sauvegarde</code> n'y accepte alors qu'un simple nom de fichier.
+ */
+public class Protocole {
+    /**
+     * Le temps accordé à <code>go infinite</code>, en ms : environ un siècle.
+     */
+    private static final long INFINI = 3_000_000_000_000L;
+    /**
+     * Une commande <code>setoption</code> : le nom de l'option, puis sa valeur jusqu'à la fin de la ligne.
+     */
+    private static final Pattern SETOPTION = Pattern.compile("setoption\\s+name\\s+(\\S+)\\s+value\\s+(.+)");
+
+    private final Moteur moteur;
+    private final PrintStream sortie;
+    /**
+     * Vaut <code>true</code> si l'option <code>sauvegarde</code> est limitée à {@link #repertoireSauvegardes}.
+     */
+    private final boolean sauvegardesLimitees;
+    /**
+     * Le répertoire des sauvegardes quand elles sont limitées, ou <code>null</code> si l'option <code>sauvegarde</code>
+     * est désactivée.
+     */
+    private final Path repertoireSauvegardes;
+    private Dimensions dimensions = Dimensions.STANDARD;
+    /**
+     * La position à analyser sur le plateau standard.
+     */
+    private Position position = Position.INITIALE;
+    /**
+     * La position à analyser sur un plateau d'autres {@link #dimensions}, ou <code>null</code> sur le plateau standard.
+     */
+    private Grille grille;
+    /**
+     * L'analyse en cours, ou <code>null</code>.
+     */
+    private CompletableFuture<ResultatRecherche> analyse;
+    /**
+     * La gestion du temps de l'analyse en cours, interrompue par <code>stop</code>.
+     */
+    private GestionTemps temps;
+
+    /**
+     * @param moteur le moteur qui analyse les positions
+     * @param sortie la sortie sur laquelle sont écrites les réponses, pouvant être utilisée par plusieurs threads
+     */
+    public Protocole(Moteur moteur, PrintStream sortie) {
+        this(moteur, sortie, false, null);
+    }
+
+    /**
+     * Crée un protocole dont l'option <code>sauvegarde</code> ne désigne que des fichiers d'un répertoire, par un
+     * simple nom sans séparateur.
+     *
+     * @param moteur                le moteur qui analyse les positions
+     * @param sortie                la sortie sur laquelle sont écrites les réponses, pouvant être utilisée par
+     *                              plusieurs threads
+     * @param repertoireSauvegardes le répertoire des sauvegardes, ou <code>null</code> pour désactiver l'option
+     */
+    public Protocole(Moteur moteur, PrintStream sortie, Path repertoireSauvegardes) {
+        this(moteur, sortie, true, repertoireSauvegardes);
+    }
+
+    private Protocole(Moteur moteur, PrintStream sortie, boolean sauvegardesLimitees, Path repertoireSauvegardes) {
+        this.moteur = moteur;
+        this.sortie = sortie;
+        this.sauvegardesLimitees = sauvegardesLimitees;
+        this.repertoireSauvegardes = repertoireSauvegardes;
+    }
+    /**
+     * Lance le moteur sur l'entrée et la sortie standard.
+     *
+     * @param args la constante d'exploration (facultative)
+     * @throws IOException si l'entrée standard ne peut pas être lue
+     */
+    public static void main(String[] args) throws IOException {
+        Parametres parametres = new Parametres();
+        if (args.length >= 1) {
+            parametres.setExploration(Double.parseDouble(args[0]));
+        }
+        PrintStream sortie = new PrintStream(System.out, true, StandardCharsets.UTF_8.name());
+        BufferedReader entree = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        new Protocole(new Moteur(parametres), sortie).executer(entree);
+    }
+
+    /**
+     * Exécute les commandes lues jusqu'à <code>quit</code> ou la fin de l'entrée. L'analyse en cours est arrêtée
+     * dans tous les cas, même si l'entrée ne peut plus être lue : elle ne doit pas occuper les threads du moteur sans
+     * que personne n'attende son résultat.
+     *
+     * @param entree les commandes, une par ligne
+     * @throws IOException si l'entrée ne peut pas être lue
+     */
+    public void executer(BufferedReader entree) throws IOException {
+        try {
+            String ligne;
+            while ((ligne = entree.readLine()) != null) {
+                if (!traiter(ligne))
+                    return;
+            }
+        } finally {
+            arreter();
+        }
+    }
+
+    /**
+     * Exécute une commande.
+     *
+     * @param ligne la commande
+     * @return <code>false</code> si le moteur doit s'arrêter
+     */
+    public boolean traiter(String ligne) {
+        String[] mots = ligne.trim().split("\\s+");
+        try {
+            switch (mots[0]) {
+                case "":
+                    break;
+                case "uci":
+                    sortie.println("id name puissance4");
+                    sortie.println("option name exploration type string default " + moteur.getParametres().getExploration());
+                    sortie.println("option name quota type spin default " + moteur.getParametres().getQuotaIterations() + " min 0 max " + Long.MAX_VALUE);
+                    sortie.println("option name dimensions type string default " + dimensions);
+                    if (!sauvegardesLimitees || repertoireSauvegardes != null) {
+                        String sauvegarde = moteur.getParametres().getFichierSauvegarde();
+                        if (sauvegarde != null && sauvegardesLimitees)
+                            sauvegarde = Paths.get(sauvegarde).getFileName().toString();
+                        sortie.println("option name sauvegarde type string default " + (sauvegarde == null ? "<empty>" : sauvegarde));
+                    }
+                    sortie.println("uciok");
+                    break;
+                case "isready":
+                    sortie.println("readyok");
+                    break;
+                case "setoption":
+                    regler(ligne.trim());
+                    break;
+                case "ucinewgame":
+                    arreter();
+                    nouvellePartie();
+                    break;
+                case "position":
+                    arreter();
+                    lirePosition(mots);
+                    break;
+                case "go":
+                    lancer(mots);
+                    break;
+                case "stop":
+                    arreter();
+                    break;
+                case "quit":
+                    arreter();
+                    return false;
+                default:
+                    throw new IllegalArgumentException("Commande inconnue : " + mots[0]);
+            }
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            sortie.println("info string " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Règle une option d'une commande <code>setoption</code>.
+     */
+    private void regler(String ligne) {
+        Matcher commande = SETOPTION.matcher(ligne);
+        if (!commande.matches())
+            throw new IllegalArgumentException("Usage : setoption name <option> value <valeur>");
+        String option = commande.group(1);
+        String valeur = commande.group(2);
+
+        switch (option) {
+            case "exploration":
+                moteur.getParametres().setExploration(Double.parseDouble(valeur));
+                break;
+            case "quota":
+                long quota = Long.parseLong(valeur);
+                if (quota < 0)
+                    throw new IllegalArgumentException("Quota négatif : " + quota);
+                moteur.getParametres().setQuotaIterations(quota);
+                break;
+            case "dimensions":
+                Dimensions lues = Dimensions.lire(valeur);
+                arreter();
+                dimensions = lues;
+                nouvellePartie();
+                break;
+            case "sauvegarde":
+                moteur.getParametres().setFichierSauvegarde(valeur.equals("<empty>") ? null : fichierSauvegarde(valeur));
+                break;
+            default:
+                throw new IllegalArgumentException("Option inconnue : " + option);
+        }
+    }
+
+    /**
+     * @param nom la valeur de l'option <code>sauvegarde</code>
+     * @return le chemin du fichier de sauvegarde
+     * @throws IllegalArgumentException si la sauvegarde est désactivée, ou limitée à un répertoire et que
+     *                                  <code>nom</code> n'est pas un simple nom de fichier
+     */
+    private String fichierSauvegarde(String nom) {
+        if (!sauvegardesLimitees)
+            return nom;
+        if (repertoireSauvegardes == null)
+            throw new IllegalArgumentException("Sauvegarde désactivée");
+        if (nom.equals(".") || nom.equals("..") || nom.indexOf('/') >= 0 || nom.indexOf('\\') >= 0 || nom.indexOf(':') >= 0)
+            throw new IllegalArgumentException("Nom de fichier invalide : " + nom);
+        return repertoireSauvegardes.resolve(nom).toString();
+    }
+    /**
+     * Revient au plateau vide, des dimensions choisies.
+     */
+    private void nouvellePartie() {
+        position = Position.INITIALE;
+        grille = dimensions.equals(Dimensions.STANDARD) ? null : Grille.creer(dimensions);
+    }
+
+    /**
+     * Lit la position d'une commande <code>position</code>, sur le plateau des dimensions choisies.
+     */
+    private void lirePosition(String[] mots) {
+        StringBuilder coups = new StringBuilder();
+        for (int i = 1; i < mots.length; i++) {
+            if (!mots[i].equals("startpos") && !mots[i].equals("moves"))
+                coups.append(mots[i]).append(' ');
+        }
+        if (dimensions.equals(Dimensions.STANDARD))
+            position = Position.depuisCoups(coups.toString().replace(" ", ""));
+        else
+            grille = Grille.depuisCoups(dimensions, coups.toString());
+    }
+    /**
+     * Lance l'analyse d'une commande <code>go</code>.
+     */
+    private void lancer(String[] mots) {
+        if (analyse != null && !analyse.isDone())
+            throw new IllegalArgumentException("Une analyse est déjà en cours");
+
+        long tempsmax;
+        if (mots.length == 3 && mots[1].equals("movetime"))
+            tempsmax = Long.parseLong(mots[2]);
+        else if (mots.length == 2 && mots[1].equals("infinite"))
+            tempsmax = INFINI;
+        else
+            throw new IllegalArgumentException("Usage : go movetime <ms> | go infinite");
+
+        // l'analyse n'est finie qu'une fois son bestmove écrit
+        temps = new GestionTemps(tempsmax, false);
+        CompletableFuture<ResultatRecherche> resultat = grille == null
+                ? moteur.analyser(position, temps, r -> sortie.println(info(r)))
+                : moteur.analyser(grille, temps, r -> sortie.println(info(r)));
+        analyse = resultat.whenComplete((r, e) -> {
+            if (r != null) {
+                sortie.println(info(r));
+                sortie.println("bestmove " + (r.getCoup() + 1));
+            } else {
+                sortie.println("info string " + e);
+            }
+        });
+    }
+
+    /**
+     * Termine l'analyse en cours, s'il y en a une, et attend son <code>bestmove</code>.
+     */
+    private void arreter() {
+        if (analyse == null)
+            return;
+        temps.interrompre();
+        try {
+            analyse.join();
+        } catch (RuntimeException e) {
+            // l'erreur a déjà été écrite
+        }
+        analyse = null;
+    }
+
+    /**
+     * @return la ligne <code>info</code> d'un résultat
+     */
+    private static String info(ResultatRecherche resultat) {
+        StringBuilder info = new StringBuilder(String.format(Locale.ROOT, "info time %d nodes %d",
+                resultat.getDuree() / 1_000_000, resultat.getIterations()));
+        int coup = resultat.getCoup();
+        if (coup >= 0) {
+            info.append(String.format(Locale.ROOT, " winrate %.3f", resultat.getTauxVictoire()[coup]));
+            Preuve preuve = resultat.getPreuves()[coup];
+            if (preuve == Preuve.VICTOIRE)
+                info.append(" score win");
+            else if (preuve == Preuve.DEFAITE)
+                info.append(" score loss");
+        }
+        info.append(" pv");
+        for (int colonne : resultat.getVariante())
+            info.append(' ').append(colonne + 1);
+        return info.toString();
+    }
+}
@@ -0,0 +1,114 @@
+package fr.ul.puissance4;
+
+import java.util.Arrays;
+
+/**
+ * Résultat, final ou intermédiaire, d'une analyse du {@link Moteur}, du point de vue du joueur qui a le trait dans la
+ * position analysée.
+ * <p>
+ * Un résultat est immuable : les tableaux sont copiés à chaque lecture.
+ */
+public final class ResultatRecherche {
+    private final int coup;
+    private final int[] visites;
+    private final double[] tauxVictoire;
+    private final Preuve[] preuves;
+    private final int[] variante;
+    private final long iterations;
+    private final long duree;
+    private final boolean termine;
+
+    /**
+     * @param coup         la meilleure colonne
+     * @param visites      le nombre de simulations par colonne
+     * @param tauxVictoire le taux de victoire par colonne, {@link Double#NaN} pour une colonne non visitée
+     * @param preuves      la valeur prouvée de chaque colonne, <code>null</code> si elle est inconnue
+     * @param variante     la variante principale
+     * @param iterations   le nombre d'itérations MCTS
+     * @param duree        la durée de l'analyse, en ns
+     * @param termine      <code>true</code> pour le résultat final, <code>false</code> pour un résultat intermédiaire
+     */
+    ResultatRecherche(int coup, int[] visites, double[] tauxVictoire, Preuve[] preuves, int[] variante, long iterations, long duree, boolean termine) {
+        this.coup = coup;
+        this.visites = visites;
+        this.tauxVictoire = tauxVictoire;
+        this.preuves = preuves;
+        this.variante = variante;
+        this.iterations = iterations;
+        this.duree = duree;
+        this.termine = termine;
+    }
+
+    /**
+     * @return la meilleure colonne à jouer, de 0 au nombre de colonnes du plateau moins 1, ou -1 si aucune n'a encore
+     * été explorée
+     */
+    public int getCoup() {
+        return coup;
+    }
+
+    /**
+     * @return le nombre de simulations passées par chaque colonne
+     */
+    public int[] getVisites() {
+        return visites.clone();
+    }
+
+    /**
+     * @return le taux de victoire du joueur qui a le trait pour chaque colonne, {@link Double#NaN} pour une colonne
+     * non visitée
+     */
+    public double[] getTauxVictoire() {
+        return tauxVictoire.clone();
+    }
+
+    /**
+     * @return la valeur prouvée de chaque colonne pour le joueur qui a le trait, <code>null</code> si elle est inconnue
+     */
+    public Preuve[] getPreuves() {
+        return preuves.clone();
+    }
+
+    /**
+     * @return la variante principale : les colonnes jouées en suivant à chaque coup l'enfant le plus visité, en
+     * commençant par le coup du joueur qui a le trait
+     */
+    public int[] getVariante() {
+        return variante.clone();
+    }
+
+    /**
+     * @return le nombre d'itérations MCTS réalisées
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return la durée de l'analyse jusqu'à ce résultat, en ns
+     */
+    public long getDuree() {
+        return duree;
+    }
+
+    /**
+     * @return <code>true</code> pour le résultat final de l'analyse, <code>false</code> pour un résultat intermédiaire
+     */
+    public boolean isTermine() {
+        return termine;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultatRecherche{" +
+                "coup=" + coup +
+                ", visites=" + Arrays.toString(visites) +
+                ", tauxVictoire=" + Arrays.toString(tauxVictoire) +
+                ", preuves=" + Arrays.toString(preuves) +
+                ", variante=" + Arrays.toString(variante) +
+                ", iterations=" + iterations +
+                ", duree=" + duree +
+                ", termine=" + termine +
+                '}';
+    }
+}
@@ -0,0 +1,355 @@
+package fr.ul.puissance4;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+/**
+ * Sauvegarde d'un arbre de recherche MCTS, pour reprendre plus tard une longue analyse, ou la poursuivre sur une
+ * autre machine.
+ * <p>
+ * Le fichier commence par un en-tête de {@link #ENTETE} octets : {@link #MAGIQUE}, les masques de pions de l'ordinateur
+ * et de l'humain dans l'état de la racine, le joueur qui doit y jouer et le joueur de la racine. Suivent les noeuds,
+ * dans l'ordre d'un parcours en profondeur où chaque noeud est écrit après ses enfants, la racine en dernier ; chacun
+ * occupe {@link #NOEUD} octets :
+ * <ul>
+ *     <li>la colonne du coup menant au noeud (15 pour la racine) dans les 4 bits de poids faible, et sa
+ *     {@link Preuve} dans les bits suivants ;</li>
+ *     <li>le nombre d'enfants ;</li>
+ *     <li>le nombre de simulations, puis de victoires, sur 4 octets chacun ;</li>
+ *     <li>le nombre de noeuds de son sous-arbre, lui compris, sur 4 octets.</li>
+ * </ul>
+ * Comme la taille de chaque sous-arbre est connue quand son noeud est écrit, l'arbre s'écrit d'une traite sur un canal
+ * quelconque, sans revenir en arrière. À la lecture, le dernier enfant d'un noeud est juste avant lui, et chaque
+ * enfant est précédé de son frère précédent, un sous-arbre plus loin.
+ * <p>
+ * Avec {@link #ouvrir(Path)}, le fichier est projeté en mémoire plutôt que lu : un arbre de plusieurs millions de
+ * noeuds s'ouvre immédiatement et se parcourt directement dans le fichier, noeud par noeud ; {@link #lire(Path)} le
+ * lit plutôt en mémoire. Seul le haut de l'arbre est ensuite reconstruit ({@link #charger(int)}). La projection n'est
+ * libérée que par le ramasse-miettes, et tant qu'elle existe le fichier ne peut pas être remplacé sous Windows, mais
+ * peut être renommé : {@link #sauvegarder(Noeud, Path)} écarte alors l'ancien fichier avant d'y mettre la nouvelle
+ * sauvegarde, si bien qu'une recherche reprise d'un fichier projeté peut sauvegarder dans le même fichier.
+ */
+public class SauvegardeArbre {
+    /**
+     * Les 8 premiers octets d'une sauvegarde d'arbre (« P4ARBRE » suivi de la version du format).
+     */
+    static final long MAGIQUE = 0x50_34_41_52_42_52_45_01L;
+    /**
+     * La taille de l'en-tête du fichier, en octets.
+     */
+    static final int ENTETE = 32;
+    /**
+     * La taille d'un noeud dans le fichier, en octets.
+     */
+    static final int NOEUD = 14;
+    /**
+     * La colonne écrite pour la racine, qui n'a pas de coup.
+     */
+    private static final int RACINE = 0xF;
+
+    /**
+     * Le fichier, projeté ou lu en mémoire.
+     */
+    private final ByteBuffer octets;
+    private final int nbNoeuds;
+
+    private SauvegardeArbre(ByteBuffer octets, int nbNoeuds) {
+        this.octets = octets;
+        this.nbNoeuds = nbNoeuds;
+    }
+
+    /**
+     * Sauvegarde un arbre dans un fichier. L'arbre est d'abord écrit dans un nouveau fichier, renommé ensuite en
+     * <code>fichier</code> : une sauvegarde interrompue laisse la précédente intacte. Si l'ancien fichier ne peut pas
+     * être remplacé, parce qu'il est encore projeté en mémoire sous Windows, il est d'abord renommé avec le suffixe
+     * <code>.ancien</code>, et supprimé dès que possible.
+     *
+     * @param racine  la racine de l'arbre, qui ne doit pas être développé pendant la sauvegarde
+     * @param fichier le fichier de la sauvegarde
+     * @return le nombre de noeuds sauvegardés
+     * @throws UncheckedIOException si le fichier ne peut pas être écrit
+     */
+    public static int sauvegarder(Noeud racine, Path fichier) {
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+        try {
+            int n;
+            try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                n = ecrire(racine, canal);
+            }
+            Path ancien = fichier.resolveSibling(fichier.getFileName() + ".ancien");
+            supprimer(ancien);
+            try {
+                remplacer(temporaire, fichier);
+            } catch (FileSystemException e) {
+                if (!Files.exists(fichier) || Files.exists(ancien))
+                    throw e;
+                Files.move(fichier, ancien);
+                remplacer(temporaire, fichier);
+                supprimer(ancien);
+            }
+            return n;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void remplacer(Path source, Path cible) throws IOException {
+        try {
+            Files.move(source, cible, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, cible, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Supprime un fichier s'il existe et n'est plus projeté en mémoire.
+     */
+    private static void supprimer(Path fichier) {
+        try {
+            Files.deleteIfExists(fichier);
+        } catch (IOException e) {
+            // encore projeté : la prochaine sauvegarde réessaiera
+        }
+    }
+
+    /**
+     * Écrit un arbre sur un canal, par exemple un fichier ou une connexion vers une autre machine.
+     *
+     * @param racine la racine de l'arbre, qui ne doit pas être développé pendant l'écriture
+     * @param canal  le canal, qui n'est pas fermé
+     * @return le nombre de noeuds écrits
+     * @throws IOException si l'écriture échoue
+     */
+    public static int ecrire(Noeud racine, WritableByteChannel canal) throws IOException {
+        Etat etat = racine.getEtat();
+        ByteBuffer tampon = ByteBuffer.allocateDirect(1 << 16);
+        tampon.putLong(MAGIQUE).putLong(etat.getPionsOrdi()).putLong(etat.getPionsHumain())
+                .put((byte) etat.getJoueur()).put((byte) racine.getJoueur());
+        tampon.position(ENTETE);
+
+        int n = ecrire(racine, RACINE, tampon, canal);
+        vider(tampon, canal);
+        return n;
+    }
+
+    /**
+     * Écrit un sous-arbre : les sous-arbres des enfants, colonne par colonne, puis le noeud lui-même.
+     *
+     * @return le nombre de noeuds du sous-arbre
+     */
+    private static int ecrire(Noeud noeud, int colonne, ByteBuffer tampon, WritableByteChannel canal) throws IOException {
+        int taille = 1;
+        int nbEnfants = 0;
+        for (int j = 0; j < Etat.COLONNE; j++) {
+            Noeud enfant = noeud.enfantEnColonne(j);
+            if (enfant != null) {
+                taille += ecrire(enfant, j, tampon, canal);
+                nbEnfants++;
+            }
+        }
+
+        if (tampon.remaining() < NOEUD)
+            vider(tampon, canal);
+        tampon.put((byte) (colonne | noeud.getPreuve().ordinal() << 4)).put((byte) nbEnfants)
+                .putInt(noeud.getNb_simus()).putInt(noeud.getNb_victoires()).putInt(taille);
+        return taille;
+    }
+
+    private static void vider(ByteBuffer tampon, WritableByteChannel canal) throws IOException {
+        tampon.flip();
+        while (tampon.hasRemaining())
+            canal.write(tampon);
+        tampon.clear();
+    }
+
+    /**
+     * Ouvre une sauvegarde d'arbre.
+     *
+     * @param fichier le fichier de la sauvegarde
+     * @return la sauvegarde
+     * @throws UncheckedIOException     si le fichier ne peut pas être lu
+     * @throws IllegalArgumentException si le fichier n'est pas une sauvegarde d'arbre, ou dépasse 2 Go
+     */
+    public static SauvegardeArbre ouvrir(Path fichier) {
+        return ouvrir(fichier, true);
+    }
+
+    /**
+     * Lit une sauvegarde d'arbre en mémoire. Contrairement à {@link #ouvrir(Path)}, le fichier n'est plus utilisé
+     * ensuite et peut être remplacé par une nouvelle sauvegarde.
+     *
+     * @param fichier le fichier de la sauvegarde
+     * @return la sauvegarde
+     * @throws UncheckedIOException     si le fichier ne peut pas être lu
+     * @throws IllegalArgumentException si le fichier n'est pas une sauvegarde d'arbre, ou dépasse 2 Go
+     */
+    public static SauvegardeArbre lire(Path fichier) {
+        return ouvrir(fichier, false);
+    }
+
+    private static SauvegardeArbre ouvrir(Path fichier, boolean projeter) {
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            long taille = canal.size();
+            if (taille > Integer.MAX_VALUE)
+                throw new IllegalArgumentException(fichier + " dépasse 2 Go");
+            ByteBuffer octets;
+            if (projeter) {
+                octets = canal.map(FileChannel.MapMode.READ_ONLY, 0, taille);
+            } else {
+                octets = ByteBuffer.allocate((int) taille);
+                while (octets.hasRemaining() && canal.read(octets) >= 0) {
+                    // jusqu'à la fin du fichier
+                }
+                octets.flip();
+            }
+            if (taille < ENTETE + NOEUD || (taille - ENTETE) % NOEUD != 0 || octets.limit() != taille || octets.getLong(0) != MAGIQUE)
+                throw new IllegalArgumentException(fichier + " n'est pas une sauvegarde d'arbre");
+            return new SauvegardeArbre(octets, (int) ((taille - ENTETE) / NOEUD));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    /**
+     * @return une copie de l'état de la racine
+     */
+    public Etat getEtat() {
+        Etat etat = new Etat();
+        etat.charger(octets.getLong(8), octets.getLong(16), octets.get(24));
+        return etat;
+    }
+
+    /**
+     * @return le nombre de noeuds de l'arbre
+     */
+    public int getNbNoeuds() {
+        return nbNoeuds;
+    }
+
+    /**
+     * @return le numéro de la racine, le dernier noeud du fichier
+     */
+    public int getRacine() {
+        return nbNoeuds - 1;
+    }
+
+    /**
+     * @param noeud le numéro d'un noeud
+     * @return la colonne du coup menant au noeud, ou -1 pour la racine
+     */
+    public int getColonne(int noeud) {
+        int colonne = octets.get(position(noeud)) & RACINE;
+        return colonne == RACINE ? -1 : colonne;
+    }
+
+    /**
+     * @param noeud le numéro d'un noeud
+     * @return la valeur prouvée du noeud
+     */
+    public Preuve getPreuve(int noeud) {
+        return Preuve.values()[(octets.get(position(noeud)) & 0xFF) >>> 4];
+    }
+
+    /**
+     * @param noeud le numéro d'un noeud
+     * @return le nombre d'enfants du noeud
+     */
+    public int getNbEnfants(int noeud) {
+        return octets.get(position(noeud) + 1);
+    }
+
+    /**
+     * @param noeud le numéro d'un noeud
+     * @return le nombre de simulations passées par le noeud
+     */
+    public int getNbSimus(int noeud) {
+        return octets.getInt(position(noeud) + 2);
+    }
+
+    /**
+     * @param noeud le numéro d'un noeud
+     * @return le nombre de victoires sous le noeud, pour le joueur qui y a mené
+     */
+    public int getNbVictoires(int noeud) {
+        return octets.getInt(position(noeud) + 6);
+    }
+
+    /**
+     * @param noeud le numéro d'un noeud
+     * @return le nombre de noeuds du sous-arbre du noeud, lui compris
+     */
+    public int getTaille(int noeud) {
+        return octets.getInt(position(noeud) + 10);
+    }
+
+    /**
+     * Donne les enfants d'un noeud, sans lire leurs sous-arbres.
+     *
+     * @param noeud le numéro d'un noeud
+     * @return les numéros de ses enfants, de la dernière colonne à la première
+     */
+    public int[] enfants(int noeud) {
+        int[] enfants = new int[getNbEnfants(noeud)];
+        int enfant = noeud - 1;
+        for (int i = 0; i < enfants.length; i++) {
+            enfants[i] = enfant;
+            enfant -= getTaille(enfant);
+        }
+        return enfants;
+    }
+
+    private int position(int noeud) {
+        if (noeud < 0 || noeud >= nbNoeuds)
+            throw new IndexOutOfBoundsException("Noeud " + noeud + " sur " + nbNoeuds);
+        return ENTETE + noeud * NOEUD;
+    }
+
+    /**
+     * Reconstruit en mémoire le haut de l'arbre, pour reprendre la recherche : les noeuds sont chargés en largeur
+     * d'abord, si bien qu'une limite garde les noeuds les plus proches de la racine. Chaque noeud chargé garde ses
+     * statistiques, qui comptent aussi les simulations passées par ses enfants non chargés.
+     *
+     * @param noeudsMax le nombre maximum de noeuds à charger
+     * @return la racine de l'arbre reconstruit
+     */
+    public Noeud charger(int noeudsMax) {
+        Noeud racine = new Noeud(null, null);
+        if (octets.get(25) != racine.getJoueur())
+            racine.changerJoueur();
+        racine.setEtat(getEtat());
+        restaurer(racine, getRacine());
+
+        ArrayDeque<Noeud> noeuds = new ArrayDeque<>();
+        ArrayDeque<Integer> numeros = new ArrayDeque<>();
+        noeuds.add(racine);
+        numeros.add(getRacine());
+        for (int charges = 1; !noeuds.isEmpty() && charges < noeudsMax; ) {
+            Noeud parent = noeuds.poll();
+            int numero = numeros.poll();
+            for (int enfant : enfants(numero)) {
+                if (charges++ >= noeudsMax)
+                    break;
+                Noeud noeud = new Noeud(parent, Coup.de(getColonne(enfant)));
+                restaurer(noeud, enfant);
+                if (getNbEnfants(enfant) > 0) {
+                    noeuds.add(noeud);
+                    numeros.add(enfant);
+                }
+            }
+        }
+        return racine;
+    }
+
+    private void restaurer(Noeud noeud, int numero) {
+        noeud.restaurer(getNbSimus(numero), getNbVictoires(numero), getPreuve(numero));
+    }
+}
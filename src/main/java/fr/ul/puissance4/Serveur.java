@@ -0,0 +1,177 @@
+package fr.ul.puissance4;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serveur de parties simultanées : chaque connexion TCP est une session du {@link Protocole}, avec sa position et ses
+ * réglages, et les analyses de toutes les sessions se partagent un même {@link Ordonnanceur}.
+ * <p>
+ * Les analyses sont découpées en tranches d'itérations de taille fixe ({@link Moteur#TRANCHE}) ; le nombre de threads
+ * de calcul ne dépend pas du nombre de sessions, si bien qu'une charge élevée allonge la réflexion de chaque session
+ * sans surcharger la machine. Le quota d'itérations de chaque session se règle avec
+ * <code>setoption name quota value &lt;itérations&gt;</code>.
+ * <p>
+ * N'importe quel programme de la machine peut se connecter : l'option <code>sauvegarde</code> des sessions n'écrit
+ * donc que dans un répertoire choisi au lancement du serveur, sous un simple nom de fichier, et elle est désactivée
+ * sans ce répertoire.
+ * <p>
+ * Le serveur n'écoute que les connexions locales. Usage : <code>java fr.ul.puissance4.Serveur [port] [threads]
+ * [quota] [répertoire des sauvegardes]</code>, le port 0 en choisissant un libre.
+ */
+public class Serveur {
+    private final ServerSocket ecoute;
+    private final Ordonnanceur ordonnanceur;
+    /**
+     * Les threads des connexions, qui passent l'essentiel de leur temps à attendre la commande suivante.
+     */
+    private final ExecutorService connexions = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "session");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Les réglages de départ de chaque session.
+     */
+    private final Parametres parametres;
+    /**
+     * Le répertoire où les sessions peuvent sauvegarder leurs analyses, ou <code>null</code> si elles ne le peuvent
+     * pas.
+     */
+    private final Path repertoireSauvegardes;
+    private final AtomicInteger nbSessions = new AtomicInteger();
+    /**
+     * Ouvre le serveur sur l'interface locale.
+     *
+     * @param port       le port d'écoute, 0 pour en choisir un libre
+     * @param nbThreads  le nombre de threads de calcul partagés par les sessions
+     * @param parametres les réglages de départ de chaque session (exploration, arrêt anticipé, quota)
+     * @throws IOException si le port ne peut pas être ouvert
+     */
+    public Serveur(int port, int nbThreads, Parametres parametres) throws IOException {
+        this(port, nbThreads, parametres, null);
+    }
+
+    /**
+     * Ouvre le serveur sur l'interface locale, en permettant aux sessions de sauvegarder leurs analyses.
+     *
+     * @param port                  le port d'écoute, 0 pour en choisir un libre
+     * @param nbThreads             le nombre de threads de calcul partagés par les sessions
+     * @param parametres            les réglages de départ de chaque session (exploration, arrêt anticipé, quota)
+     * @param repertoireSauvegardes le répertoire des sauvegardes des sessions, ou <code>null</code> pour les interdire
+     * @throws IOException si le port ne peut pas être ouvert
+     */
+    public Serveur(int port, int nbThreads, Parametres parametres, Path repertoireSauvegardes) throws IOException {
+        this.ecoute = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.ordonnanceur = new Ordonnanceur(nbThreads);
+        this.parametres = parametres;
+        this.repertoireSauvegardes = repertoireSauvegardes;
+    }
+    public static void main(String[] args) throws IOException {
+        int port = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Parametres parametres = new Parametres();
+        if (args.length >= 1) {
+            port = Integer.parseInt(args[0]);
+        }
+        if (args.length >= 2) {
+            threads = Integer.parseInt(args[1]);
+        }
+        if (args.length >= 3) {
+            parametres.setQuotaIterations(Long.parseLong(args[2]));
+        }
+        Path sauvegardes = null;
+        if (args.length >= 4) {
+            sauvegardes = Files.createDirectories(Paths.get(args[3]));
+        }
+
+        Serveur serveur = new Serveur(port, threads, parametres, sauvegardes);
+        System.out.println("serveur port=" + serveur.getPort() + " threads=" + threads);
+        serveur.servir();
+    }
+
+    /**
+     * Accepte les connexions jusqu'à {@link #fermer()}, chacune servie sur son propre thread.
+     *
+     * @throws IOException si l'écoute échoue pour une autre raison que la fermeture du serveur
+     */
+    public void servir() throws IOException {
+        while (!ecoute.isClosed()) {
+            Socket socket;
+            try {
+                socket = ecoute.accept();
+            } catch (IOException e) {
+                if (ecoute.isClosed())
+                    return;
+                throw e;
+            }
+            connexions.execute(() -> session(socket));
+        }
+    }
+
+    /**
+     * Sert une session jusqu'à <code>quit</code> ou la déconnexion du client.
+     */
+    private void session(Socket socket) {
+        Parametres reglages = new Parametres();
+        reglages.setExploration(parametres.getExploration());
+        reglages.setGestionTemps(parametres.isGestionTemps());
+        reglages.setQuotaIterations(parametres.getQuotaIterations());
+
+        nbSessions.incrementAndGet();
+        try (Socket s = socket) {
+            BufferedReader entree = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            PrintStream sortie = new PrintStream(s.getOutputStream(), true, StandardCharsets.UTF_8.name());
+            new Protocole(new Moteur(ordonnanceur, reglages), sortie, repertoireSauvegardes).executer(entree);
+        } catch (IOException e) {
+            // client déconnecté
+        } finally {
+            nbSessions.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return le port d'écoute du serveur
+     */
+    public int getPort() {
+        return ecoute.getLocalPort();
+    }
+
+    /**
+     * @return le nombre de sessions ouvertes
+     */
+    public int getNbSessions() {
+        return nbSessions.get();
+    }
+
+    /**
+     * @return l'ordonnanceur partagé par les analyses des sessions
+     */
+    public Ordonnanceur getOrdonnanceur() {
+        return ordonnanceur;
+    }
+
+    /**
+     * Ferme le serveur : il n'accepte plus de connexion et ses threads de calcul s'arrêtent ; les analyses en cours
+     * se terminent sur une erreur à leur tranche suivante.
+     *
+     * @throws IOException si la fermeture du port échoue
+     */
+    public void fermer() throws IOException {
+        ecoute.close();
+        connexions.shutdown();
+        ordonnanceur.arreter();
+    }
+}
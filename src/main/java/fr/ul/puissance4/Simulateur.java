@@ -0,0 +1,67 @@
+package fr.ul.puissance4;
+
+import java.util.SplittableRandom;
+
+/**
+ * Moteur de simulation de parties aléatoires (phase de simulation de MCTS).
+ * <p>
+ * Les parties sont jouées sur un unique état de brouillon réutilisé d'une simulation à l'autre : une simulation
+ * n'ajoute aucun noeud à l'arbre de recherche et n'alloue aucun objet.
+ * <p>
+ * Un simulateur n'est pas thread-safe : chaque thread de recherche doit utiliser le sien.
+ */
+public class Simulateur {
+    /**
+     * L'état sur lequel sont jouées les parties aléatoires.
+     */
+    private final Etat brouillon;
+    /**
+     * Les colonnes jouables dans le {@link #brouillon}, remplies avant chaque coup.
+     */
+    private final int[] jouables;
+    /**
+     * Le générateur aléatoire utilisé pour choisir les coups.
+     */
+    private final SplittableRandom alea;
+
+    /**
+     * Crée un simulateur dont les parties aléatoires ne sont pas reproductibles.
+     */
+    public Simulateur() {
+        this(new SplittableRandom());
+    }
+
+    /**
+     * Crée un simulateur dont les parties aléatoires sont reproductibles.
+     *
+     * @param graine la graine du générateur aléatoire
+     */
+    public Simulateur(long graine) {
+        this(new SplittableRandom(graine));
+    }
+
+    private Simulateur(SplittableRandom alea) {
+        this.brouillon = new Etat();
+        this.jouables = new int[Etat.COLONNE];
+        this.alea = alea;
+    }
+
+    /**
+     * Joue une partie aléatoire jusqu'au bout à partir d'un état donné.
+     * <p>
+     * Chaque coup est choisi uniformément parmi les colonnes jouables.
+     *
+     * @param depart l'état à partir duquel simuler (non modifié)
+     * @return le résultat de la partie simulée ({@link FinDePartie#NON} si <code>depart</code> est déjà fini)
+     */
+    public FinDePartie simuler(Etat depart) {
+        brouillon.copier(depart);
+
+        FinDePartie fin = FinDePartie.NON;
+        int n;
+        while (fin == FinDePartie.NON && (n = brouillon.colonnesJouables(jouables)) > 0) {
+            fin = brouillon.jouerCoupEtTester(jouables[alea.nextInt(n)]);
+        }
+        return fin;
+    }
+}
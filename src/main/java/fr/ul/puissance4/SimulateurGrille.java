@@ -0,0 +1,69 @@
+package fr.ul.puissance4;
+
+import java.util.SplittableRandom;
+
+/**
+ * Moteur de simulation de parties aléatoires sur une {@link Grille}, l'équivalent de {@link Simulateur} pour les
+ * variantes du puissance 4.
+ * <p>
+ * Les parties sont jouées sur un unique plateau de brouillon réutilisé d'une simulation à l'autre : une simulation
+ * n'alloue aucun objet. Un simulateur n'est pas thread-safe : chaque thread doit utiliser le sien.
+ */
+public class SimulateurGrille {
+    /**
+     * Le plateau sur lequel sont jouées les parties aléatoires.
+     */
+    private final Grille brouillon;
+    /**
+     * Les colonnes jouables dans le {@link #brouillon}, remplies avant chaque coup.
+     */
+    private final int[] jouables;
+    /**
+     * Le générateur aléatoire utilisé pour choisir les coups.
+     */
+    private final SplittableRandom alea;
+
+    /**
+     * Crée un simulateur dont les parties aléatoires ne sont pas reproductibles.
+     *
+     * @param dimensions les dimensions des plateaux simulés
+     */
+    public SimulateurGrille(Dimensions dimensions) {
+        this(dimensions, new SplittableRandom());
+    }
+
+    /**
+     * Crée un simulateur dont les parties aléatoires sont reproductibles.
+     *
+     * @param dimensions les dimensions des plateaux simulés
+     * @param graine     la graine du générateur aléatoire
+     */
+    public SimulateurGrille(Dimensions dimensions, long graine) {
+        this(dimensions, new SplittableRandom(graine));
+    }
+
+    private SimulateurGrille(Dimensions dimensions, SplittableRandom alea) {
+        this.brouillon = Grille.creer(dimensions);
+        this.jouables = new int[dimensions.getColonnes()];
+        this.alea = alea;
+    }
+
+    /**
+     * Joue une partie aléatoire jusqu'au bout à partir d'un plateau donné.
+     * <p>
+     * Chaque coup est choisi uniformément parmi les colonnes jouables.
+     *
+     * @param depart le plateau à partir duquel simuler (non modifié), des dimensions du simulateur
+     * @return le résultat de la partie simulée ({@link FinDePartie#NON} si <code>depart</code> est plein)
+     */
+    public FinDePartie simuler(Grille depart) {
+        brouillon.copier(depart);
+
+        FinDePartie fin = FinDePartie.NON;
+        int n;
+        while (fin == FinDePartie.NON && (n = brouillon.colonnesJouables(jouables)) > 0) {
+            fin = brouillon.jouer(jouables[alea.nextInt(n)]);
+        }
+        return fin;
+    }
+}
@@ -0,0 +1,273 @@
+package fr.ul.puissance4;
+
+/**
+ * Solveur exact du puissance 4 : recherche negamax avec élagage alpha-bêta, approfondissement itératif et table de
+ * transposition.
+ * <p>
+ * Le score d'une position est donné pour le joueur qui doit y jouer : positif s'il gagne, d'autant plus grand qu'il
+ * gagne vite ; nul en cas de match nul ; négatif s'il perd, d'autant plus petit qu'il perd vite. Une victoire au
+ * <code>n</code>-ième pion posé vaut <code>(CASES + 2 - n) / 2</code>.
+ * <p>
+ * Un solveur n'est pas thread-safe. Sa table de transposition est conservée d'une résolution à l'autre.
+ */
+public class Solveur {
+    /**
+     * Le nombre de cases du plateau.
+     */
+    private static final int CASES = Etat.LIGNE * Etat.COLONNE;
+    /**
+     * L'ordre dans lequel les colonnes sont essayées : du centre vers les bords.
+     */
+    private static final int[] ORDRE = ordreCentre();
+    /**
+     * Le nombre de noeuds visités entre deux lectures de l'horloge.
+     */
+    private static final int PERIODE_HORLOGE = 4096;
+
+    private static final int EXACT = 1;
+    private static final int MINORANT = 2;
+    private static final int MAJORANT = 3;
+
+    /**
+     * Les clés des positions de la table de transposition.
+     */
+    private final long[] cles;
+    /**
+     * Les valeurs de la table de transposition : le score (décalé de {@link #CASES}) dans l'octet de poids faible,
+     * la nature de la borne ({@link #EXACT}, {@link #MINORANT} ou {@link #MAJORANT}) dans l'octet suivant.
+     */
+    private final int[] valeurs;
+    private final int masque;
+
+    /**
+     * L'état sur lequel la recherche joue et annule les coups.
+     */
+    private Etat etat;
+    /**
+     * L'instant (en ns, selon {@link System#nanoTime()}) au-delà duquel la recherche est interrompue.
+     */
+    private long echeance;
+    /**
+     * <code>true</code> si la recherche a été interrompue faute de temps.
+     */
+    private boolean interrompu;
+    /**
+     * <code>true</code> si la recherche en cours a atteint sa profondeur maximale sans finir la partie : son
+     * résultat n'est alors pas exact.
+     */
+    private boolean horizon;
+    /**
+     * Le nombre de noeuds visités depuis le début de la résolution.
+     */
+    private long noeuds;
+
+    /**
+     * Crée un solveur.
+     *
+     * @param megaOctets la mémoire occupée par la table de transposition, en Mo
+     */
+    public Solveur(int megaOctets) {
+        int taille = (int) Math.min(1 << 30, Math.max(1L, Long.highestOneBit((long) megaOctets * 1024 * 1024 / (Long.BYTES + Integer.BYTES))));
+        cles = new long[taille];
+        valeurs = new int[taille];
+        masque = taille - 1;
+    }
+
+    /**
+     * Résultat exact d'une résolution.
+     */
+    public static class Solution {
+        private final int colonne;
+        private final int score;
+
+        Solution(int colonne, int score) {
+            this.colonne = colonne;
+            this.score = score;
+        }
+
+        /**
+         * @return la meilleure colonne à jouer
+         */
+        public int getColonne() {
+            return colonne;
+        }
+
+        /**
+         * @return le score de la position pour le joueur qui doit jouer
+         */
+        public int getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return score > 0 ? "victoire assurée" : score < 0 ? "défaite assurée" : "match nul assuré";
+        }
+    }
+
+    /**
+     * Résout une position par approfondissement itératif : les coups sont explorés sur une profondeur croissante,
+     * jusqu'à ce que le résultat ne dépende plus des positions non explorées.
+     *
+     * @param position la position à résoudre (non modifiée), qui ne doit pas être finie
+     * @param tempsmax le temps maximum en ms accordé à la résolution
+     * @return la solution, ou <code>null</code> si la position n'a pas pu être résolue dans le temps imparti
+     */
+    public Solution resoudre(Etat position, long tempsmax) {
+        etat = position.copieEtat();
+        echeance = System.nanoTime() + tempsmax * 1_000_000;
+        interrompu = false;
+        noeuds = 0;
+
+        int restants = CASES - etat.getNbCoups();
+        int meilleure = -1;
+        for (int profondeur = 1; profondeur <= restants; profondeur++) {
+            horizon = false;
+            int alpha = -CASES, beta = CASES;
+            int score = -CASES, colonne = -1;
+
+            // la meilleure colonne de l'itération précédente est essayée en premier
+            for (int i = -1; i < ORDRE.length; i++) {
+                int j = i < 0 ? meilleure : ORDRE[i];
+                if (j < 0 || (i >= 0 && j == meilleure))
+                    continue;
+
+                FinDePartie fin = etat.jouerCoupEtTester(j);
+                if (fin == null)
+                    continue;
+                int s = valeur(fin, alpha, beta, profondeur);
+                etat.annulerCoup(j);
+                if (interrompu)
+                    return null;
+
+                if (s > score) {
+                    score = s;
+                    colonne = j;
+                    alpha = Math.max(alpha, s);
+                }
+            }
+
+            // un gain ou une perte trouvé avant l'horizon est forcé ; sinon le résultat doit être exact
+            if (score != 0 || !horizon)
+                return new Solution(colonne, score);
+            meilleure = colonne;
+        }
+        return null;
+    }
+
+    /**
+     * @return le nombre de noeuds visités par la dernière résolution
+     */
+    public long getNoeuds() {
+        return noeuds;
+    }
+
+    /**
+     * Donne le score, pour le joueur qui vient de jouer, de la position atteinte après son coup.
+     */
+    private int valeur(FinDePartie fin, int alpha, int beta, int profondeur) {
+        if (fin == FinDePartie.MATCH_NUL)
+            return 0;
+        if (fin != FinDePartie.NON)
+            return (CASES + 2 - etat.getNbCoups()) / 2;
+        return -negamax(-beta, -alpha, profondeur - 1);
+    }
+
+    /**
+     * Negamax avec élagage alpha-bêta.
+     *
+     * @param alpha      le score minimum qui intéresse l'appelant
+     * @param beta       le score maximum qui intéresse l'appelant
+     * @param profondeur le nombre de coups restant à explorer
+     * @return le score de la position pour le joueur qui doit jouer (une borne si hors de <code>[alpha, beta]</code>)
+     */
+    private int negamax(int alpha, int beta, int profondeur) {
+        if ((++noeuds % PERIODE_HORLOGE) == 0 && System.nanoTime() > echeance)
+            interrompu = true;
+        if (interrompu)
+            return 0;
+
+        int coups = etat.getNbCoups();
+        int jouables = etat.colonnesJouables();
+
+        // si un coup gagne immédiatement, inutile de chercher plus loin
+        for (int m = jouables; m != 0; m &= m - 1) {
+            int j = Integer.numberOfTrailingZeros(m);
+            FinDePartie fin = etat.jouerCoupEtTester(j);
+            etat.annulerCoup(j);
+            if (fin == FinDePartie.ORDI_GAGNE || fin == FinDePartie.HUMAIN_GAGNE)
+                return (CASES + 1 - coups) / 2;
+        }
+
+        if (profondeur <= 0) {
+            horizon = true;
+            return 0;
+        }
+
+        // on ne peut pas gagner avant notre prochain coup
+        int max = (CASES - 1 - coups) / 2;
+        if (beta > max) {
+            beta = max;
+            if (alpha >= beta)
+                return beta;
+        }
+
+        long cle = etat.getCle();
+        int i = (int) cle & masque;
+        if (cles[i] == cle && valeurs[i] != 0) {
+            int score = (valeurs[i] & 0xFF) - CASES;
+            int borne = valeurs[i] >>> 8;
+            if (borne == EXACT)
+                return score;
+            if (borne == MINORANT)
+                alpha = Math.max(alpha, score);
+            else
+                beta = Math.min(beta, score);
+            if (alpha >= beta)
+                return score;
+        }
+
+        int alphaInitial = alpha;
+        boolean horizonAvant = horizon;
+        horizon = false;
+
+        int best = -CASES;
+        for (int j : ORDRE) {
+            if ((jouables & (1 << j)) == 0)
+                continue;
+
+            FinDePartie fin = etat.jouerCoupEtTester(j);
+            int score = valeur(fin, alpha, beta, profondeur);
+            etat.annulerCoup(j);
+
+            if (score > best)
+                best = score;
+            if (best > alpha)
+                alpha = best;
+            if (alpha >= beta)
+                break;
+        }
+
+        // seul un résultat qui ne dépend pas de l'horizon peut être réutilisé à une autre profondeur
+        if (!horizon && !interrompu) {
+            int borne = best <= alphaInitial ? MAJORANT : best >= beta ? MINORANT : EXACT;
+            cles[i] = cle;
+            valeurs[i] = (best + CASES) | (borne << 8);
+        }
+        horizon |= horizonAvant;
+
+        return best;
+    }
+
+    /**
+     * Construit l'ordre des colonnes, du centre vers les bords.
+     *
+     * @return les numéros de colonnes dans l'ordre où les essayer
+     */
+    private static int[] ordreCentre() {
+        int[] ordre = new int[Etat.COLONNE];
+        for (int i = 0; i < Etat.COLONNE; i++)
+            ordre[i] = Etat.COLONNE / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+        return ordre;
+    }
+}
@@ -0,0 +1,351 @@
+package fr.ul.puissance4;
+
+import java.util.Locale;
+
+/**
+ * Mesures d'une recherche de l'ordinateur : nombre d'itérations MCTS, noeuds créés, profondeur atteinte, temps passé
+ * dans chaque étape de MCTS et statistiques des coups depuis la racine.
+ * <p>
+ * Pendant la recherche, chaque thread remplit ses propres statistiques, qui sont additionnées à la fin ; une instance
+ * n'est donc pas thread-safe. Après un coup de l'ordinateur, celles du coup sont données par
+ * {@link Etat#getDerniereRecherche()}.
+ * <p>
+ * Le temps passé dans chaque étape n'est mesuré que si les statistiques sont {@link #isChronometre() chronométrées} :
+ * lire l'horloge plusieurs fois par itération ralentit sensiblement la recherche (voir
+ * <code>BancRecherche</code>). Sinon, ces temps restent nuls.
+ */
+public class StatistiquesRecherche {
+    /**
+     * D'où vient le coup joué par l'ordinateur.
+     */
+    public enum Origine {
+        /**
+         * Le coup était forcé : seule colonne jouable, victoire immédiate ou seule parade à une victoire immédiate
+         * de l'adversaire.
+         */
+        FORCE,
+        /**
+         * Le coup a été lu dans le {@link LivreOuvertures}.
+         */
+        LIVRE,
+        /**
+         * La position était déjà dans le {@link CacheFinales}.
+         */
+        CACHE,
+        /**
+         * La position a été résolue par le {@link Solveur}.
+         */
+        SOLVEUR,
+        /**
+         * Le coup a été choisi par la recherche MCTS.
+         */
+        MCTS
+    }
+
+    /**
+     * <code>true</code> si le temps de chaque étape de MCTS est mesuré.
+     */
+    private final boolean chronometre;
+    private Origine origine = Origine.MCTS;
+    private int coup = -1;
+    private long duree;
+    private long iterations;
+    private long simulations;
+    private long noeuds;
+    /**
+     * Le nombre de simulations déjà connues des arbres repris du coup précédent.
+     */
+    private long simulationsReprises;
+    /**
+     * Le nombre de positions trouvées et absentes dans la table de transposition.
+     */
+    private long succesTable;
+    private long echecsTable;
+    private int profondeurMax;
+    private long sommeProfondeurs;
+    private long tempsSelection;
+    private long tempsDeveloppement;
+    private long tempsSimulation;
+    private long tempsPropagation;
+    private final int[] simusRacine = new int[Etat.COLONNE];
+    private final int[] victoiresRacine = new int[Etat.COLONNE];
+    private final Preuve[] preuvesRacine = new Preuve[Etat.COLONNE];
+
+    /**
+     * Crée des statistiques qui ne mesurent pas le temps passé dans chaque étape.
+     */
+    public StatistiquesRecherche() {
+        this(false);
+    }
+
+    /**
+     * @param chronometre <code>true</code> pour mesurer le temps passé dans chaque étape de MCTS
+     */
+    public StatistiquesRecherche(boolean chronometre) {
+        this.chronometre = chronometre;
+    }
+
+    /**
+     * @return <code>true</code> si le temps passé dans chaque étape de MCTS est mesuré ; à ne lire qu'une fois par
+     * itération, pour savoir s'il faut lire l'horloge
+     */
+    public boolean isChronometre() {
+        return chronometre;
+    }
+    /**
+     * Compte une itération MCTS.
+     *
+     * @param profondeur      la profondeur du noeud simulé, la racine étant à la profondeur 0
+     * @param partieAleatoire <code>true</code> si une partie aléatoire a été jouée, <code>false</code> si le
+     *                        résultat du noeud était déjà prouvé
+     * @param selection       le temps passé dans la sélection, en ns (0 si les statistiques ne sont pas chronométrées)
+     * @param developpement   le temps passé dans le développement, en ns
+     * @param simulation      le temps passé dans la simulation, en ns
+     * @param propagation     le temps passé dans la propagation, en ns
+     */
+    void compterIteration(int profondeur, boolean partieAleatoire, long selection, long developpement, long simulation, long propagation) {
+        iterations++;
+        if (partieAleatoire)
+            simulations++;
+        if (profondeur > profondeurMax)
+            profondeurMax = profondeur;
+        sommeProfondeurs += profondeur;
+        tempsSelection += selection;
+        tempsDeveloppement += developpement;
+        tempsSimulation += simulation;
+        tempsPropagation += propagation;
+    }
+
+    /**
+     * Ajoute les mesures d'un autre thread de la même recherche à celles-ci (sans les statistiques de la racine).
+     *
+     * @param autres les mesures à ajouter
+     */
+    void cumuler(StatistiquesRecherche autres) {
+        iterations += autres.iterations;
+        simulations += autres.simulations;
+        noeuds += autres.noeuds;
+        profondeurMax = Math.max(profondeurMax, autres.profondeurMax);
+        sommeProfondeurs += autres.sommeProfondeurs;
+        tempsSelection += autres.tempsSelection;
+        tempsDeveloppement += autres.tempsDeveloppement;
+        tempsSimulation += autres.tempsSimulation;
+        tempsPropagation += autres.tempsPropagation;
+    }
+
+    /**
+     * Ajoute des noeuds créés au décompte de la recherche.
+     *
+     * @param nombre le nombre de noeuds créés
+     */
+    void ajouterNoeuds(long nombre) {
+        noeuds += nombre;
+    }
+
+    void setSimulationsReprises(long simulationsReprises) {
+        this.simulationsReprises = simulationsReprises;
+    }
+
+    /**
+     * Relève les compteurs de la table de transposition de la recherche.
+     *
+     * @param table la table, ou <code>null</code> si la recherche n'en utilise pas
+     */
+    void releverTable(TableTransposition table) {
+        if (table == null)
+            return;
+        succesTable = table.getSucces();
+        echecsTable = table.getEchecs();
+    }
+    /**
+     * Termine les mesures une fois le coup joué.
+     *
+     * @param coup  la colonne jouée
+     * @param duree la durée totale de la recherche, en ns
+     */
+    void terminer(int coup, long duree) {
+        this.coup = coup;
+        this.duree = duree;
+    }
+
+    /**
+     * @return d'où vient le coup joué
+     */
+    public Origine getOrigine() {
+        return origine;
+    }
+
+    void setOrigine(Origine origine) {
+        this.origine = origine;
+    }
+
+    /**
+     * @return la colonne jouée, ou -1 si la recherche n'est pas terminée
+     */
+    public int getCoup() {
+        return coup;
+    }
+
+    /**
+     * @return la durée totale de la recherche, en ns
+     */
+    public long getDuree() {
+        return duree;
+    }
+
+    /**
+     * @return le nombre d'itérations MCTS, tous threads confondus
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return le nombre de parties aléatoires jouées, c'est-à-dire les itérations dont le noeud n'était pas prouvé
+     */
+    public long getSimulations() {
+        return simulations;
+    }
+
+    /**
+     * @return le nombre de parties aléatoires jouées par seconde de recherche
+     */
+    public double getSimulationsParSeconde() {
+        return duree > 0 ? simulations * 1e9 / duree : 0;
+    }
+
+    /**
+     * @return le nombre de noeuds créés pendant la recherche
+     */
+    public long getNoeuds() {
+        return noeuds;
+    }
+
+    /**
+     * @return la profondeur du noeud simulé le plus profond
+     */
+    public int getProfondeurMax() {
+        return profondeurMax;
+    }
+
+    /**
+     * @return la profondeur moyenne des noeuds simulés
+     */
+    public double getProfondeurMoyenne() {
+        return iterations > 0 ? (double) sommeProfondeurs / iterations : 0;
+    }
+
+    /**
+     * @return le nombre de simulations déjà connues des arbres repris du coup précédent
+     */
+    public long getSimulationsReprises() {
+        return simulationsReprises;
+    }
+
+    /**
+     * @return le nombre de positions trouvées dans la table de transposition
+     */
+    public long getSuccesTable() {
+        return succesTable;
+    }
+
+    /**
+     * @return le nombre de positions absentes de la table de transposition
+     */
+    public long getEchecsTable() {
+        return echecsTable;
+    }
+
+    /**
+     * @return le temps passé dans la sélection, en ns, additionné sur tous les threads
+     */
+    public long getTempsSelection() {
+        return tempsSelection;
+    }
+
+    /**
+     * @return le temps passé dans le développement, en ns, additionné sur tous les threads
+     */
+    public long getTempsDeveloppement() {
+        return tempsDeveloppement;
+    }
+
+    /**
+     * @return le temps passé dans la simulation, en ns, additionné sur tous les threads
+     */
+    public long getTempsSimulation() {
+        return tempsSimulation;
+    }
+
+    /**
+     * @return le temps passé dans la propagation, en ns, additionné sur tous les threads
+     */
+    public long getTempsPropagation() {
+        return tempsPropagation;
+    }
+
+    /**
+     * @return le nombre de simulations par colonne jouée depuis la racine (à remplir pendant la recherche)
+     */
+    public int[] getSimusRacine() {
+        return simusRacine;
+    }
+
+    /**
+     * @return le nombre de victoires de l'ordinateur par colonne jouée depuis la racine (à remplir pendant la
+     * recherche)
+     */
+    public int[] getVictoiresRacine() {
+        return victoiresRacine;
+    }
+
+    /**
+     * @return la valeur prouvée pour l'ordinateur de chaque colonne jouée depuis la racine, <code>null</code> si
+     * elle est inconnue (à remplir pendant la recherche)
+     */
+    public Preuve[] getPreuvesRacine() {
+        return preuvesRacine;
+    }
+
+    /**
+     * Résume les statistiques de la racine en une chaîne sans espace : pour chaque colonne explorée,
+     * <code>colonne:simulations/victoires</code>, suivi de <code>/preuve</code> si sa valeur est prouvée.
+     *
+     * @return le résumé, par exemple <code>0:120/54,3:800/512/VICTOIRE</code>
+     */
+    public String resumerRacine() {
+        StringBuilder resume = new StringBuilder();
+        for (int j = 0; j < Etat.COLONNE; j++) {
+            if (simusRacine[j] == 0 && preuvesRacine[j] == null)
+                continue;
+            if (resume.length() > 0)
+                resume.append(',');
+            resume.append(j).append(':').append(simusRacine[j]).append('/').append(victoiresRacine[j]);
+            if (preuvesRacine[j] != null)
+                resume.append('/').append(preuvesRacine[j]);
+        }
+        return resume.toString();
+    }
+
+    /**
+     * Met les mesures sous la forme d'une ligne de journal : des paires <code>nom=valeur</code> séparées par des
+     * espaces, toujours dans le même ordre, les durées étant en ms. Les temps de chaque étape sont nuls si les
+     * statistiques ne sont pas chronométrées.
+     *
+     * @return la ligne de journal
+     */
+    public String versJournal() {
+        return String.format(Locale.ROOT,
+                "recherche origine=%s coup=%d duree_ms=%.1f iterations=%d simulations=%d simulations_par_s=%.0f noeuds=%d"
+                        + " profondeur_max=%d profondeur_moyenne=%.2f selection_ms=%.1f developpement_ms=%.1f"
+                        + " simulation_ms=%.1f propagation_ms=%.1f reprises=%d table_succes=%d table_echecs=%d racine=%s",
+                origine.name().toLowerCase(Locale.ROOT), coup, duree / 1e6, iterations, simulations, getSimulationsParSeconde(),
+                noeuds, profondeurMax, getProfondeurMoyenne(), tempsSelection / 1e6, tempsDeveloppement / 1e6,
+                tempsSimulation / 1e6, tempsPropagation / 1e6, simulationsReprises, succesTable, echecsTable, resumerRacine());
+    }
+
+    @Override
+    public String toString() {
+        return versJournal();
+    }
+}
@@ -0,0 +1,184 @@
+package fr.ul.puissance4;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Table de transposition de la recherche MCTS : les statistiques (simulations et victoires) y sont cumulées par
+ * position, quel que soit l'ordre des coups qui y a mené.
+ * <p>
+ * La table occupe une taille fixe, choisie à sa création, et peut servir à toute une partie. Les entrées sont rangées par paires : la première case
+ * garde la position la plus visitée de la paire, la seconde est remplacée à chaque nouvelle position.
+ * <p>
+ * La table peut être utilisée par plusieurs threads sans verrou : chaque entrée est stockée sous la forme
+ * <code>(clé ⊕ données, données)</code>, si bien qu'une entrée écrite à moitié par un autre thread est simplement
+ * vue comme absente. Quelques incréments peuvent être perdus lors d'écritures simultanées.
+ */
+public class TableTransposition {
+    /**
+     * Nombre d'octets occupés par une entrée (clé et données).
+     */
+    private static final int OCTETS_PAR_ENTREE = 2 * Long.BYTES;
+    /**
+     * Valeur renvoyée par {@link #lire(long)} lorsqu'une position n'est pas dans la table.
+     */
+    public static final long ABSENTE = 0L;
+
+    /**
+     * Les clés des entrées, masquées par leurs données.
+     */
+    private final long[] cles;
+    /**
+     * Les données des entrées : le nombre de simulations dans les 32 bits de poids fort, le nombre de victoires
+     * dans les 32 bits de poids faible.
+     */
+    private final long[] donnees;
+    /**
+     * Masque donnant l'indice de la première case d'une paire à partir d'une clé.
+     */
+    private final int masque;
+    /**
+     * La mémoire demandée à la création de la table, en Mo.
+     */
+    private final int megaOctets;
+    /**
+     * Nombre de lectures ayant trouvé la position cherchée.
+     */
+    private final LongAdder succes = new LongAdder();
+    /**
+     * Nombre de lectures n'ayant pas trouvé la position cherchée.
+     */
+    private final LongAdder echecs = new LongAdder();
+
+    /**
+     * Crée une table vide.
+     *
+     * @param megaOctets la mémoire occupée par la table, en Mo (arrondie à la puissance de 2 inférieure)
+     */
+    public TableTransposition(int megaOctets) {
+        long entrees = Math.max(2L, Long.highestOneBit((long) megaOctets * 1024 * 1024 / OCTETS_PAR_ENTREE));
+        int taille = (int) Math.min(entrees, 1 << 30);
+
+        cles = new long[taille];
+        donnees = new long[taille];
+        masque = (taille - 1) & ~1;
+        this.megaOctets = megaOctets;
+    }
+
+    /**
+     * Vide la table et remet ses compteurs de lectures à zéro. Ne doit pas être appelée pendant une recherche.
+     */
+    public void vider() {
+        Arrays.fill(cles, 0L);
+        Arrays.fill(donnees, ABSENTE);
+        remettreCompteurs();
+    }
+
+    /**
+     * Remet les compteurs de lectures à zéro, pour mesurer une nouvelle recherche sans vider la table.
+     */
+    public void remettreCompteurs() {
+        succes.reset();
+        echecs.reset();
+    }
+
+    /**
+     * @return la mémoire demandée à la création de la table, en Mo
+     */
+    public int getMegaOctets() {
+        return megaOctets;
+    }
+
+    /**
+     * Récupère les statistiques d'une position.
+     *
+     * @param cle la clé de Zobrist de la position
+     * @return les statistiques de la position (à décoder avec {@link #simulations(long)} et
+     * {@link #victoires(long)}), ou {@link #ABSENTE} si la position n'est pas dans la table
+     */
+    public long lire(long cle) {
+        int i = (int) cle & masque;
+        long d = donnees[i];
+        if ((cles[i] ^ d) != cle || d == ABSENTE) {
+            d = donnees[++i];
+            if ((cles[i] ^ d) != cle || d == ABSENTE) {
+                echecs.increment();
+                return ABSENTE;
+            }
+        }
+        succes.increment();
+        return d;
+    }
+
+    /**
+     * Ajoute une simulation aux statistiques d'une position, en l'insérant dans la table si besoin.
+     *
+     * @param cle      la clé de Zobrist de la position
+     * @param victoire <code>true</code> si la simulation compte comme une victoire dans cette position
+     */
+    public void ajouter(long cle, boolean victoire) {
+        long increment = (1L << 32) | (victoire ? 1L : 0L);
+        int i = (int) cle & masque;
+
+        long d0 = donnees[i];
+        if ((cles[i] ^ d0) == cle && d0 != ABSENTE) {
+            ecrire(i, cle, d0 + increment);
+            return;
+        }
+
+        long d1 = donnees[i + 1];
+        if ((cles[i + 1] ^ d1) == cle && d1 != ABSENTE) {
+            d1 += increment;
+            if (simulations(d1) > simulations(d0)) {
+                // la seconde case est devenue la plus visitée de la paire : on échange les deux cases
+                ecrire(i + 1, cles[i] ^ d0, d0);
+                ecrire(i, cle, d1);
+            } else {
+                ecrire(i + 1, cle, d1);
+            }
+            return;
+        }
+
+        // nouvelle position : la première case n'est prise que si elle est libre
+        ecrire(d0 == ABSENTE ? i : i + 1, cle, increment);
+    }
+
+    private void ecrire(int i, long cle, long d) {
+        donnees[i] = d;
+        cles[i] = cle ^ d;
+    }
+
+    /**
+     * @return le nombre de lectures ayant trouvé la position cherchée
+     */
+    public long getSucces() {
+        return succes.sum();
+    }
+
+    /**
+     * @return le nombre de lectures n'ayant pas trouvé la position cherchée
+     */
+    public long getEchecs() {
+        return echecs.sum();
+    }
+
+    /**
+     * Décode le nombre de simulations de statistiques lues dans la table.
+     *
+     * @param donnees les statistiques renvoyées par {@link #lire(long)}
+     * @return le nombre de simulations passées par la position
+     */
+    public static int simulations(long donnees) {
+        return (int) (donnees >>> 32);
+    }
+
+    /**
+     * Décode le nombre de victoires de statistiques lues dans la table.
+     *
+     * @param donnees les statistiques renvoyées par {@link #lire(long)}
+     * @return le nombre de victoires comptées dans la position
+     */
+    public static int victoires(long donnees) {
+        return (int) donnees;
+    }
+}
@@ -0,0 +1,250 @@
+package fr.ul.puissance4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tournoi sans affichage entre deux configurations de l'ordinateur, pour comparer leur force de jeu.
+ * <p>
+ * Les parties sont jouées par paires : les deux parties d'une paire commencent par les mêmes coups tirés au hasard,
+ * chaque configuration commençant l'une des deux. Plusieurs parties sont jouées en même temps sur un groupe de
+ * threads ; pour comparer des configurations à temps de calcul égal, ce nombre de threads (multiplié par celui de
+ * chaque recherche) ne doit pas dépasser le nombre de coeurs.
+ * <p>
+ * Usage : <code>java fr.ul.puissance4.Tournoi [parties] [threads] [configuration A] [configuration B]
+ * [coups d'ouverture aléatoires]</code>
+ * <p>
+ * Une configuration est une liste de réglages <code>nom=valeur</code> séparés par des virgules, par exemple
+ * <code>temps=200,c=1.0</code> : <code>temps</code> (ms par coup), <code>c</code>, <code>threads</code>,
+ * <code>parallelisme</code>, <code>table</code>, <code>reutiliser</code>, <code>compact</code>, <code>seuil</code>,
+ * <code>part</code> et <code>gestion</code> (voir {@link Parametres}). Les réglages absents gardent la valeur par défaut de
+ * {@link Parametres}, et <code>temps=100</code>.
+ */
+public class Tournoi {
+    /**
+     * Le nombre de bits de chaque colonne dans les masques de pions d'un {@link Etat}.
+     */
+    private static final int HAUTEUR = Etat.LIGNE + 1;
+
+    /**
+     * Une configuration de l'ordinateur et ses statistiques sur l'ensemble du tournoi.
+     */
+    static class Configuration {
+        final String nom;
+        final long temps;
+        final Parametres parametres;
+        final LongAdder simulations = new LongAdder();
+        final LongAdder reflexion = new LongAdder();
+
+        private Configuration(String nom, long temps, Parametres parametres) {
+            this.nom = nom;
+            this.temps = temps;
+            this.parametres = parametres;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int parties = 100;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String a = "temps=100";
+        String b = "temps=100";
+        int ouverture = 2;
+        if (args.length >= 1) {
+            parties = Integer.parseInt(args[0]);
+        }
+        if (args.length >= 2) {
+            threads = Integer.parseInt(args[1]);
+        }
+        if (args.length >= 3) {
+            a = args[2];
+        }
+        if (args.length >= 4) {
+            b = args[3];
+        }
+        if (args.length >= 5) {
+            ouverture = Integer.parseInt(args[4]);
+        }
+
+        Configuration configA = lireConfiguration(a);
+        Configuration configB = lireConfiguration(b);
+        System.out.println("A (" + configA.nom + ") contre B (" + configB.nom + ") : " + parties + " parties sur " + threads + " threads");
+
+        // score de A dans chaque partie : 2 pour une victoire, 1 pour un match nul, 0 pour une défaite
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> scores = new ArrayList<>();
+        SplittableRandom alea = new SplittableRandom();
+        long graine = 0L;
+        for (int p = 0; p < parties; p++) {
+            if (p % 2 == 0)
+                graine = alea.nextLong();
+            final long grainePaire = graine;
+            final boolean aCommence = p % 2 == 0;
+            final int coupsAleatoires = ouverture;
+            scores.add(pool.submit(() -> aCommence
+                    ? jouerPartie(configA, configB, coupsAleatoires, new SplittableRandom(grainePaire))
+                    : 2 - jouerPartie(configB, configA, coupsAleatoires, new SplittableRandom(grainePaire))));
+        }
+
+        int victoires = 0, nuls = 0, defaites = 0;
+        try {
+            for (int p = 0; p < scores.size(); p++) {
+                int score = scores.get(p).get();
+                if (score == 2) victoires++;
+                else if (score == 1) nuls++;
+                else defaites++;
+                System.out.print("\r" + (p + 1) + " / " + parties + " parties jouées");
+                System.out.flush();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        System.out.println();
+
+        System.out.println("A : " + victoires + " victoires, " + nuls + " nuls, " + defaites + " défaites");
+        afficherElo(victoires, nuls, defaites);
+        afficherVitesse("A", configA);
+        afficherVitesse("B", configB);
+    }
+
+    /**
+     * Joue une partie entre deux configurations.
+     *
+     * @param premier         la configuration qui commence
+     * @param second          l'autre configuration
+     * @param coupsAleatoires le nombre de coups joués au hasard au début de la partie
+     * @param alea            le générateur des coups joués au hasard (les deux parties d'une paire utilisent la
+     *                        même graine)
+     * @return le score du premier joueur : 2 pour une victoire, 1 pour un match nul, 0 pour une défaite
+     */
+    static int jouerPartie(Configuration premier, Configuration second, int coupsAleatoires, SplittableRandom alea) {
+        // dans la partie, l'ordinateur est le premier joueur et l'humain le second ; chaque configuration joue sur
+        // son propre état, dans lequel c'est toujours elle l'ordinateur, pour garder ses arbres d'un coup à l'autre
+        Etat partie = new Etat();
+        Etat[] moteurs = {new Etat(), new Etat()};
+        Configuration[] configurations = {premier, second};
+        int[] jouables = new int[Etat.COLONNE];
+
+        FinDePartie fin = FinDePartie.NON;
+        for (int k = 0; k < coupsAleatoires && fin == FinDePartie.NON; k++)
+            fin = partie.jouerCoupEtTester(jouables[alea.nextInt(partie.colonnesJouables(jouables))]);
+
+        while (fin == FinDePartie.NON) {
+            int i = partie.getJoueur() == Etat.COMPUTER_PLAYER ? 0 : 1;
+            long siens = i == 0 ? partie.getPionsOrdi() : partie.getPionsHumain();
+            long autres = i == 0 ? partie.getPionsHumain() : partie.getPionsOrdi();
+
+            Etat moteur = moteurs[i];
+            moteur.charger(siens, autres, Etat.COMPUTER_PLAYER);
+            long tic = System.nanoTime();
+            moteur.ordijoue_mcts(configurations[i].temps, configurations[i].parametres);
+            configurations[i].reflexion.add(System.nanoTime() - tic);
+
+            // la colonne jouée est celle du seul pion apparu dans le masque du moteur
+            int colonne = Long.numberOfTrailingZeros(moteur.getPionsOrdi() ^ siens) / HAUTEUR;
+            fin = partie.jouerCoupEtTester(colonne);
+        }
+
+        for (int i = 0; i < moteurs.length; i++)
+            configurations[i].simulations.add(moteurs[i].getSimulations());
+        return fin == FinDePartie.ORDI_GAGNE ? 2 : fin == FinDePartie.MATCH_NUL ? 1 : 0;
+    }
+
+    /**
+     * Lit une configuration de l'ordinateur.
+     *
+     * @param description les réglages, sous la forme <code>nom=valeur,nom=valeur</code>
+     * @return la configuration, sans affichage ni journal
+     * @throws IllegalArgumentException si un réglage est inconnu
+     */
+    static Configuration lireConfiguration(String description) {
+        Parametres parametres = new Parametres();
+        parametres.setAffichage(false);
+        parametres.setJournal(false);
+        long temps = 100L;
+
+        for (String reglage : description.split(",")) {
+            if (reglage.isEmpty())
+                continue;
+            String[] nomValeur = reglage.split("=", 2);
+            String valeur = nomValeur.length > 1 ? nomValeur[1] : "";
+            switch (nomValeur[0]) {
+                case "temps":
+                    temps = Long.parseLong(valeur);
+                    break;
+                case "c":
+                    parametres.setExploration(Double.parseDouble(valeur));
+                    break;
+                case "threads":
+                    parametres.setNbThreads(Integer.parseInt(valeur));
+                    break;
+                case "parallelisme":
+                    parametres.setParallelisme(Parallelisme.valueOf(valeur.toUpperCase()));
+                    break;
+                case "table":
+                    parametres.setTailleTable(Integer.parseInt(valeur));
+                    break;
+                case "reutiliser":
+                    parametres.setReutiliserArbre(Boolean.parseBoolean(valeur));
+                    break;
+                case "compact":
+                    parametres.setTailleArbreCompact(Integer.parseInt(valeur));
+                    break;
+                case "seuil":
+                    parametres.setSeuilSolveur(Integer.parseInt(valeur));
+                    break;
+                case "part":
+                    parametres.setPartSolveur(Double.parseDouble(valeur));
+                    break;
+                case "gestion":
+                    parametres.setGestionTemps(Boolean.parseBoolean(valeur));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Réglage inconnu : " + nomValeur[0]);
+            }
+        }
+        return new Configuration(description, temps, parametres);
+    }
+
+    /**
+     * Affiche la différence d'Elo de A par rapport à B, avec son intervalle de confiance à 95 %.
+     */
+    private static void afficherElo(int victoires, int nuls, int defaites) {
+        int n = victoires + nuls + defaites;
+        if (n == 0)
+            return;
+
+        double score = (victoires + 0.5 * nuls) / n;
+        double variance = (victoires * Math.pow(1 - score, 2) + nuls * Math.pow(0.5 - score, 2) + defaites * Math.pow(score, 2)) / n;
+        double marge = 1.96 * Math.sqrt(variance / n);
+        System.out.printf("Elo de A par rapport à B : %+.0f (intervalle de confiance à 95 %% : [%+.0f, %+.0f])%n",
+                elo(score), elo(score - marge), elo(score + marge));
+    }
+
+    /**
+     * Convertit un score moyen en différence d'Elo.
+     *
+     * @param score le score moyen par partie, entre 0 et 1
+     * @return la différence d'Elo correspondante (infinie pour un score de 0 ou 1)
+     */
+    static double elo(double score) {
+        if (score <= 0)
+            return Double.NEGATIVE_INFINITY;
+        if (score >= 1)
+            return Double.POSITIVE_INFINITY;
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    private static void afficherVitesse(String nom, Configuration configuration) {
+        double secondes = configuration.reflexion.sum() / 1e9;
+        System.out.printf("%s : %d simulations en %.1f s de réflexion, soit %.0f simulations/s%n",
+                nom, configuration.simulations.sum(), secondes, secondes > 0 ? configuration.simulations.sum() / secondes : 0.0);
+    }
+}
@@ -0,0 +1,110 @@
+package fr.ul.puissance4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AnalyseLotTest {
+    @Rule
+    public TemporaryFolder dossier = new TemporaryFolder();
+
+    @Test
+    public void resultatParLigne() throws Exception {
+        Path entree = positions("# commentaire", "4453", "", "171717", "12345678", "1212121");
+        Path sortie = dossier.getRoot().toPath().resolve("resultats.tsv");
+        assertEquals(4, lot().analyser(entree, sortie));
+
+        Map<Integer, String[]> resultats = lire(sortie);
+        assertEquals(Arrays.asList(2, 4, 5, 6), Arrays.asList(resultats.keySet().toArray()));
+        assertEquals("4453", resultats.get(2)[0]);
+        assertEquals(7, resultats.get(2)[4].split(",").length);
+        assertEquals(Arrays.asList("171717", "1"), Arrays.asList(resultats.get(4)).subList(0, 2));
+        assertEquals("VICTOIRE", resultats.get(4)[3]);
+        assertEquals(Arrays.asList("12345678", "erreur", "Colonne invalide '8' dans 12345678"), Arrays.asList(resultats.get(5)));
+        assertEquals(Arrays.asList("1212121", "erreur", "La partie est finie"), Arrays.asList(resultats.get(6)));
+    }
+
+    /**
+     * Après un arrêt brutal, seules les lignes absentes du fichier de sortie sont analysées, et la dernière ligne
+     * écrite à moitié est remplacée.
+     */
+    @Test
+    public void repriseApresInterruption() throws Exception {
+        Path entree = positions("4453", "# commentaire", "44", "171717");
+        Path sortie = dossier.getRoot().toPath().resolve("resultats.tsv");
+        Files.write(sortie, "1\t4453\t4\t0.5000\t-\t1,1,1,1,1,1,1\n4\t1717".getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, lot().analyser(entree, sortie));
+
+        List<String> lignes = Files.readAllLines(sortie, StandardCharsets.UTF_8);
+        assertEquals(3, lignes.size());
+        assertEquals("1\t4453\t4\t0.5000\t-\t1,1,1,1,1,1,1", lignes.get(0));
+        Map<Integer, String[]> resultats = lire(sortie);
+        assertEquals(Arrays.asList(1, 3, 4), Arrays.asList(resultats.keySet().toArray()));
+        assertEquals("VICTOIRE", resultats.get(4)[3]);
+
+        // tout est déjà fait
+        assertEquals(0, lot().analyser(entree, sortie));
+        assertEquals(lignes, Files.readAllLines(sortie, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Une analyse qui ne peut pas être lancée rend sa place : les lignes suivantes reçoivent aussi leur erreur.
+     */
+    @Test(timeout = 30_000)
+    public void erreurSiLAnalyseNePeutPasCommencer() throws Exception {
+        Ordonnanceur ordonnanceur = new Ordonnanceur(1);
+        ordonnanceur.arreter();
+        AnalyseLot lot = new AnalyseLot(new Moteur(ordonnanceur, new Parametres()), 100, 1);
+        Path sortie = dossier.getRoot().toPath().resolve("resultats.tsv");
+        assertEquals(3, lot.analyser(positions("4", "44", "444"), sortie));
+        for (String[] resultat : lire(sortie).values())
+            assertEquals("erreur", resultat[1]);
+    }
+
+    /**
+     * Un résultat sans colonne analysée donne une ligne d'erreur au lieu d'une exception, qui serait perdue dans le
+     * rappel de l'analyse et bloquerait le lot.
+     */
+    @Test
+    public void resultatSansColonneEnErreur() {
+        double[] taux = new double[Etat.COLONNE];
+        Arrays.fill(taux, Double.NaN);
+        ResultatRecherche vide = new ResultatRecherche(-1, new int[Etat.COLONNE], taux, new Preuve[Etat.COLONNE], new int[0], 0, 0, true);
+        assertEquals("44\terreur\tjava.lang.IllegalStateException: Aucune colonne analysée", AnalyseLot.ligne("44", vide, null));
+        assertEquals("44\terreur\tjava.lang.IllegalStateException: panne", AnalyseLot.ligne("44", null, new IllegalStateException("panne")));
+    }
+
+    private AnalyseLot lot() {
+        Parametres parametres = new Parametres();
+        parametres.setQuotaIterations(2000);
+        return new AnalyseLot(new Moteur(parametres), 60_000, 2);
+    }
+
+    private Path positions(String... lignes) throws IOException {
+        return Files.write(dossier.newFile().toPath(), Arrays.asList(lignes), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return les colonnes de chaque ligne du fichier de sortie, par numéro de ligne d'entrée
+     */
+    private static Map<Integer, String[]> lire(Path sortie) throws IOException {
+        Map<Integer, String[]> resultats = new TreeMap<>();
+        for (String ligne : Files.readAllLines(sortie, StandardCharsets.UTF_8)) {
+            String[] colonnes = ligne.split("\t");
+            assertTrue(ligne, resultats.put(Integer.parseInt(colonnes[0]), Arrays.copyOfRange(colonnes, 1, colonnes.length)) == null);
+        }
+        return resultats;
+    }
+}
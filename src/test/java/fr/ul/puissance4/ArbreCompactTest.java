@@ -0,0 +1,64 @@
+package fr.ul.puissance4;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArbreCompactTest {
+    @Test
+    public void coupGagnantProuve() {
+        ArbreCompact arbre = new ArbreCompact(1 << 12);
+        arbre.reinitialiser(Position.depuisCoups("171717").versEtat());
+        StatistiquesRecherche statistiques = new StatistiquesRecherche();
+        arbre.iterer(new Simulateur(1), Noeud.C, 10_000, statistiques);
+
+        // la racine est prouvée bien avant la fin des itérations
+        assertTrue(statistiques.getIterations() < 10_000);
+        int[] simus = new int[Etat.COLONNE];
+        int[] victoires = new int[Etat.COLONNE];
+        Preuve[] preuves = new Preuve[Etat.COLONNE];
+        arbre.cumulerRacine(simus, victoires, preuves);
+        assertEquals(Preuve.VICTOIRE, preuves[0]);
+        assertEquals(0, Etat.choisirColonne(simus, victoires, preuves, true));
+    }
+
+    /**
+     * Une fois plein, l'arbre ne se développe plus mais chaque itération compte toujours pour un enfant de la racine.
+     */
+    @Test
+    public void capaciteRespectee() {
+        ArbreCompact arbre = new ArbreCompact(50);
+        arbre.reinitialiser(new Etat(Etat.COMPUTER_PLAYER));
+        StatistiquesRecherche statistiques = new StatistiquesRecherche();
+        arbre.iterer(new Simulateur(2), Noeud.C, 2000, statistiques);
+
+        assertTrue(arbre.getTaille() <= arbre.getCapacite());
+        assertEquals(2000, statistiques.getIterations());
+        int[] simus = new int[Etat.COLONNE];
+        arbre.cumulerRacine(simus, new int[Etat.COLONNE], new Preuve[Etat.COLONNE]);
+        int total = 0;
+        for (int s : simus)
+            total += s;
+        assertEquals(2000, total);
+    }
+
+    @Test
+    public void coupGagnantJoueAvecDesArbresCompacts() {
+        Parametres parametres = EtatTest.parametres(2, Parallelisme.RACINE);
+        parametres.setTailleArbreCompact(1 << 12);
+        Etat etat = Position.depuisCoups("171717").versEtat();
+        etat.ordijoue_mcts(200, parametres);
+        assertEquals(FinDePartie.ORDI_GAGNE, etat.testFin());
+    }
+
+    @Test
+    public void reinitialisationVideLArbre() {
+        ArbreCompact arbre = new ArbreCompact(1000);
+        arbre.reinitialiser(new Etat());
+        arbre.iterer(new Simulateur(3), Noeud.C, 100, new StatistiquesRecherche());
+        assertTrue(arbre.getTaille() > 1);
+        arbre.reinitialiser(new Etat());
+        assertEquals(1, arbre.getTaille());
+    }
+}
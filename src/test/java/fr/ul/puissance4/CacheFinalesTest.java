@@ -0,0 +1,77 @@
+package fr.ul.puissance4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CacheFinalesTest {
+    @Rule
+    public TemporaryFolder dossier = new TemporaryFolder();
+
+    @Test
+    public void solutionRetrouvee() {
+        CacheFinales cache = CacheFinales.ouvrir(dossier.getRoot().toPath().resolve("finales.bin"), 1);
+        Etat etat = Position.depuisCoups("1234").versEtat();
+        assertNull(cache.chercher(etat));
+
+        cache.ajouter(etat, new Solveur.Solution(5, -12));
+        Solveur.Solution solution = cache.chercher(etat);
+        assertNotNull(solution);
+        assertEquals(5, solution.getColonne());
+        assertEquals(-1, solution.getScore()); // seul le signe est gardé
+
+        // la position symétrique a la solution symétrique
+        solution = cache.chercher(Position.depuisCoups("7654").versEtat());
+        assertEquals(1, solution.getColonne());
+        assertEquals(-1, solution.getScore());
+    }
+
+    @Test
+    public void solutionsConserveesDansLeFichier() {
+        Path fichier = dossier.getRoot().toPath().resolve("finales.bin");
+        CacheFinales cache = CacheFinales.ouvrir(fichier, 1);
+        cache.ajouter(Position.depuisCoups("44").versEtat(), new Solveur.Solution(3, 0));
+        cache.ajouter(Position.depuisCoups("445").versEtat(), new Solveur.Solution(2, 7));
+
+        // un fichier existant garde sa taille
+        cache = CacheFinales.ouvrir(fichier, 64);
+        assertEquals(1024 * 1024 / Long.BYTES, cache.getCapacite());
+        assertEquals(0, cache.chercher(Position.depuisCoups("44").versEtat()).getScore());
+        assertEquals(1, cache.chercher(Position.depuisCoups("445").versEtat()).getScore());
+        assertEquals(2, cache.chercher(Position.depuisCoups("445").versEtat()).getColonne());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fichierInvalideRefuse() throws IOException {
+        Path fichier = dossier.newFile("invalide.bin").toPath();
+        Files.write(fichier, new byte[Long.BYTES * 17]);
+        CacheFinales.ouvrir(fichier, 1);
+    }
+
+    /**
+     * Une position résolue par une partie est jouée immédiatement par la suivante.
+     */
+    @Test
+    public void positionResolueRejoueeDepuisLeCache() {
+        Parametres parametres = EtatTest.parametres(1, Parallelisme.RACINE);
+        parametres.setFichierFinales(dossier.getRoot().toPath().resolve("finales.bin").toString());
+        parametres.setSeuilSolveur(Etat.LIGNE * Etat.COLONNE);
+
+        Etat etat = Position.depuisCoups("171717").versEtat();
+        etat.ordijoue_mcts(10_000, parametres);
+        assertEquals(StatistiquesRecherche.Origine.SOLVEUR, etat.getDerniereRecherche().getOrigine());
+
+        etat = Position.depuisCoups("171717").versEtat();
+        etat.ordijoue_mcts(10_000, parametres);
+        assertEquals(StatistiquesRecherche.Origine.CACHE, etat.getDerniereRecherche().getOrigine());
+        assertEquals(FinDePartie.ORDI_GAGNE, etat.testFin());
+    }
+}
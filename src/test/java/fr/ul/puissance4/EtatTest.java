@@ -0,0 +1,323 @@
+package fr.ul.puissance4;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EtatTest {
+    /**
+     * Joue une partie aléatoire en tenant à côté un plateau de caractères, rempli case par case : l'état doit
+     * afficher le même plateau et trouver la même fin de partie qu'un parcours naïf de ce plateau.
+     */
+    @Test
+    public void plateauIdentiqueAUneGrilleNaive() {
+        Random alea = new Random(1);
+        for (int partie = 0; partie < 2000; partie++) {
+            Etat etat = new Etat();
+            char[][] grille = grilleVide();
+            FinDePartie fin = FinDePartie.NON;
+            while (fin == FinDePartie.NON) {
+                int colonne = alea.nextInt(Etat.COLONNE);
+                char pion = etat.getJoueur() == Etat.COMPUTER_PLAYER ? 'X' : 'O';
+                if (!etat.jouerCoup(new Coup(colonne))) {
+                    assertTrue("colonne " + colonne + " pleine", grille[0][colonne] != ' ');
+                    continue;
+                }
+                poser(grille, colonne, pion);
+                assertArrayEquals(grille, etat.getPlateau());
+                fin = etat.testFin();
+                assertEquals(finNaive(grille), fin);
+            }
+        }
+    }
+
+    /**
+     * Le test incrémental du dernier coup doit trouver la même fin de partie que le parcours naïf du plateau, et
+     * annuler chaque coup doit redonner exactement l'état d'avant.
+     */
+    @Test
+    public void finIncrementaleIdentiqueAuParcoursNaif() {
+        Random alea = new Random(2);
+        for (int partie = 0; partie < 2000; partie++) {
+            Etat etat = new Etat(alea.nextInt(2));
+            char[][] grille = grilleVide();
+            FinDePartie fin = FinDePartie.NON;
+            while (fin == FinDePartie.NON) {
+                int colonne = alea.nextInt(Etat.COLONNE);
+                if (!etat.peutJouer(colonne))
+                    continue;
+                char pion = etat.getJoueur() == Etat.COMPUTER_PLAYER ? 'X' : 'O';
+
+                Etat avant = etat.copieEtat();
+                fin = etat.jouerCoupEtTester(colonne);
+                etat.annulerCoup(colonne);
+                assertTrue(etat.memePosition(avant));
+                assertEquals(avant.getNbCoups(), etat.getNbCoups());
+
+                assertEquals(fin, etat.jouerCoupEtTester(colonne));
+                poser(grille, colonne, pion);
+                assertEquals(finNaive(grille), fin);
+            }
+        }
+    }
+
+    @Test
+    public void colonnePleineSansEffet() {
+        Etat etat = new Etat();
+        for (int i = 0; i < Etat.LIGNE; i++)
+            etat.jouerCoupEtTester(6);
+        Etat avant = etat.copieEtat();
+        assertNull(etat.jouerCoupEtTester(6));
+        assertTrue(etat.memePosition(avant));
+    }
+
+    @Test
+    public void colonneInexistanteRefusee() {
+        Etat etat = new Etat();
+        assertFalse(etat.jouerCoup(new Coup(-1)));
+        assertFalse(etat.jouerCoup(new Coup(Etat.COLONNE)));
+        assertFalse(etat.jouerCoup(null));
+        assertEquals(0, etat.getNbCoups());
+    }
+
+    @Test
+    public void colonnePleineRefusee() {
+        Etat etat = new Etat();
+        for (int i = 0; i < Etat.LIGNE; i++)
+            assertTrue(etat.jouerCoup(new Coup(0)));
+        assertFalse(etat.peutJouer(0));
+        assertFalse(etat.jouerCoup(new Coup(0)));
+        assertEquals(Etat.LIGNE, etat.getNbCoups());
+    }
+
+    @Test
+    public void copieIndependante() {
+        Etat etat = new Etat();
+        etat.jouerCoup(new Coup(3));
+        Etat copie = etat.copieEtat();
+        copie.jouerCoup(new Coup(3));
+        assertEquals(1, etat.getNbCoups());
+        assertEquals(' ', etat.getPlateau()[Etat.LIGNE - 2][3]);
+        assertEquals('O', copie.getPlateau()[Etat.LIGNE - 2][3]);
+    }
+
+    /**
+     * Le masque, le tableau et la liste des coups possibles donnent les mêmes colonnes, une seule fois chacune,
+     * quel que soit le nombre de cases vides.
+     */
+    @Test
+    public void coupsPossiblesUneFoisParColonne() {
+        Random alea = new Random(3);
+        for (int partie = 0; partie < 500; partie++) {
+            Etat etat = new Etat();
+            int[] colonnes = new int[Etat.COLONNE];
+            while (etat.testFin() == FinDePartie.NON) {
+                int masque = etat.colonnesJouables();
+                int n = etat.colonnesJouables(colonnes);
+                List<Coup> coups = etat.coupsPossibles();
+                assertEquals(Integer.bitCount(masque), n);
+                assertEquals(n, coups.size());
+                for (int k = 0; k < n; k++) {
+                    assertTrue(etat.peutJouer(colonnes[k]));
+                    assertTrue((masque & 1 << colonnes[k]) != 0);
+                    assertSame(Coup.de(colonnes[k]), coups.get(k));
+                }
+                etat.jouerCoupEtTester(colonnes[alea.nextInt(n)]);
+            }
+        }
+    }
+
+    /**
+     * Avec un arbre par thread, chaque arbre est développé par son thread et les statistiques des colonnes sont
+     * additionnées sur tous les arbres.
+     */
+    @Test
+    public void rechercheParalleleALaRacine() {
+        Parametres parametres = parametres(3, Parallelisme.RACINE);
+        Etat etat = Position.depuisCoups("3435").versEtat();
+        StatistiquesRecherche statistiques = new StatistiquesRecherche();
+        Noeud[] racines = etat.rechercher(300, parametres, null, null, statistiques);
+
+        assertEquals(3, racines.length);
+        long simus = 0;
+        int[] parColonne = new int[Etat.COLONNE];
+        for (Noeud racine : racines) {
+            assertTrue(racine.getNb_simus() > 0);
+            simus += racine.getNb_simus();
+            for (int j = 0; j < Etat.COLONNE; j++)
+                parColonne[j] += racine.enfantEnColonne(j) == null ? 0 : racine.enfantEnColonne(j).getNb_simus();
+        }
+        assertEquals(statistiques.getIterations(), simus);
+        assertArrayEquals(parColonne, statistiques.getSimusRacine());
+    }
+
+    @Test
+    public void coupGagnantTrouveParPlusieursArbres() {
+        Etat etat = Position.depuisCoups("171717").versEtat();
+        etat.ordijoue_mcts(200, parametres(2, Parallelisme.RACINE));
+        assertEquals(FinDePartie.ORDI_GAGNE, etat.testFin());
+    }
+    /**
+     * Plusieurs threads développent le même arbre : aucune simulation ne doit être perdue par les mises à jour
+     * concurrentes des statistiques.
+     */
+    @Test
+    public void rechercheParalleleDansLArbre() {
+        Parametres parametres = parametres(4, Parallelisme.ARBRE);
+        Etat etat = Position.depuisCoups("3435").versEtat();
+        StatistiquesRecherche statistiques = new StatistiquesRecherche();
+        Noeud[] racines = etat.rechercher(300, parametres, null, null, statistiques);
+
+        assertEquals(1, racines.length);
+        Noeud racine = racines[0];
+        assertEquals(statistiques.getIterations(), racine.getNb_simus());
+        int simusEnfants = 0;
+        for (Noeud enfant : racine.getEnfants())
+            simusEnfants += enfant.getNb_simus();
+        assertEquals(racine.getNb_simus(), simusEnfants);
+    }
+
+    @Test
+    public void coupGagnantTrouveParPlusieursThreadsDansLArbre() {
+        Etat etat = Position.depuisCoups("171717").versEtat();
+        etat.ordijoue_mcts(200, parametres(4, Parallelisme.ARBRE));
+        assertEquals(FinDePartie.ORDI_GAGNE, etat.testFin());
+    }
+
+    /**
+     * Le sous-arbre du coup joué par l'humain est repris au coup suivant de l'ordinateur, avec un arbre ou plusieurs.
+     */
+    @Test
+    public void arbreReprisApresLeCoupDeLHumain() {
+        for (int nbThreads = 1; nbThreads <= 2; nbThreads++) {
+            Parametres parametres = parametres(nbThreads, Parallelisme.RACINE);
+            parametres.setReutiliserArbre(true);
+            Etat etat = new Etat(Etat.COMPUTER_PLAYER);
+            etat.ordijoue_mcts(200, parametres);
+            assertEquals(0, etat.getDerniereRecherche().getSimulationsReprises());
+            etat.jouerCoup(new Coup(3));
+            etat.ordijoue_mcts(200, parametres);
+            assertTrue(etat.getDerniereRecherche().getSimulationsReprises() > 0);
+        }
+    }
+
+    @Test
+    public void arbreOublieSansReutilisation() {
+        Parametres parametres = parametres(1, Parallelisme.RACINE);
+        Etat etat = new Etat(Etat.COMPUTER_PLAYER);
+        etat.ordijoue_mcts(200, parametres);
+        etat.jouerCoup(new Coup(3));
+        etat.ordijoue_mcts(200, parametres);
+        assertEquals(0, etat.getDerniereRecherche().getSimulationsReprises());
+    }
+
+    /**
+     * La racine appartient au joueur qui vient de jouer, y compris quand l'humain a le trait (réflexion pendant son
+     * temps).
+     */
+    @Test
+    public void racineDuPointDeVueDuDernierJoueur() {
+        assertEquals(Etat.HUMAN_PLAYER, new Etat(Etat.COMPUTER_PLAYER).nouvelleRacine().getJoueur());
+        assertEquals(Etat.COMPUTER_PLAYER, new Etat(Etat.HUMAN_PLAYER).nouvelleRacine().getJoueur());
+
+        // l'humain a le trait et peut gagner dans la deuxième colonne : ce coup est prouvé gagnant pour lui
+        Etat position = Position.depuisCoups("212121").versEtat();
+        Etat etat = new Etat();
+        etat.charger(position.getPionsHumain(), position.getPionsOrdi(), Etat.HUMAN_PLAYER);
+        Noeud racine = etat.nouvelleRacine();
+        assertEquals(Etat.COMPUTER_PLAYER, racine.getJoueur());
+        assertEquals(Preuve.VICTOIRE, racine.obtenirEnfant(Coup.de(1)).getPreuve());
+        assertEquals(FinDePartie.HUMAIN_GAGNE, racine.obtenirEnfant(Coup.de(1)).resultatProuve());
+    }
+
+    /**
+     * Les arbres développés pendant le temps de l'humain sont repris au coup suivant de l'ordinateur, plus fournis
+     * que sans réflexion.
+     */
+    @Test
+    public void reflexionPendantLeTempsDeLAdversaire() {
+        long[] reprises = new long[2];
+        for (int k = 0; k < 2; k++) {
+            Parametres parametres = parametres(1, Parallelisme.RACINE);
+            parametres.setReutiliserArbre(true);
+            parametres.setTempsAdversaire(k == 0 ? 0 : 400);
+            Etat etat = new Etat(Etat.COMPUTER_PLAYER);
+            etat.ordijoue_mcts(100, parametres);
+            etat.reflechir(parametres);
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            etat.jouerCoup(new Coup(3));
+            etat.ordijoue_mcts(100, parametres);
+            reprises[k] = etat.getDerniereRecherche().getSimulationsReprises();
+        }
+        assertTrue(reprises[0] > 0);
+        assertTrue(reprises[1] > 2 * reprises[0]);
+    }
+
+    static Parametres parametres(int nbThreads, Parallelisme parallelisme) {
+        Parametres parametres = new Parametres();
+        parametres.setNbThreads(nbThreads);
+        parametres.setParallelisme(parallelisme);
+        parametres.setAffichage(false);
+        parametres.setJournal(false);
+        return parametres;
+    }
+
+    static char[][] grilleVide() {
+        char[][] grille = new char[Etat.LIGNE][Etat.COLONNE];
+        for (char[] ligne : grille)
+            Arrays.fill(ligne, ' ');
+        return grille;
+    }
+
+    /**
+     * Pose un pion dans la plus basse case vide d'une colonne (ligne 0 en haut).
+     */
+    static void poser(char[][] grille, int colonne, char pion) {
+        int i = Etat.LIGNE - 1;
+        while (grille[i][colonne] != ' ')
+            i--;
+        grille[i][colonne] = pion;
+    }
+
+    /**
+     * Cherche un alignement de 4 pions en partant de chaque case dans les 4 directions.
+     */
+    static FinDePartie finNaive(char[][] grille) {
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        boolean plein = true;
+        for (int i = 0; i < Etat.LIGNE; i++) {
+            for (int j = 0; j < Etat.COLONNE; j++) {
+                char c = grille[i][j];
+                if (c == ' ') {
+                    plein = false;
+                    continue;
+                }
+                for (int[] d : directions) {
+                    int n = 1;
+                    while (n < 4) {
+                        int ii = i + n * d[0], jj = j + n * d[1];
+                        if (ii < 0 || ii >= Etat.LIGNE || jj < 0 || jj >= Etat.COLONNE || grille[ii][jj] != c)
+                            break;
+                        n++;
+                    }
+                    if (n == 4)
+                        return c == 'X' ? FinDePartie.ORDI_GAGNE : FinDePartie.HUMAIN_GAGNE;
+                }
+            }
+        }
+        return plein ? FinDePartie.MATCH_NUL : FinDePartie.NON;
+    }
+}
@@ -0,0 +1,71 @@
+package fr.ul.puissance4;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GestionTempsTest {
+    @Test
+    public void budgetSelonLAvancement() {
+        assertEquals(400, GestionTemps.budget(1000, 0));
+        assertEquals(1000, GestionTemps.budget(1000, 8));
+        assertEquals(1000, GestionTemps.budget(1000, Etat.LIGNE * Etat.COLONNE - 12));
+        assertEquals(700, GestionTemps.budget(1000, Etat.LIGNE * Etat.COLONNE - 6));
+        for (int n = 0; n < Etat.LIGNE * Etat.COLONNE; n++) {
+            long budget = GestionTemps.budget(1000, n);
+            assertTrue(budget >= 400 && budget <= 1000);
+        }
+    }
+
+    @Test
+    public void echeance() {
+        assertTrue(new GestionTemps(0, false).estEcoule(System.nanoTime()));
+        GestionTemps temps = new GestionTemps(60_000, false);
+        assertFalse(temps.estEcoule(System.nanoTime()));
+        temps.interrompre();
+        assertTrue(temps.estEcoule(System.nanoTime()));
+    }
+
+    /**
+     * À mi-temps, la recherche peut encore faire à peu près autant de simulations qu'elle en a déjà fait.
+     */
+    @Test
+    public void arretQuandLeCoupNePeutPlusChanger() {
+        GestionTemps temps = new GestionTemps(1000, true);
+        long miTemps = System.nanoTime() + 500_000_000L;
+        assertTrue(temps.peutArreter(1600, 100, 1000, miTemps));
+        assertFalse(temps.peutArreter(900, 100, 1000, miTemps));
+        assertTrue(temps.peutArreter(new int[]{10, 1600, 0, 100, 0, 0, 0}, 1000, miTemps));
+        assertFalse(temps.peutArreter(new int[]{10, 1600, 0, 1000, 0, 0, 0}, 1000, miTemps));
+
+        assertFalse(new GestionTemps(1000, false).peutArreter(1600, 100, 1000, miTemps));
+    }
+
+    /**
+     * Tous les coups sauf la parade sont vite prouvés perdants : seule la parade est encore visitée, et la recherche
+     * s'arrête bien avant l'échéance, les visites étant additionnées sur les deux arbres.
+     */
+    @Test
+    public void rechercheArreteeAvantLEcheance() {
+        Parametres parametres = EtatTest.parametres(2, Parallelisme.RACINE);
+        parametres.setGestionTemps(true);
+        long debut = System.nanoTime();
+        StatistiquesRecherche statistiques = new StatistiquesRecherche();
+        Position.depuisCoups("123252").versEtat().rechercher(2000, parametres, null, null, statistiques);
+        assertTrue((System.nanoTime() - debut) / 1_000_000 < 1600);
+        assertEquals(1, Etat.choisirColonne(statistiques.getSimusRacine(), statistiques.getVictoiresRacine(), statistiques.getPreuvesRacine(), true));
+    }
+
+    @Test
+    public void coupForceJoueSansReflechir() {
+        Parametres parametres = EtatTest.parametres(1, Parallelisme.RACINE);
+        parametres.setGestionTemps(true);
+        Etat etat = Position.depuisCoups("123252").versEtat();
+        etat.ordijoue_mcts(60_000, parametres);
+        assertEquals(StatistiquesRecherche.Origine.FORCE, etat.getDerniereRecherche().getOrigine());
+        assertEquals(1, etat.getDerniereRecherche().getCoup());
+        assertEquals(0, etat.getDerniereRecherche().getIterations());
+    }
+}
@@ -0,0 +1,217 @@
+package fr.ul.puissance4;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GrilleTest {
+    @Test
+    public void dimensionsLues() {
+        assertEquals(new Dimensions(9, 7, 4), Dimensions.lire("9x7"));
+        assertEquals(new Dimensions(10, 8, 5), Dimensions.lire(" 10x8x5 "));
+        assertEquals(Dimensions.STANDARD, Dimensions.lire("7x6x4"));
+        assertTrue(Dimensions.STANDARD.tientSurUnMot());
+        assertFalse(new Dimensions(10, 8, 5).tientSurUnMot());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void alignementImpossibleRefuse() {
+        Dimensions.lire("5x4x6");
+    }
+
+    /**
+     * Sur le plateau standard, une grille joue exactement comme un {@link Etat}.
+     */
+    @Test
+    public void memesPartiesQuUnEtat() {
+        Random alea = new Random(6);
+        for (int partie = 0; partie < 1000; partie++) {
+            Etat etat = new Etat(Etat.COMPUTER_PLAYER);
+            Grille grille = Grille.creer(Dimensions.STANDARD);
+            FinDePartie fin = FinDePartie.NON;
+            while (fin == FinDePartie.NON) {
+                int colonne = alea.nextInt(Etat.COLONNE);
+                fin = etat.jouerCoupEtTester(colonne);
+                assertEquals(fin, grille.jouer(colonne));
+                if (fin == null) {
+                    fin = FinDePartie.NON;
+                    continue;
+                }
+                assertArrayEquals(etat.getPlateau(), grille.getPlateau());
+                assertEquals(etat.getNbCoups(), grille.getNbCoups());
+            }
+        }
+    }
+
+    /**
+     * Les deux représentations trouvent les mêmes fins de partie qu'un parcours naïf du plateau, qu'il tienne ou non
+     * sur un mot.
+     */
+    @Test
+    public void finIdentiqueAuParcoursNaif() {
+        Random alea = new Random(7);
+        Dimensions[] toutes = {Dimensions.STANDARD, new Dimensions(9, 6, 4), new Dimensions(8, 7, 5),
+                new Dimensions(10, 8, 5), new Dimensions(16, 12, 6), new Dimensions(4, 4, 3)};
+        for (Dimensions dimensions : toutes) {
+            for (int partie = 0; partie < 300; partie++) {
+                Grille grille = Grille.creer(dimensions);
+                Grille mots = new GrilleMots(dimensions);
+                FinDePartie fin = FinDePartie.NON;
+                while (fin == FinDePartie.NON) {
+                    int colonne = alea.nextInt(dimensions.getColonnes());
+                    if (!grille.peutJouer(colonne))
+                        continue;
+                    fin = grille.jouer(colonne);
+                    assertEquals(fin, mots.jouer(colonne));
+                    assertEquals(fin, grille.getFin());
+                    char[][] plateau = grille.getPlateau();
+                    assertArrayEquals(plateau, mots.getPlateau());
+                    assertEquals(dimensions + "\n" + grille, finNaive(plateau, dimensions.getAlignement()), fin);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void copieIndependante() {
+        Dimensions dimensions = new Dimensions(10, 8, 5);
+        Grille grille = Grille.depuisCoups(dimensions, "1 10 5");
+        Grille copie = grille.copie();
+        copie.jouer(4);
+        assertEquals(3, grille.getNbCoups());
+        assertEquals(4, copie.getNbCoups());
+        assertEquals(' ', grille.getPlateau()[dimensions.getLignes() - 2][4]);
+        assertEquals('O', copie.getPlateau()[dimensions.getLignes() - 2][4]);
+        assertEquals(grille.getJoueur(), 1 - copie.getJoueur());
+    }
+
+    @Test
+    public void coupsLusSelonLeNombreDeColonnes() {
+        Grille petite = Grille.depuisCoups(new Dimensions(9, 7, 4), "4 45 9");
+        assertEquals('X', petite.getPlateau()[6][3]);
+        assertEquals('O', petite.getPlateau()[5][3]);
+        assertEquals('X', petite.getPlateau()[6][4]);
+        assertEquals('O', petite.getPlateau()[6][8]);
+
+        Grille grande = Grille.depuisCoups(new Dimensions(12, 6, 4), "12 1 10");
+        assertEquals('X', grande.getPlateau()[5][11]);
+        assertEquals('O', grande.getPlateau()[5][0]);
+        assertEquals('X', grande.getPlateau()[5][9]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void colonneHorsPlateauRefusee() {
+        Grille.depuisCoups(new Dimensions(10, 8, 5), "3 11");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void coupApresLaFinRefuse() {
+        Grille.depuisCoups(Dimensions.STANDARD, "12121212");
+    }
+
+    @Test
+    public void partiesAleatoiresJoueesJusquAuBout() {
+        Dimensions dimensions = new Dimensions(10, 8, 5);
+        Grille depart = Grille.depuisCoups(dimensions, "5 6");
+        SimulateurGrille a = new SimulateurGrille(dimensions, 42), b = new SimulateurGrille(dimensions, 42);
+        for (int i = 0; i < 500; i++) {
+            FinDePartie fin = a.simuler(depart);
+            assertEquals(fin, b.simuler(depart));
+            assertTrue(fin != FinDePartie.NON);
+        }
+        assertEquals(2, depart.getNbCoups());
+    }
+
+    @Test
+    public void coupGagnantProuveParLArbre() {
+        Dimensions dimensions = new Dimensions(10, 8, 5);
+        ArbreGrille arbre = new ArbreGrille(dimensions, 1 << 12);
+        arbre.reinitialiser(Grille.depuisCoups(dimensions, "1 10 1 10 1 10 1 10"));
+        StatistiquesRecherche statistiques = new StatistiquesRecherche();
+        assertTrue(arbre.developper(new SimulateurGrille(dimensions, 1), Noeud.C, new GestionTemps(60_000, false), 100_000, statistiques));
+        assertTrue(statistiques.getIterations() < 100_000);
+        assertTrue(arbre.getTaille() <= arbre.getCapacite());
+
+        int[] simus = new int[10];
+        Preuve[] preuves = new Preuve[10];
+        arbre.cumulerRacine(simus, new int[10], preuves);
+        assertEquals(Preuve.VICTOIRE, preuves[0]);
+    }
+
+    @Test
+    public void coupGagnantTrouveParLeMoteur() throws Exception {
+        Dimensions dimensions = new Dimensions(10, 8, 5);
+        Grille grille = Grille.depuisCoups(dimensions, "1 10 1 10 1 10 1 10");
+        ResultatRecherche resultat = new Moteur(new Parametres()).analyser(grille, 60_000).get(30, TimeUnit.SECONDS);
+        assertEquals(0, resultat.getCoup());
+        assertEquals(10, resultat.getVisites().length);
+        assertEquals(Preuve.VICTOIRE, resultat.getPreuves()[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void grilleFinieRefusee() {
+        new Moteur(new Parametres()).analyser(Grille.depuisCoups(Dimensions.STANDARD, "1212121"), 100);
+    }
+
+    @Test
+    public void protocoleSurUnGrandPlateau() {
+        ByteArrayOutputStream octets = new ByteArrayOutputStream();
+        Protocole protocole = new Protocole(new Moteur(new Parametres()), new PrintStream(octets, true, StandardCharsets.UTF_8));
+        for (String commande : new String[]{"setoption name dimensions value 10x8x5", "position startpos moves 1 10 1 10 1 10 1 10",
+                "go movetime 10000", "stop", "ucinewgame", "position 11"})
+            protocole.traiter(commande);
+        String[] lignes = new String(octets.toByteArray(), StandardCharsets.UTF_8).split("\\R");
+        assertEquals("bestmove 1", lignes[lignes.length - 2]);
+        assertEquals("info string Colonne 11 non jouable dans 11 ", lignes[lignes.length - 1]);
+    }
+
+    @Test
+    public void grilleVide() {
+        Grille grille = Grille.creer(new Dimensions(10, 8, 5));
+        assertEquals(FinDePartie.NON, grille.getFin());
+        assertEquals(Etat.COMPUTER_PLAYER, grille.getJoueur());
+        assertNull(grille.jouer(10));
+        assertNull(grille.jouer(-1));
+        assertEquals(0, grille.getNbCoups());
+    }
+
+    /**
+     * Cherche un alignement en partant de chaque case dans les 4 directions.
+     */
+    static FinDePartie finNaive(char[][] plateau, int alignement) {
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        int lignes = plateau.length, colonnes = plateau[0].length;
+        boolean plein = true;
+        for (int i = 0; i < lignes; i++) {
+            for (int j = 0; j < colonnes; j++) {
+                char c = plateau[i][j];
+                if (c == ' ') {
+                    plein = false;
+                    continue;
+                }
+                for (int[] d : directions) {
+                    int n = 1;
+                    while (n < alignement) {
+                        int ii = i + n * d[0], jj = j + n * d[1];
+                        if (ii < 0 || ii >= lignes || jj < 0 || jj >= colonnes || plateau[ii][jj] != c)
+                            break;
+                        n++;
+                    }
+                    if (n == alignement)
+                        return c == 'X' ? FinDePartie.ORDI_GAGNE : FinDePartie.HUMAIN_GAGNE;
+                }
+            }
+        }
+        return plein ? FinDePartie.MATCH_NUL : FinDePartie.NON;
+    }
+}
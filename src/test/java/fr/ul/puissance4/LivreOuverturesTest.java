@@ -0,0 +1,109 @@
+package fr.ul.puissance4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class LivreOuverturesTest {
+    @Rule
+    public TemporaryFolder dossier = new TemporaryFolder();
+
+    @Test
+    public void cleSymetriqueDeLaPositionMiroir() {
+        long cle = Position.depuisCoups("1234").versEtat().getClePosition();
+        long miroir = Position.depuisCoups("7654").versEtat().getClePosition();
+        assertNotEquals(cle, miroir);
+        assertEquals(miroir, Etat.symetrique(cle));
+        assertEquals(cle, Etat.symetrique(miroir));
+    }
+
+    /**
+     * Deux positions ont la même clé si et seulement si elles ont le même plateau et le même joueur au trait.
+     */
+    @Test
+    public void clePositionSansCollision() {
+        Random alea = new Random(5);
+        Map<Long, String> vues = new HashMap<>();
+        for (int partie = 0; partie < 2000; partie++) {
+            Etat etat = new Etat();
+            while (etat.testFin() == FinDePartie.NON && etat.getNbCoups() < 12) {
+                int colonne = alea.nextInt(Etat.COLONNE);
+                if (!etat.jouerCoup(new Coup(colonne)))
+                    continue;
+                String plateau = etat.getJoueur() + Arrays.deepToString(etat.getPlateau());
+                String deja = vues.putIfAbsent(etat.getClePosition(), plateau);
+                if (deja != null)
+                    assertEquals(deja, plateau);
+            }
+        }
+    }
+
+    @Test
+    public void coupLuDansLeFichier() throws IOException {
+        Path fichier = ecrireLivre(Position.depuisCoups(""), 3, Position.depuisCoups("1"), 5);
+        LivreOuvertures livre = LivreOuvertures.ouvrir(fichier);
+        assertEquals(2, livre.getTaille());
+        assertEquals(3, livre.coup(new Etat()));
+        assertEquals(5, livre.coup(Position.depuisCoups("1").versEtat()));
+        // la position symétrique joue le coup symétrique
+        assertEquals(1, livre.coup(Position.depuisCoups("7").versEtat()));
+        assertEquals(-1, livre.coup(Position.depuisCoups("44").versEtat()));
+    }
+
+    @Test
+    public void fichierAbsentDonneUnLivreVide() {
+        LivreOuvertures livre = LivreOuvertures.ouvrir(dossier.getRoot().toPath().resolve("absent.bin"));
+        assertEquals(0, livre.getTaille());
+        assertEquals(-1, livre.coup(new Etat()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fichierInvalideRefuse() throws IOException {
+        Path fichier = dossier.newFile("invalide.bin").toPath();
+        Files.write(fichier, new byte[2 * Long.BYTES]);
+        LivreOuvertures.ouvrir(fichier);
+    }
+
+    @Test
+    public void coupDuLivreJoueSansRecherche() throws IOException {
+        Path fichier = ecrireLivre(Position.depuisCoups("4"), 2);
+        Parametres parametres = EtatTest.parametres(1, Parallelisme.RACINE);
+        parametres.setFichierOuvertures(fichier.toString());
+        Etat etat = Position.depuisCoups("4").versEtat();
+        etat.ordijoue_mcts(10_000, parametres);
+        assertEquals(StatistiquesRecherche.Origine.LIVRE, etat.getDerniereRecherche().getOrigine());
+        assertEquals(Position.depuisCoups("43").versEtat().getClePosition(), etat.getClePosition());
+    }
+
+    /**
+     * Écrit un livre au format de {@link ConstructeurOuvertures}, à partir de paires (position, colonne).
+     */
+    private Path ecrireLivre(Object... positionsEtColonnes) throws IOException {
+        long[] entrees = new long[positionsEtColonnes.length / 2];
+        for (int i = 0; i < entrees.length; i++) {
+            long cle = ((Position) positionsEtColonnes[2 * i]).versEtat().getClePosition();
+            int colonne = (Integer) positionsEtColonnes[2 * i + 1];
+            long sym = Etat.symetrique(cle);
+            entrees[i] = sym < cle ? LivreOuvertures.entree(sym, Etat.COLONNE - 1 - colonne) : LivreOuvertures.entree(cle, colonne);
+        }
+        Arrays.sort(entrees);
+
+        ByteBuffer octets = ByteBuffer.allocate(Long.BYTES * (entrees.length + 1));
+        octets.putLong(LivreOuvertures.MAGIQUE);
+        for (long entree : entrees)
+            octets.putLong(entree);
+        return Files.write(dossier.newFile().toPath(), octets.array());
+    }
+}
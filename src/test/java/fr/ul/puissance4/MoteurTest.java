@@ -0,0 +1,114 @@
+package fr.ul.puissance4;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MoteurTest {
+    @Test
+    public void positionJoueeCoupParCoup() {
+        Position depart = Position.depuisCoups("44");
+        Position apres = depart.jouer(2);
+        assertEquals(2, depart.getNbCoups());
+        assertEquals(3, apres.getNbCoups());
+        assertEquals(Position.depuisCoups("443"), apres);
+        assertEquals(Position.depuisCoups("443").hashCode(), apres.hashCode());
+        assertNotEquals(Position.depuisCoups("434"), Position.depuisCoups("443"));
+        assertEquals(Position.depuisCoups("1234"), Position.depuisCoups("3214"));
+
+        // la position d'un état est vue du joueur qui y a le trait, quel qu'il soit
+        Etat etat = new Etat(Etat.HUMAN_PLAYER);
+        for (char c : "443".toCharArray())
+            etat.jouerCoup(new Coup(c - '1'));
+        assertEquals(apres, Position.de(etat));
+    }
+
+    @Test
+    public void finDePartieVueDuJoueurAuTrait() {
+        assertEquals(FinDePartie.NON, Position.depuisCoups("121212").getFin());
+        assertEquals(FinDePartie.HUMAIN_GAGNE, Position.depuisCoups("1212121").getFin());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void colonneInvalideRefusee() {
+        Position.depuisCoups("408");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void colonnePleineRefusee() {
+        Position.depuisCoups("1111111");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void coupApresLaFinRefuse() {
+        Position.depuisCoups("12121213");
+    }
+
+    @Test
+    public void coupGagnantTrouve() throws Exception {
+        Moteur moteur = new Moteur(new Parametres());
+        ResultatRecherche resultat = moteur.analyser(Position.depuisCoups("171717"), 60_000).get(30, TimeUnit.SECONDS);
+        assertEquals(0, resultat.getCoup());
+        assertEquals(Preuve.VICTOIRE, resultat.getPreuves()[0]);
+        assertEquals(0, resultat.getVariante()[0]);
+        assertTrue(resultat.isTermine());
+        assertTrue(resultat.getDuree() < TimeUnit.SECONDS.toNanos(30));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partieFinieRefusee() {
+        new Moteur(new Parametres()).analyser(Position.depuisCoups("1212121"), 100);
+    }
+
+    @Test
+    public void quotaDIterations() throws Exception {
+        Parametres parametres = new Parametres();
+        parametres.setQuotaIterations(1000);
+        ResultatRecherche resultat = new Moteur(parametres).analyser(Position.INITIALE, 60_000).get(30, TimeUnit.SECONDS);
+        assertEquals(1000, resultat.getIterations());
+        int visites = 0;
+        for (int v : resultat.getVisites())
+            visites += v;
+        assertEquals(1000, visites);
+    }
+
+    @Test
+    public void progressionPuisResultatFinal() throws Exception {
+        List<ResultatRecherche> intermediaires = new CopyOnWriteArrayList<>();
+        ResultatRecherche resultat = new Moteur(new Parametres())
+                .analyser(Position.INITIALE, 400, intermediaires::add).get(30, TimeUnit.SECONDS);
+        assertTrue(resultat.isTermine());
+        assertFalse(intermediaires.isEmpty());
+        long iterations = 0;
+        for (ResultatRecherche intermediaire : intermediaires) {
+            assertFalse(intermediaire.isTermine());
+            assertTrue(intermediaire.getIterations() >= iterations);
+            iterations = intermediaire.getIterations();
+        }
+        assertTrue(resultat.getIterations() >= iterations);
+    }
+
+    /**
+     * Une analyse interrompue rend son résultat courant, bien avant son échéance.
+     */
+    @Test
+    public void analyseInterrompue() throws Exception {
+        GestionTemps temps = new GestionTemps(600_000, false);
+        Moteur moteur = new Moteur(new Parametres());
+        CompletableFuture<ResultatRecherche> analyse = moteur.analyser(Position.INITIALE, temps, null);
+        Thread.sleep(200);
+        assertFalse(analyse.isDone());
+        temps.interrompre();
+        ResultatRecherche resultat = analyse.get(30, TimeUnit.SECONDS);
+        assertTrue(resultat.isTermine());
+        assertTrue(resultat.getIterations() > 0);
+    }
+}
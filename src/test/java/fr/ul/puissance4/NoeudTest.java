@@ -0,0 +1,120 @@
+package fr.ul.puissance4;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NoeudTest {
+    @Test
+    public void enfantsRetrouvesParColonne() {
+        Noeud racine = Position.depuisCoups("4").versEtat().nouvelleRacine();
+        for (int j = 0; j < Etat.COLONNE; j++) {
+            assertEquals(j, racine.selection().getColonne()); // les colonnes non explorées d'abord
+            Noeud enfant = racine.obtenirEnfant(Coup.de(j));
+            assertSame(enfant, racine.enfantEnColonne(j));
+            assertSame(enfant, racine.enfantAvecCoup(Coup.de(j)));
+            assertSame(enfant, racine.getEnfants(Coup.de(j)));
+            assertSame(enfant, racine.obtenirEnfant(Coup.de(j)));
+            assertSame(racine, enfant.getParent());
+            assertEquals(j, enfant.getCoup().getColonne());
+        }
+
+        List<Noeud> enfants = racine.getEnfants();
+        assertEquals(Etat.COLONNE, enfants.size());
+        for (int j = 0; j < Etat.COLONNE; j++)
+            assertEquals(j, enfants.get(j).getCoup().getColonne());
+        assertEquals(1 + Etat.COLONNE, racine.compterNoeuds());
+    }
+
+    @Test
+    public void colonnePleineJamaisSelectionnee() {
+        Noeud racine = Position.depuisCoups("111111").versEtat().nouvelleRacine();
+        assertEquals(1, racine.selection().getColonne());
+        for (int k = 0; k < 100; k++)
+            assertTrue(racine.developpement().getCoup().getColonne() != 0);
+        assertNull(racine.enfantEnColonne(0));
+    }
+
+    /**
+     * Un coup gagnant prouve l'enfant gagné et son parent perdu pour celui qui y a mené.
+     */
+    @Test
+    public void victoireEtDefaitePropagees() {
+        Noeud racine = Position.depuisCoups("171717").versEtat().nouvelleRacine();
+        Noeud gagnant = racine.obtenirEnfant(Coup.de(0));
+        assertEquals(Preuve.VICTOIRE, gagnant.getPreuve());
+        assertEquals(FinDePartie.ORDI_GAGNE, gagnant.resultatProuve());
+
+        assertTrue(racine.evaluerPreuve());
+        assertEquals(Preuve.DEFAITE, racine.getPreuve());
+        assertEquals(FinDePartie.ORDI_GAGNE, racine.resultatProuve());
+        assertNull(racine.selection()); // rien à explorer sous un noeud prouvé
+        assertFalse(racine.evaluerPreuve());
+    }
+
+    @Test
+    public void noeudGagneQuandTousLesCoupsPerdent() {
+        // l'ordinateur joue 1 3 5 et l'humain menace dans la colonne 2 : tout coup sauf 2 perd
+        Noeud racine = Position.depuisCoups("123252").versEtat().nouvelleRacine();
+        for (int j = 0; j < Etat.COLONNE; j++) {
+            Noeud enfant = racine.obtenirEnfant(Coup.de(j));
+            if (j != 1) {
+                assertTrue(enfant.obtenirEnfant(Coup.de(1)).estProuve());
+                assertTrue(enfant.evaluerPreuve());
+                assertEquals(Preuve.DEFAITE, enfant.getPreuve());
+            }
+            assertFalse(racine.evaluerPreuve());
+        }
+        assertEquals(Coup.de(1), racine.selection());
+    }
+
+    /**
+     * La recherche s'arrête dès que la racine est prouvée, et l'ordinateur bloque la menace sans test à part.
+     */
+    @Test
+    public void rechercheArreteeQuandLaRacineEstProuvee() {
+        Parametres parametres = EtatTest.parametres(1, Parallelisme.RACINE);
+        StatistiquesRecherche statistiques = new StatistiquesRecherche();
+        Noeud[] racines = Position.depuisCoups("171717").versEtat().rechercher(10_000, parametres, null, null, statistiques);
+        assertTrue(racines[0].estProuve());
+        assertEquals(Preuve.VICTOIRE, statistiques.getPreuvesRacine()[0]);
+        assertTrue(statistiques.getIterations() < 1000);
+
+        Etat etat = Position.depuisCoups("123252").versEtat();
+        etat.ordijoue_mcts(1000, parametres);
+        assertEquals(FinDePartie.NON, etat.testFin());
+        assertEquals('X', etat.getPlateau()[Etat.LIGNE - 4][1]);
+    }
+
+    /**
+     * Plusieurs threads qui créent le même enfant obtiennent tous le même noeud.
+     */
+    @Test
+    public void enfantCreeUneSeuleFois() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            for (int essai = 0; essai < 200; essai++) {
+                Noeud racine = new Etat().nouvelleRacine();
+                Future<?>[] creations = new Future<?>[4];
+                for (int t = 0; t < creations.length; t++)
+                    creations[t] = threads.submit(() -> racine.obtenirEnfant(Coup.de(3)));
+                Object enfant = creations[0].get();
+                for (Future<?> creation : creations)
+                    assertSame(enfant, creation.get());
+                assertSame(enfant, racine.enfantEnColonne(3));
+                assertEquals(1, racine.getEnfants().size());
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package fr.ul.puissance4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProtocoleTest {
+    private final ByteArrayOutputStream octets = new ByteArrayOutputStream();
+    private final Moteur moteur = new Moteur(new Parametres());
+    private final Protocole protocole = new Protocole(moteur, new PrintStream(octets, true, StandardCharsets.UTF_8));
+    @Rule
+    public TemporaryFolder dossier = new TemporaryFolder();
+    @Test
+    public void presentationEtOptions() {
+        List<String> lignes = executer("uci", "isready");
+        assertEquals("id name puissance4", lignes.get(0));
+        assertTrue(lignes.contains("option name dimensions type string default 7x6x4"));
+        assertTrue(lignes.contains("option name sauvegarde type string default <empty>"));
+        assertEquals("uciok", lignes.get(lignes.size() - 2));
+        assertEquals("readyok", lignes.get(lignes.size() - 1));
+    }
+
+    @Test
+    public void coupGagnantAnalyse() {
+        List<String> lignes = executer("position startpos moves 171717", "go movetime 10000", "stop");
+        assertEquals("bestmove 1", lignes.get(lignes.size() - 1));
+        String info = lignes.get(lignes.size() - 2);
+        assertTrue(info, info.matches("info time \\d+ nodes \\d+ winrate \\S+ score win pv 1.*"));
+    }
+
+    @Test
+    public void stopRendLeCoupAussitot() {
+        long debut = System.nanoTime();
+        List<String> lignes = executer("position 4 4", "go infinite", "stop");
+        assertTrue(System.nanoTime() - debut < 10_000_000_000L);
+        assertTrue(lignes.get(lignes.size() - 1).matches("bestmove [1-7]"));
+    }
+
+    @Test
+    public void optionsReglees() {
+        executer("setoption name exploration value 0.5", "setoption name quota value 2000",
+                "setoption name sauvegarde value mon arbre.bin");
+        assertEquals(0.5, moteur.getParametres().getExploration(), 0);
+        assertEquals(2000, moteur.getParametres().getQuotaIterations());
+        assertEquals("mon arbre.bin", moteur.getParametres().getFichierSauvegarde());
+        executer("setoption name sauvegarde value <empty>");
+        assertEquals(null, moteur.getParametres().getFichierSauvegarde());
+    }
+
+    @Test
+    public void commandesInvalidesSignalees() {
+        List<String> lignes = executer("avance", "setoption name quota value -1", "setoption name vitesse value 2",
+                "setoption quota", "position 48", "go", "isready");
+        assertEquals(Arrays.asList(
+                "info string Commande inconnue : avance",
+                "info string Quota négatif : -1",
+                "info string Option inconnue : vitesse",
+                "info string Usage : setoption name <option> value <valeur>",
+                "info string Colonne invalide '8' dans 48",
+                "info string Usage : go movetime <ms> | go infinite",
+                "readyok"), lignes);
+    }
+
+    @Test
+    public void uneSeuleAnalyseALaFois() {
+        List<String> lignes = executer("go infinite", "go movetime 100", "stop");
+        assertTrue(lignes.contains("info string Une analyse est déjà en cours"));
+        assertTrue(lignes.get(lignes.size() - 1).startsWith("bestmove"));
+    }
+
+    @Test
+    public void quitArreteLeMoteur() throws IOException {
+        assertTrue(protocole.traiter("isready"));
+        assertFalse(protocole.traiter("quit"));
+        protocole.executer(new BufferedReader(new StringReader("isready\nquit\nisready\n")));
+        assertEquals(Arrays.asList("readyok", "readyok"), lignes());
+    }
+
+    @Test
+    public void sauvegardesLimiteesAuRepertoire() {
+        Path repertoire = dossier.getRoot().toPath();
+        Protocole limite = new Protocole(moteur, new PrintStream(octets, true, StandardCharsets.UTF_8), repertoire);
+        for (String commande : new String[]{"setoption name sauvegarde value ../x", "setoption name sauvegarde value /tmp/x",
+                "setoption name sauvegarde value a b.bin", "uci"})
+            limite.traiter(commande);
+        List<String> lignes = lignes();
+        assertEquals("info string Nom de fichier invalide : ../x", lignes.get(0));
+        assertEquals("info string Nom de fichier invalide : /tmp/x", lignes.get(1));
+        assertEquals(repertoire.resolve("a b.bin").toString(), moteur.getParametres().getFichierSauvegarde());
+        // le chemin du répertoire n'est pas dévoilé
+        assertTrue(lignes.contains("option name sauvegarde type string default a b.bin"));
+    }
+
+    @Test
+    public void sauvegardesDesactivees() {
+        Protocole sans = new Protocole(moteur, new PrintStream(octets, true, StandardCharsets.UTF_8), null);
+        sans.traiter("setoption name sauvegarde value arbre.bin");
+        sans.traiter("uci");
+        List<String> lignes = lignes();
+        assertEquals("info string Sauvegarde désactivée", lignes.get(0));
+        assertEquals(null, moteur.getParametres().getFichierSauvegarde());
+        assertFalse(lignes.stream().anyMatch(ligne -> ligne.startsWith("option name sauvegarde")));
+    }
+
+    private List<String> executer(String... commandes) {
+        for (String commande : commandes)
+            protocole.traiter(commande);
+        return lignes();
+    }
+
+    private List<String> lignes() {
+        return Arrays.asList(new String(octets.toByteArray(), StandardCharsets.UTF_8).split("\\R"));
+    }
+}
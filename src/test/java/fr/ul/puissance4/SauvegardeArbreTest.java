@@ -0,0 +1,153 @@
+package fr.ul.puissance4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SauvegardeArbreTest {
+    @Rule
+    public TemporaryFolder dossier = new TemporaryFolder();
+
+    @Test
+    public void arbreRelu() throws Exception {
+        Etat etat = Position.depuisCoups("4453").versEtat();
+        Noeud racine = developper(etat, 3000);
+        Path fichier = dossier.getRoot().toPath().resolve("arbre.bin");
+        int n = SauvegardeArbre.sauvegarder(racine, fichier);
+        assertEquals(racine.compterNoeuds(), n);
+        assertEquals(SauvegardeArbre.ENTETE + (long) n * SauvegardeArbre.NOEUD, Files.size(fichier));
+        assertTrue(Files.notExists(fichier.resolveSibling("arbre.bin.tmp")));
+
+        for (SauvegardeArbre sauvegarde : new SauvegardeArbre[]{SauvegardeArbre.ouvrir(fichier), SauvegardeArbre.lire(fichier)}) {
+            assertEquals(n, sauvegarde.getNbNoeuds());
+            assertEquals(n, sauvegarde.getTaille(sauvegarde.getRacine()));
+            assertEquals(Position.de(etat), Position.de(sauvegarde.getEtat()));
+            Noeud relu = sauvegarde.charger(n);
+            assertEquals(racine.getJoueur(), relu.getJoueur());
+            assertEquals(n, relu.compterNoeuds());
+            memeArbre(racine, relu);
+        }
+    }
+
+    /**
+     * Une reprise limitée garde le haut de l'arbre, avec les statistiques de tout le sous-arbre de chaque noeud.
+     */
+    @Test
+    public void chargementLimiteAuHautDeLArbre() {
+        Noeud racine = developper(new Etat(), 3000);
+        Path fichier = dossier.getRoot().toPath().resolve("arbre.bin");
+        SauvegardeArbre.sauvegarder(racine, fichier);
+
+        Noeud relu = SauvegardeArbre.lire(fichier).charger(20);
+        assertEquals(20, relu.compterNoeuds());
+        assertEquals(racine.getNb_simus(), relu.getNb_simus());
+        assertEquals(racine.getEnfants().size(), relu.getEnfants().size());
+        for (Noeud enfant : racine.getEnfants()) {
+            Noeud enfantRelu = relu.getEnfants(enfant.getCoup());
+            assertEquals(enfant.getNb_simus(), enfantRelu.getNb_simus());
+            assertEquals(enfant.getNb_victoires(), enfantRelu.getNb_victoires());
+        }
+    }
+
+    @Test
+    public void preuvesConservees() {
+        Etat etat = Position.depuisCoups("171717").versEtat();
+        Noeud racine = developper(etat, 1000);
+        Path fichier = dossier.getRoot().toPath().resolve("arbre.bin");
+        SauvegardeArbre.sauvegarder(racine, fichier);
+        Noeud relu = SauvegardeArbre.lire(fichier).charger(Integer.MAX_VALUE);
+        assertEquals(racine.getPreuve(), relu.getPreuve());
+        assertEquals(Preuve.VICTOIRE, relu.enfantEnColonne(0).getPreuve());
+    }
+
+    /**
+     * Une recherche reprise d'un fichier projeté en mémoire peut sauvegarder dans ce même fichier.
+     */
+    @Test
+    public void sauvegardeSurUnFichierProjete() {
+        Path fichier = dossier.getRoot().toPath().resolve("arbre.bin");
+        SauvegardeArbre.sauvegarder(developper(new Etat(), 500), fichier);
+        SauvegardeArbre projetee = SauvegardeArbre.ouvrir(fichier);
+        Noeud racine = projetee.charger(Integer.MAX_VALUE);
+        racine.getEtat().developper(racine, 0, new Simulateur(2), Noeud.C, new GestionTemps(60_000, false), 500, new StatistiquesRecherche());
+
+        assertEquals(racine.compterNoeuds(), SauvegardeArbre.sauvegarder(racine, fichier));
+        SauvegardeArbre relue = SauvegardeArbre.ouvrir(fichier);
+        assertEquals(1000, relue.getNbSimus(relue.getRacine()));
+        assertEquals(1, dossier.getRoot().list().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fichierInvalideRefuse() throws Exception {
+        Path fichier = dossier.newFile("arbre.bin").toPath();
+        Files.write(fichier, new byte[SauvegardeArbre.ENTETE + SauvegardeArbre.NOEUD]);
+        SauvegardeArbre.lire(fichier);
+    }
+
+    /**
+     * Une seconde analyse de la même position reprend l'arbre sauvegardé par la première ; celle d'une autre position
+     * repart de zéro.
+     */
+    @Test
+    public void analyseReprise() throws Exception {
+        Path fichier = dossier.getRoot().toPath().resolve("analyse.bin");
+        Parametres parametres = new Parametres();
+        parametres.setQuotaIterations(1000);
+        parametres.setFichierSauvegarde(fichier.toString());
+        Moteur moteur = new Moteur(parametres);
+
+        assertEquals(1000, visites(moteur.analyser(Position.INITIALE, 60_000).get(30, TimeUnit.SECONDS)));
+        assertTrue(Files.exists(fichier));
+        ResultatRecherche reprise = moteur.analyser(Position.INITIALE, 60_000).get(30, TimeUnit.SECONDS);
+        assertEquals(1000, reprise.getIterations());
+        assertEquals(2000, visites(reprise));
+
+        parametres.setNoeudsReprise(10);
+        int avant = SauvegardeArbre.lire(fichier).getNbNoeuds();
+        assertEquals(3000, visites(moteur.analyser(Position.INITIALE, 60_000).get(30, TimeUnit.SECONDS)));
+        // les noeuds non rechargés ne sont plus sauvegardés
+        assertTrue(SauvegardeArbre.lire(fichier).getNbNoeuds() < avant);
+
+        assertEquals(1000, visites(moteur.analyser(Position.depuisCoups("4"), 60_000).get(30, TimeUnit.SECONDS)));
+        assertEquals(Position.depuisCoups("4"), Position.de(SauvegardeArbre.lire(fichier).getEtat()));
+    }
+
+    @Test
+    public void sansFichierRienNEstSauvegarde() throws Exception {
+        Parametres parametres = new Parametres();
+        parametres.setQuotaIterations(500);
+        assertNull(parametres.getFichierSauvegarde());
+        new Moteur(parametres).analyser(Position.INITIALE, 60_000).get(30, TimeUnit.SECONDS);
+        assertEquals(0, dossier.getRoot().list().length);
+    }
+
+    private static Noeud developper(Etat etat, int iterations) {
+        Noeud racine = etat.nouvelleRacine();
+        etat.developper(racine, 0, new Simulateur(1), Noeud.C, new GestionTemps(60_000, false), iterations, new StatistiquesRecherche());
+        return racine;
+    }
+
+    private static void memeArbre(Noeud attendu, Noeud noeud) {
+        assertEquals(attendu.getNb_simus(), noeud.getNb_simus());
+        assertEquals(attendu.getNb_victoires(), noeud.getNb_victoires());
+        assertEquals(attendu.getPreuve(), noeud.getPreuve());
+        assertEquals(attendu.getEnfants().size(), noeud.getEnfants().size());
+        for (Noeud enfant : attendu.getEnfants())
+            memeArbre(enfant, noeud.getEnfants(enfant.getCoup()));
+    }
+
+    private static int visites(ResultatRecherche resultat) {
+        int visites = 0;
+        for (int v : resultat.getVisites())
+            visites += v;
+        return visites;
+    }
+}
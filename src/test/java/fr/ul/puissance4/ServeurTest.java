@@ -0,0 +1,206 @@
+package fr.ul.puissance4;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ServeurTest {
+    /**
+     * Les tâches en attente passent par priorité croissante, puis dans l'ordre de soumission.
+     */
+    @Test
+    public void tachesParPriorite() throws InterruptedException {
+        Ordonnanceur ordonnanceur = new Ordonnanceur(1);
+        try {
+            CountDownLatch occupe = new CountDownLatch(1);
+            CountDownLatch fini = new CountDownLatch(5);
+            List<String> ordre = Collections.synchronizedList(new ArrayList<>());
+            ordonnanceur.execute(() -> {
+                try {
+                    occupe.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                fini.countDown();
+            });
+            for (int k = 0; k < 1000 && ordonnanceur.getActifs() == 0; k++)
+                Thread.sleep(10);
+            for (String tache : new String[]{"c5", "a1", "b3", "d1"}) {
+                long priorite = tache.charAt(1) - '0';
+                ordonnanceur.executer(() -> {
+                    ordre.add(tache);
+                    fini.countDown();
+                }, priorite);
+            }
+            assertTrue(attendreEnAttente(ordonnanceur, 4));
+            occupe.countDown();
+            assertTrue(fini.await(10, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList("a1", "d1", "b3", "c5"), ordre);
+        } finally {
+            ordonnanceur.arreter();
+        }
+    }
+
+    /**
+     * Deux analyses sur un seul thread se le partagent, même quand la seconde commence plus tard.
+     */
+    @Test
+    public void analysesServiesEquitablement() throws Exception {
+        Ordonnanceur ordonnanceur = new Ordonnanceur(1);
+        try {
+            CompletableFuture<ResultatRecherche> premiere = new Moteur(ordonnanceur, new Parametres()).analyser(Position.INITIALE, 600);
+            Thread.sleep(100);
+            CompletableFuture<ResultatRecherche> seconde = new Moteur(ordonnanceur, new Parametres()).analyser(Position.depuisCoups("4"), 400);
+            long a = premiere.get(30, TimeUnit.SECONDS).getIterations();
+            long b = seconde.get(30, TimeUnit.SECONDS).getIterations();
+            assertTrue(a + " / " + b, b > a / 4);
+        } finally {
+            ordonnanceur.arreter();
+        }
+    }
+
+    /**
+     * Une longue analyse, concurrencée par une suite de nouvelles sessions, continue d'avancer et répond à son
+     * échéance.
+     */
+    @Test
+    public void analyseLongueNonAffamee() throws Exception {
+        Ordonnanceur ordonnanceur = new Ordonnanceur(1);
+        try {
+            Parametres parametres = new Parametres();
+            parametres.setGestionTemps(false);
+            Moteur moteur = new Moteur(ordonnanceur, parametres);
+            long debut = System.nanoTime();
+            CompletableFuture<ResultatRecherche> longue = moteur.analyser(Position.INITIALE, 1000);
+            List<CompletableFuture<ResultatRecherche>> courtes = new ArrayList<>();
+            while (!longue.isDone() && System.nanoTime() - debut < 3_000_000_000L) {
+                courtes.add(moteur.analyser(Position.depuisCoups(String.valueOf(1 + courtes.size() % 7)), 2000));
+                Thread.sleep(10);
+            }
+            ResultatRecherche resultat = longue.get(30, TimeUnit.SECONDS);
+            long duree = (System.nanoTime() - debut) / 1_000_000;
+            assertTrue(duree + " ms", duree < 1300);
+            assertTrue(courtes.size() > 50);
+            assertTrue(resultat.getIterations() >= Moteur.TRANCHE);
+            for (CompletableFuture<ResultatRecherche> courte : courtes)
+                courte.cancel(false);
+        } finally {
+            ordonnanceur.arreter();
+        }
+    }
+
+    @Test
+    public void sessionsSimultanees() throws Exception {
+        Serveur serveur = new Serveur(0, 2, new Parametres());
+        Thread ecoute = new Thread(() -> {
+            try {
+                serveur.servir();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        ecoute.start();
+        try (Socket a = new Socket(InetAddress.getLoopbackAddress(), serveur.getPort());
+             Socket b = new Socket(InetAddress.getLoopbackAddress(), serveur.getPort())) {
+            BufferedReader entreeA = lecteur(a), entreeB = lecteur(b);
+            PrintStream sortieA = ecrivain(a), sortieB = ecrivain(b);
+
+            sortieA.println("isready");
+            sortieB.println("isready");
+            assertEquals("readyok", entreeA.readLine());
+            assertEquals("readyok", entreeB.readLine());
+            assertEquals(2, serveur.getNbSessions());
+
+            sortieA.println("position 171717");
+            sortieA.println("go movetime 10000");
+            sortieB.println("position 4");
+            sortieB.println("go movetime 200");
+            assertTrue(attendreCoup(entreeB).matches("bestmove [1-7]"));
+            sortieA.println("stop");
+            assertEquals("bestmove 1", attendreCoup(entreeA));
+
+            sortieA.println("quit");
+            assertEquals(null, entreeA.readLine());
+        } finally {
+            serveur.fermer();
+            ecoute.join(10_000);
+        }
+    }
+
+    /**
+     * Un client qui coupe brutalement la connexion pendant <code>go infinite</code> ne laisse pas son analyse occuper
+     * les threads.
+     */
+    @Test
+    public void analyseArreteeALaDeconnexion() throws Exception {
+        Serveur serveur = new Serveur(0, 1, new Parametres());
+        Thread ecoute = new Thread(() -> {
+            try {
+                serveur.servir();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        ecoute.start();
+        try {
+            Socket client = new Socket(InetAddress.getLoopbackAddress(), serveur.getPort());
+            BufferedReader entree = lecteur(client);
+            PrintStream sortie = ecrivain(client);
+            sortie.println("position 4");
+            sortie.println("go infinite");
+            sortie.println("isready");
+            assertEquals("readyok", entree.readLine());
+            assertEquals(1, serveur.getOrdonnanceur().getActifs() + serveur.getOrdonnanceur().getEnAttente());
+
+            // fermeture sans attendre : la lecture du serveur échoue au lieu de voir la fin de l'entrée
+            client.setSoLinger(true, 0);
+            client.close();
+            Ordonnanceur ordonnanceur = serveur.getOrdonnanceur();
+            for (int k = 0; k < 500 && (serveur.getNbSessions() > 0 || ordonnanceur.getActifs() + ordonnanceur.getEnAttente() > 0); k++)
+                Thread.sleep(10);
+            assertEquals(0, serveur.getNbSessions());
+            assertEquals(0, ordonnanceur.getActifs() + ordonnanceur.getEnAttente());
+        } finally {
+            serveur.fermer();
+            ecoute.join(10_000);
+        }
+    }
+
+    private static boolean attendreEnAttente(Ordonnanceur ordonnanceur, int taches) throws InterruptedException {
+        for (int k = 0; k < 1000 && ordonnanceur.getEnAttente() < taches; k++)
+            Thread.sleep(10);
+        return ordonnanceur.getEnAttente() == taches;
+    }
+
+    private static String attendreCoup(BufferedReader entree) throws IOException {
+        String ligne;
+        while ((ligne = entree.readLine()) != null && !ligne.startsWith("bestmove"))
+            ;
+        return ligne;
+    }
+
+    private static BufferedReader lecteur(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static PrintStream ecrivain(Socket socket) throws IOException {
+        return new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+    }
+}
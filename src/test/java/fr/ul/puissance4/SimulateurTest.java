@@ -0,0 +1,45 @@
+package fr.ul.puissance4;
+
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SimulateurTest {
+    @Test
+    public void departNonModifie() {
+        Etat depart = Position.depuisCoups("4453").versEtat();
+        Etat copie = depart.copieEtat();
+        Simulateur simulateur = new Simulateur(1);
+        for (int i = 0; i < 100; i++)
+            simulateur.simuler(depart);
+        assertTrue(depart.memePosition(copie));
+        assertEquals(copie.getNbCoups(), depart.getNbCoups());
+    }
+
+    @Test
+    public void memeGraineMemesParties() {
+        Simulateur a = new Simulateur(42), b = new Simulateur(42);
+        Etat depart = new Etat();
+        for (int i = 0; i < 1000; i++)
+            assertEquals(a.simuler(depart), b.simuler(depart));
+    }
+
+    @Test
+    public void partiesJoueesJusquAuBout() {
+        Simulateur simulateur = new Simulateur(7);
+        Map<FinDePartie, Integer> resultats = new EnumMap<>(FinDePartie.class);
+        for (int i = 0; i < 10_000; i++)
+            resultats.merge(simulateur.simuler(new Etat()), 1, Integer::sum);
+        assertNotNull(resultats.get(FinDePartie.ORDI_GAGNE));
+        assertNotNull(resultats.get(FinDePartie.HUMAIN_GAGNE));
+        assertNull(resultats.get(FinDePartie.NON));
+        // le premier joueur gagne plus souvent les parties aléatoires
+        assertTrue(resultats.get(FinDePartie.ORDI_GAGNE) > resultats.get(FinDePartie.HUMAIN_GAGNE));
+    }
+}
@@ -0,0 +1,107 @@
+package fr.ul.puissance4;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+public class SolveurTest {
+    @Test
+    public void victoireImmediate() {
+        Etat position = Position.depuisCoups("171717").versEtat();
+        Solveur.Solution solution = new Solveur(1).resoudre(position, 10_000);
+        assertNotNull(solution);
+        assertEquals(0, solution.getColonne());
+        // le score compte les cases encore vides après le coup gagnant
+        assertEquals((Etat.LIGNE * Etat.COLONNE + 2 - 7) / 2, solution.getScore());
+        assertEquals(6, position.getNbCoups());
+    }
+
+    /**
+     * Sous le seuil de cases vides, l'ordinateur joue le coup du solveur au lieu de lancer MCTS.
+     */
+    @Test
+    public void solveurPrioritaireEnFinDePartie() {
+        Parametres parametres = EtatTest.parametres(1, Parallelisme.RACINE);
+        parametres.setSeuilSolveur(Etat.LIGNE * Etat.COLONNE);
+        Etat etat = Position.depuisCoups("171717").versEtat();
+        etat.ordijoue_mcts(10_000, parametres);
+        assertEquals(StatistiquesRecherche.Origine.SOLVEUR, etat.getDerniereRecherche().getOrigine());
+        assertEquals(FinDePartie.ORDI_GAGNE, etat.testFin());
+    }
+
+    /**
+     * Quand le solveur prioritaire ne finit pas, MCTS a encore le temps de chercher un coup.
+     */
+    @Test
+    public void tempsReserveAMcts() {
+        Parametres parametres = EtatTest.parametres(1, Parallelisme.RACINE);
+        parametres.setSeuilSolveur(Etat.LIGNE * Etat.COLONNE);
+        parametres.setGestionTemps(false);
+        Etat etat = Position.depuisCoups("44").versEtat();
+        long debut = System.nanoTime();
+        etat.ordijoue_mcts(800, parametres);
+        long duree = (System.nanoTime() - debut) / 1_000_000;
+        StatistiquesRecherche recherche = etat.getDerniereRecherche();
+        assertEquals(StatistiquesRecherche.Origine.MCTS, recherche.getOrigine());
+        assertTrue(duree + " ms", duree < 1200);
+        // plus d'un quart du temps, pas une seule lecture de l'horloge
+        assertTrue(String.valueOf(recherche.getIterations()), recherche.getIterations() > 20 * GestionTemps.PERIODE_HORLOGE);
+    }
+
+    @Test
+    public void interrompuFauteDeTemps() {
+        assertNull(new Solveur(1).resoudre(new Etat(), 1));
+    }
+
+    /**
+     * Sur des fins de parties aléatoires, le solveur doit trouver la même valeur qu'un minimax sans élagage, et la
+     * colonne qu'il choisit doit atteindre cette valeur.
+     */
+    @Test
+    public void memeValeurQuUnMinimaxComplet() {
+        Random alea = new Random(4);
+        Solveur solveur = new Solveur(4);
+        int essais = 0;
+        while (essais < 100) {
+            Etat etat = new Etat();
+            FinDePartie fin = FinDePartie.NON;
+            while (fin == FinDePartie.NON && etat.getNbCoups() < Etat.LIGNE * Etat.COLONNE - 14) {
+                int colonne = alea.nextInt(Etat.COLONNE);
+                if (etat.peutJouer(colonne))
+                    fin = etat.jouerCoupEtTester(colonne);
+            }
+            if (fin != FinDePartie.NON)
+                continue;
+            essais++;
+
+            Solveur.Solution solution = solveur.resoudre(etat, 60_000);
+            assertNotNull(solution);
+            int attendu = minimax(etat);
+            assertEquals(attendu, Integer.signum(solution.getScore()));
+
+            FinDePartie apres = etat.jouerCoupEtTester(solution.getColonne());
+            int obtenu = apres == FinDePartie.NON ? -minimax(etat) : apres == FinDePartie.MATCH_NUL ? 0 : 1;
+            assertEquals(attendu, obtenu);
+        }
+    }
+
+    /**
+     * Valeur exacte de la position pour le joueur qui doit jouer : 1 gagné, 0 nul, -1 perdu.
+     */
+    private static int minimax(Etat etat) {
+        int meilleure = -1;
+        for (int j = 0; j < Etat.COLONNE && meilleure < 1; j++) {
+            FinDePartie fin = etat.jouerCoupEtTester(j);
+            if (fin == null)
+                continue;
+            int v = fin == FinDePartie.NON ? -minimax(etat) : fin == FinDePartie.MATCH_NUL ? 0 : 1;
+            etat.annulerCoup(j);
+            meilleure = Math.max(meilleure, v);
+        }
+        return meilleure;
+    }
+}
@@ -0,0 +1,104 @@
+package fr.ul.puissance4;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StatistiquesRechercheTest {
+    @Test
+    public void mesuresDuDernierCoup() {
+        Parametres parametres = EtatTest.parametres(2, Parallelisme.RACINE);
+        parametres.setTailleTable(1);
+        Etat etat = Position.depuisCoups("44").versEtat();
+        etat.ordijoue_mcts(200, parametres);
+
+        StatistiquesRecherche statistiques = etat.getDerniereRecherche();
+        assertEquals(StatistiquesRecherche.Origine.MCTS, statistiques.getOrigine());
+        assertEquals(Position.depuisCoups("44" + (statistiques.getCoup() + 1)).versEtat().getClePosition(), etat.getClePosition());
+        assertTrue(statistiques.getIterations() > 0);
+        assertTrue(statistiques.getSimulations() <= statistiques.getIterations());
+        assertTrue(statistiques.getNoeuds() > 0);
+        assertTrue(statistiques.getProfondeurMax() >= 1);
+        assertTrue(statistiques.getProfondeurMoyenne() <= statistiques.getProfondeurMax());
+        assertTrue(statistiques.getDuree() > 0);
+        assertTrue(statistiques.getSuccesTable() + statistiques.getEchecsTable() > 0);
+        assertEquals(statistiques.getIterations(), etat.getSimulations());
+
+        // sans journal, les étapes ne sont pas chronométrées
+        assertEquals(0, statistiques.getTempsSelection());
+        assertEquals(0, statistiques.getTempsSimulation());
+    }
+
+    @Test
+    public void etapesChronometrees() {
+        StatistiquesRecherche statistiques = new StatistiquesRecherche(true);
+        Position.depuisCoups("44").versEtat().rechercher(100, EtatTest.parametres(1, Parallelisme.RACINE), null, null, statistiques);
+        assertTrue(statistiques.getTempsSelection() > 0);
+        assertTrue(statistiques.getTempsSimulation() > 0);
+        assertTrue(statistiques.getTempsPropagation() > 0);
+    }
+
+    @Test
+    public void ligneDeJournal() {
+        Etat etat = Position.depuisCoups("44").versEtat();
+        etat.ordijoue_mcts(100, EtatTest.parametres(1, Parallelisme.RACINE));
+        String journal = etat.getDerniereRecherche().versJournal();
+        assertTrue(journal, journal.startsWith("recherche origine=mcts coup=" + etat.getDerniereRecherche().getCoup() + " "));
+        assertTrue(journal, journal.matches(".* iterations=\\d+ simulations=\\d+ .* reprises=0 table_succes=0 table_echecs=0 racine=\\S+"));
+        assertEquals(journal, etat.getDerniereRecherche().toString());
+    }
+
+    @Test
+    public void resumeDeLaRacine() {
+        StatistiquesRecherche statistiques = new StatistiquesRecherche();
+        statistiques.getSimusRacine()[0] = 120;
+        statistiques.getVictoiresRacine()[0] = 54;
+        statistiques.getSimusRacine()[3] = 800;
+        statistiques.getVictoiresRacine()[3] = 512;
+        statistiques.getPreuvesRacine()[3] = Preuve.VICTOIRE;
+        assertEquals("0:120/54,3:800/512/VICTOIRE", statistiques.resumerRacine());
+    }
+
+    /**
+     * Sans affichage ni journal, la recherche n'écrit rien sur la sortie standard.
+     */
+    @Test
+    public void rechercheSilencieuse() {
+        PrintStream sortie = System.out;
+        ByteArrayOutputStream octets = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(octets, true));
+        try {
+            Etat etat = Position.depuisCoups("44").versEtat();
+            etat.ordijoue_mcts(100, EtatTest.parametres(1, Parallelisme.RACINE));
+        } finally {
+            System.setOut(sortie);
+        }
+        assertEquals("", new String(octets.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Le journal n'est écrit sur la sortie d'erreur que s'il est demandé.
+     */
+    @Test
+    public void journalSurDemande() {
+        PrintStream erreur = System.err;
+        ByteArrayOutputStream octets = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(octets, true, StandardCharsets.UTF_8));
+        Parametres parametres = new Parametres();
+        parametres.setAffichage(false);
+        try {
+            Position.depuisCoups("44").versEtat().ordijoue_mcts(100, parametres);
+            assertEquals("", new String(octets.toByteArray(), StandardCharsets.UTF_8));
+            parametres.setJournal(true);
+            Position.depuisCoups("44").versEtat().ordijoue_mcts(100, parametres);
+        } finally {
+            System.setErr(erreur);
+        }
+        assertTrue(new String(octets.toByteArray(), StandardCharsets.UTF_8).startsWith("recherche origine="));
+    }
+}
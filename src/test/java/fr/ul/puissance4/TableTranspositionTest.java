@@ -0,0 +1,132 @@
+package fr.ul.puissance4;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+public class TableTranspositionTest {
+    @Test
+    public void statistiquesCumuleesParPosition() {
+        TableTransposition table = new TableTransposition(1);
+        long cle = Position.depuisCoups("4453").versEtat().getCle();
+        assertEquals(TableTransposition.ABSENTE, table.lire(cle));
+
+        table.ajouter(cle, true);
+        table.ajouter(cle, false);
+        table.ajouter(cle, true);
+        long stats = table.lire(cle);
+        assertEquals(3, TableTransposition.simulations(stats));
+        assertEquals(2, TableTransposition.victoires(stats));
+    }
+
+    @Test
+    public void memeCleQuelQueSoitLOrdreDesCoups() {
+        assertEquals(Position.depuisCoups("1234").versEtat().getCle(),
+                Position.depuisCoups("3214").versEtat().getCle());
+        assertNotEquals(Position.depuisCoups("1234").versEtat().getCle(),
+                Position.depuisCoups("1243").versEtat().getCle());
+    }
+
+    /**
+     * Trois positions se disputent la même paire de cases : la plus visitée reste dans la table, la dernière
+     * arrivée remplace l'autre.
+     */
+    @Test
+    public void remplacementDansUnePaire() {
+        TableTransposition table = new TableTransposition(1);
+        long a = 6, b = a + (1L << 40), c = a + (2L << 40);
+        for (int i = 0; i < 5; i++)
+            table.ajouter(a, true);
+        table.ajouter(b, false);
+        table.ajouter(b, false);
+        table.ajouter(c, true);
+
+        assertEquals(5, TableTransposition.simulations(table.lire(a)));
+        assertEquals(TableTransposition.ABSENTE, table.lire(b));
+        assertEquals(1, TableTransposition.victoires(table.lire(c)));
+    }
+
+    @Test
+    public void secondeCaseRemonteQuandElleDevientPlusVisitee() {
+        TableTransposition table = new TableTransposition(1);
+        long a = 6, b = a + (1L << 40), c = a + (2L << 40);
+        table.ajouter(a, false);
+        for (int i = 0; i < 3; i++)
+            table.ajouter(b, true);
+        // b a pris la première case, a est remplacée par c
+        table.ajouter(c, false);
+
+        assertEquals(3, TableTransposition.simulations(table.lire(b)));
+        assertEquals(TableTransposition.ABSENTE, table.lire(a));
+        assertEquals(1, TableTransposition.simulations(table.lire(c)));
+    }
+
+    /**
+     * Les statistiques d'une transposition sont ramenées au nombre de simulations du parent, avec le même taux de
+     * victoire (condition de UCB1).
+     */
+    @Test
+    public void statistiquesPlafonneesAuParent() {
+        assertEquals(50L << 32 | 30, Noeud.plafonner(100L << 32 | 60, 50));
+        assertEquals(40L << 32 | 10, Noeud.plafonner(40L << 32 | 10, 50));
+        assertEquals(TableTransposition.ABSENTE, Noeud.plafonner(TableTransposition.ABSENTE, 0));
+    }
+
+    /**
+     * La table d'une partie est gardée d'un coup de l'ordinateur au suivant, et vidée pour une position qui ne
+     * découle pas de la précédente.
+     */
+    @Test
+    public void tableConserveeDurantLaPartie() {
+        Parametres parametres = EtatTest.parametres(1, Parallelisme.RACINE);
+        parametres.setTailleTable(1);
+        parametres.setReutiliserArbre(false);
+        Etat etat = Position.depuisCoups("4453").versEtat();
+        etat.ordijoue_mcts(200, parametres);
+        TableTransposition table = etat.getTable();
+        long cle = etat.getCle();
+        assertNotEquals(TableTransposition.ABSENTE, table.lire(cle));
+
+        etat.jouerCoup(Coup.de(0));
+        etat.ordijoue_mcts(200, parametres);
+        assertSame(table, etat.getTable());
+        assertNotEquals(TableTransposition.ABSENTE, table.lire(cle));
+
+        Etat autre = Position.depuisCoups("7766").versEtat();
+        etat.charger(autre.getPionsOrdi(), autre.getPionsHumain(), Etat.COMPUTER_PLAYER);
+        etat.ordijoue_mcts(200, parametres);
+        assertSame(table, etat.getTable());
+        assertEquals(TableTransposition.ABSENTE, table.lire(cle));
+    }
+
+    @Test
+    public void tableVidee() {
+        TableTransposition table = new TableTransposition(1);
+        table.ajouter(6, true);
+        table.lire(6);
+        table.vider();
+        assertEquals(TableTransposition.ABSENTE, table.lire(6));
+        assertEquals(0, table.getSucces());
+        assertEquals(1, table.getEchecs());
+    }
+
+    @Test
+    public void enfantInitialiseDepuisLaTable() {
+        TableTransposition table = new TableTransposition(1);
+        Etat apres = new Etat();
+        apres.jouerCoup(new Coup(3));
+        for (int i = 0; i < 10; i++)
+            table.ajouter(apres.getCle(), i % 2 == 0);
+
+        Noeud racine = new Noeud();
+        racine.restaurer(4, 1, Preuve.INCONNUE);
+        Noeud enfant = racine.obtenirEnfant(new Coup(3), table);
+        assertEquals(4, enfant.getNb_simus());
+        assertEquals(2, enfant.getNb_victoires());
+        // un enfant déjà créé garde ses statistiques
+        table.ajouter(apres.getCle(), true);
+        assertEquals(4, racine.obtenirEnfant(new Coup(3), table).getNb_simus());
+    }
+}
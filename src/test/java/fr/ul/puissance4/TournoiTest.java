@@ -0,0 +1,55 @@
+package fr.ul.puissance4;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TournoiTest {
+    @Test
+    public void configurationLue() {
+        Tournoi.Configuration configuration = Tournoi.lireConfiguration("temps=20,c=0.5,threads=2,parallelisme=arbre,reutiliser=true");
+        assertEquals(20, configuration.temps);
+        assertEquals(0.5, configuration.parametres.getExploration(), 0);
+        assertEquals(2, configuration.parametres.getNbThreads());
+        assertEquals(Parallelisme.ARBRE, configuration.parametres.getParallelisme());
+        assertTrue(configuration.parametres.isReutiliserArbre());
+        assertFalse(configuration.parametres.isAffichage());
+        assertFalse(configuration.parametres.isJournal());
+
+        assertEquals(100, Tournoi.lireConfiguration("").temps);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reglageInconnuRefuse() {
+        Tournoi.lireConfiguration("temps=20,vitesse=2");
+    }
+
+    @Test
+    public void differenceDElo() {
+        assertEquals(0, Tournoi.elo(0.5), 1e-9);
+        assertEquals(-Tournoi.elo(0.25), Tournoi.elo(0.75), 1e-9);
+        assertEquals(190.85, Tournoi.elo(0.75), 0.01);
+        assertEquals(Double.POSITIVE_INFINITY, Tournoi.elo(1), 0);
+        assertEquals(Double.NEGATIVE_INFINITY, Tournoi.elo(0), 0);
+    }
+
+    /**
+     * Une partie est jouée jusqu'au bout, et les simulations de chaque configuration sont comptées.
+     */
+    @Test
+    public void partieJoueeJusquAuBout() {
+        Tournoi.Configuration a = Tournoi.lireConfiguration("temps=5");
+        Tournoi.Configuration b = Tournoi.lireConfiguration("temps=5,c=0.5");
+        for (int p = 0; p < 4; p++) {
+            int score = Tournoi.jouerPartie(a, b, 2, new SplittableRandom(p));
+            assertTrue(score >= 0 && score <= 2);
+        }
+        assertTrue(a.simulations.sum() > 0);
+        assertTrue(b.simulations.sum() > 0);
+        assertTrue(a.reflexion.sum() > 0);
+    }
+}